@@ -0,0 +1,541 @@
+import java.util.SplittableRandom;
+
+/**
+ *  A computer opponent for boards too big to solve, like 15x15 five-in-a-row. It runs an
+ *  iterative-deepening alpha-beta search: depth 1, then 2, and so on until its time per
+ *  move runs out, playing the best move of the deepest search that finished.
+ *
+ *  Positions are hashed with Zobrist keys (one random number per player per spot, XORed
+ *  together) that are updated as moves are made and taken back, and search results are
+ *  kept in a transposition table under that key. Moves are tried in this order: the
+ *  table's best move, then the killer moves that caused cutoffs at the same depth, then
+ *  the rest by their history score. Only blank spots within two of an existing mark are
+ *  searched.
+ *
+ *  The evaluation counts threats using the same lines winsThrough() checks: every window
+ *  of winLength spots that only one player has marks in is worth more the more marks it
+ *  holds. Window counts are kept up to date on every move, so evaluating is O(1).
+ */
+
+public class AlphaBetaStrategy implements MoveStrategy {
+
+    static final long DEFAULT_BUDGET_NANOS = 50_000_000L;
+
+    private static final long WIN_SCORE = 1L << 60;
+    private static final long INFINITY = Long.MAX_VALUE - 1;
+    private static final int MAX_WINDOW_WEIGHT = 10;
+    private static final int NEIGHBOR_RADIUS = 2;
+    private static final int TABLE_BITS = 20;
+    private static final int TIME_CHECK_NODES = 1024;
+
+    private static final int EXACT = 0;
+    private static final int LOWER_BOUND = 1;
+    private static final int UPPER_BOUND = 2;
+
+    private final long budgetNanos;
+    private final long seed;
+
+    // Everything below is rebuilt when the board size changes
+    private Board board;
+    private int[][] windows;
+    private int[][] windowsOfCell;
+    private int[][] neighborsOfCell;
+    private long[][] zobrist;
+    private int[][] windowCounts;
+    private int[] nearbyMarks;
+    private long[] windowScore;
+    private long hash;
+
+    private final long[] tableKeys = new long[1 << TABLE_BITS];
+    private final long[] tableScores = new long[1 << TABLE_BITS];
+    private final int[] tableInfo = new int[1 << TABLE_BITS];
+
+    private int[][] killers;
+    private int[][] history;
+    private int[][] moveBuffers;
+    private long[][] orderBuffers;
+
+    private long deadline;
+    private boolean stopped;
+    private long nodes;
+    private int lastDepth;
+    private long lastNodes;
+    private long lastNanos;
+
+    /**
+     * Creates a player with 50 ms per move
+     */
+    public AlphaBetaStrategy(){
+        this(DEFAULT_BUDGET_NANOS, 131);
+    }
+
+    /**
+     * @param budgetNanos - time allowed per move in nanoseconds
+     * @param seed - seed for the Zobrist keys
+     */
+    public AlphaBetaStrategy(long budgetNanos, long seed){
+        this.budgetNanos = budgetNanos;
+        this.seed = seed;
+    }
+
+    @Override
+    public int chooseMove(Board position, int player){
+        long start = System.nanoTime();
+        setUp(position);
+
+        deadline = start + budgetNanos;
+        stopped = false;
+        nodes = 0;
+        lastDepth = 0;
+
+        int[] moves = movesAt(0);
+        int count = generateMoves(moves);
+
+        // On an empty board start in the center
+        int bestMove = count > 0 ? moves[0] : board.cellAt(board.height / 2, board.width / 2);
+
+        // Take a win, or block one, without searching
+        int forced = HeuristicStrategy.findWinningMove(board, player);
+
+        if (forced < 0){
+            forced = HeuristicStrategy.findWinningMove(board, GameEngine.otherPlayer(player));
+        }
+
+        if (forced >= 0 || count <= 1){
+            bestMove = forced >= 0 ? forced : bestMove;
+        } else {
+            int empties = board.cells - board.markCount();
+
+            for (int depth = 1; depth <= empties; depth++) {
+                int move = searchRoot(player, depth);
+
+                if (stopped){
+                    break;
+                }
+
+                bestMove = move;
+                lastDepth = depth;
+
+                if (System.nanoTime() > deadline){
+                    break;
+                }
+            }
+        }
+
+        lastNodes = nodes;
+        lastNanos = System.nanoTime() - start;
+        return bestMove;
+    }
+
+    /**
+     * Searches every candidate move to a fixed depth
+     * @return the best move, only meaningful if the search was not stopped
+     */
+    private int searchRoot(int player, int depth){
+        long alpha = -INFINITY;
+        int bestMove = -1;
+        int[] moves = movesAt(0);
+        int count = orderMoves(moves, generateMoves(moves), 0, player, tableMove());
+
+        for (int i = 0; i < count; i++) {
+            long score = scoreMove(moves[i], player, depth, 0, alpha, INFINITY);
+
+            if (stopped){
+                break;
+            }
+
+            if (score > alpha || bestMove < 0){
+                alpha = score;
+                bestMove = moves[i];
+            }
+        }
+
+        if (!stopped){
+            store(alpha, depth, EXACT, bestMove, 0);
+        }
+
+        return bestMove;
+    }
+
+    /**
+     * Plays a move, scores it for the player who made it and takes it back
+     */
+    private long scoreMove(int cell, int player, int depth, int ply, long alpha, long beta){
+        makeMove(cell, player);
+        long score;
+
+        if (board.winsThrough(cell, player)){
+            score = WIN_SCORE - ply;
+        } else if (board.isFull()){
+            score = 0;
+        } else {
+            score = -negamax(GameEngine.otherPlayer(player), depth - 1, ply + 1, -beta, -alpha);
+        }
+
+        undoMove(cell, player);
+        return score;
+    }
+
+    private long negamax(int player, int depth, int ply, long alpha, long beta){
+        if (++nodes % TIME_CHECK_NODES == 0 && System.nanoTime() > deadline){
+            stopped = true;
+        }
+
+        if (stopped){
+            return 0;
+        }
+
+        if (depth == 0){
+            return evaluate(player);
+        }
+
+        long alphaOriginal = alpha;
+        int slot = slotOf(hash);
+        int tableMove = -1;
+
+        if (tableKeys[slot] == hash){
+            int info = tableInfo[slot];
+            long stored = fromTable(tableScores[slot], ply);
+            int bound = (info >>> 14) & 0x3;
+            tableMove = (info & 0x3FFF) - 1;
+
+            if ((info >>> 16) >= depth){
+                if (bound == EXACT){
+                    return stored;
+                }
+
+                if (bound == LOWER_BOUND){
+                    alpha = Math.max(alpha, stored);
+                } else {
+                    beta = Math.min(beta, stored);
+                }
+
+                if (alpha >= beta){
+                    return stored;
+                }
+            }
+        }
+
+        int[] moves = movesAt(ply);
+        int count = orderMoves(moves, generateMoves(moves), ply, player, tableMove);
+        long best = -INFINITY;
+        int bestMove = -1;
+
+        for (int i = 0; i < count; i++) {
+            long score = scoreMove(moves[i], player, depth, ply, alpha, beta);
+
+            if (stopped){
+                return 0;
+            }
+
+            if (score > best){
+                best = score;
+                bestMove = moves[i];
+            }
+
+            if (score > alpha){
+                alpha = score;
+            }
+
+            if (alpha >= beta){
+                // Remember moves that refute the opponent's play for sibling positions
+                if (moves[i] != killers[ply][0]){
+                    killers[ply][1] = killers[ply][0];
+                    killers[ply][0] = moves[i];
+                }
+                history[player - 1][moves[i]] += depth * depth;
+                break;
+            }
+        }
+
+        int bound = best <= alphaOriginal ? UPPER_BOUND : best >= beta ? LOWER_BOUND : EXACT;
+        store(best, depth, bound, bestMove, ply);
+
+        return best;
+    }
+
+    /**
+     * @return the buffer the moves of a ply are generated into
+     */
+    private int[] movesAt(int ply){
+        if (moveBuffers[ply] == null){
+            moveBuffers[ply] = new int[board.cells];
+        }
+
+        return moveBuffers[ply];
+    }
+
+    /**
+     * @return the buffer the moves of a ply are sorted with
+     */
+    private long[] orderAt(int ply){
+        if (orderBuffers[ply] == null){
+            orderBuffers[ply] = new long[board.cells];
+        }
+
+        return orderBuffers[ply];
+    }
+
+    /**
+     * Puts the table move first, then killers, then the rest by history score
+     * @return the number of moves
+     */
+    private int orderMoves(int[] moves, int count, int ply, int player, int tableMove){
+        long[] keys = orderAt(ply);
+        int[] playerHistory = history[player - 1];
+
+        for (int i = 0; i < count; i++) {
+            int cell = moves[i];
+            long priority = playerHistory[cell];
+
+            if (cell == tableMove){
+                priority = 1L << 46;
+            } else if (cell == killers[ply][0]){
+                priority = 1L << 45;
+            } else if (cell == killers[ply][1]){
+                priority = 1L << 44;
+            }
+
+            // Sort on priority, keeping the cell in the low bits
+            keys[i] = (priority << 16) | cell;
+        }
+
+        java.util.Arrays.sort(keys, 0, count);
+
+        for (int i = 0; i < count; i++) {
+            moves[i] = (int) (keys[count - 1 - i] & 0xFFFF);
+        }
+
+        return count;
+    }
+
+    /**
+     * Lists the blank spots within NEIGHBOR_RADIUS of a mark
+     * @return the number of moves
+     */
+    private int generateMoves(int[] moves){
+        int count = 0;
+
+        for (int cell = 0; cell < board.cells; cell++) {
+            if (nearbyMarks[cell] > 0 && board.isEmpty(cell)){
+                moves[count++] = cell;
+            }
+        }
+
+        return count;
+    }
+
+    private int tableMove(){
+        int slot = slotOf(hash);
+        return tableKeys[slot] == hash ? (tableInfo[slot] & 0x3FFF) - 1 : -1;
+    }
+
+    private long evaluate(int player){
+        int opponent = GameEngine.otherPlayer(player);
+        return windowScore[player] - windowScore[opponent];
+    }
+
+    private void makeMove(int cell, int player){
+        updateWindows(cell, player, 1);
+        board.place(cell, player);
+        hash ^= zobrist[player][cell];
+
+        for (int neighbor : neighborsOfCell[cell]) {
+            nearbyMarks[neighbor]++;
+        }
+    }
+
+    private void undoMove(int cell, int player){
+        updateWindows(cell, player, -1);
+        board.remove(cell, player);
+        hash ^= zobrist[player][cell];
+
+        for (int neighbor : neighborsOfCell[cell]) {
+            nearbyMarks[neighbor]--;
+        }
+    }
+
+    /**
+     * Adds or removes a mark from the counts of every window through a cell and keeps
+     * both players' window scores in step
+     */
+    private void updateWindows(int cell, int player, int change){
+        for (int window : windowsOfCell[cell]) {
+            int[] counts = windowCounts[window];
+
+            windowScore[Board.PLAYER_ONE] -= windowValue(counts[Board.PLAYER_ONE], counts[Board.PLAYER_TWO]);
+            windowScore[Board.PLAYER_TWO] -= windowValue(counts[Board.PLAYER_TWO], counts[Board.PLAYER_ONE]);
+
+            counts[player] += change;
+
+            windowScore[Board.PLAYER_ONE] += windowValue(counts[Board.PLAYER_ONE], counts[Board.PLAYER_TWO]);
+            windowScore[Board.PLAYER_TWO] += windowValue(counts[Board.PLAYER_TWO], counts[Board.PLAYER_ONE]);
+        }
+    }
+
+    /**
+     * A window is only a threat if the other player has no marks in it, and each
+     * extra mark makes it eight times more dangerous
+     */
+    private static long windowValue(int mine, int theirs){
+        if (mine == 0 || theirs > 0){
+            return 0;
+        }
+
+        return 1L << (3 * Math.min(mine, MAX_WINDOW_WEIGHT));
+    }
+
+    private void store(long score, int depth, int bound, int move, int ply){
+        int slot = slotOf(hash);
+        tableKeys[slot] = hash;
+        tableScores[slot] = toTable(score, ply);
+        tableInfo[slot] = (depth << 16) | (bound << 14) | (move + 1);
+    }
+
+    /**
+     * Win scores depend on how many moves away the win is, so they are saved relative
+     * to the position and turned back into distance from the root when read
+     */
+    private static long toTable(long score, int ply){
+        if (score > WIN_SCORE / 2){
+            return score + ply;
+        }
+        if (score < -WIN_SCORE / 2){
+            return score - ply;
+        }
+        return score;
+    }
+
+    private static long fromTable(long score, int ply){
+        if (score > WIN_SCORE / 2){
+            return score - ply;
+        }
+        if (score < -WIN_SCORE / 2){
+            return score + ply;
+        }
+        return score;
+    }
+
+    private static int slotOf(long key){
+        return (int) (key >>> (64 - TABLE_BITS));
+    }
+
+    /**
+     * Copies the position into the strategy's own board and rebuilds the window counts,
+     * neighbor counts and hash for it
+     */
+    private void setUp(Board position){
+        if (board == null || board.width != position.width || board.height != position.height
+                || board.winLength != position.winLength){
+            buildTables(position);
+        }
+
+        board.clear();
+        hash = 0;
+        java.util.Arrays.fill(windowScore, 0);
+        java.util.Arrays.fill(nearbyMarks, 0);
+
+        for (int[] counts : windowCounts) {
+            counts[Board.PLAYER_ONE] = 0;
+            counts[Board.PLAYER_TWO] = 0;
+        }
+
+        for (int cell = 0; cell < position.cells; cell++) {
+            int owner = position.get(cell);
+
+            if (owner != Board.EMPTY){
+                makeMove(cell, owner);
+            }
+        }
+
+        // History scores fade between moves so old lessons don't dominate
+        for (int[] playerHistory : history) {
+            for (int cell = 0; cell < playerHistory.length; cell++) {
+                playerHistory[cell] >>= 2;
+            }
+        }
+    }
+
+    private void buildTables(Board position){
+        board = new Board(position.width, position.height, position.winLength);
+        windows = board.winningWindows();
+        windowCounts = new int[windows.length][3];
+        windowScore = new long[3];
+        nearbyMarks = new int[board.cells];
+
+        int[] perCell = new int[board.cells];
+
+        for (int[] window : windows) {
+            for (int cell : window) {
+                perCell[cell]++;
+            }
+        }
+
+        windowsOfCell = new int[board.cells][];
+
+        for (int cell = 0; cell < board.cells; cell++) {
+            windowsOfCell[cell] = new int[perCell[cell]];
+            perCell[cell] = 0;
+        }
+
+        for (int w = 0; w < windows.length; w++) {
+            for (int cell : windows[w]) {
+                windowsOfCell[cell][perCell[cell]++] = w;
+            }
+        }
+
+        neighborsOfCell = new int[board.cells][];
+
+        for (int cell = 0; cell < board.cells; cell++) {
+            int row = cell / board.width;
+            int col = cell % board.width;
+            int[] neighbors = new int[(2 * NEIGHBOR_RADIUS + 1) * (2 * NEIGHBOR_RADIUS + 1)];
+            int count = 0;
+
+            for (int r = Math.max(0, row - NEIGHBOR_RADIUS); r <= Math.min(board.height - 1, row + NEIGHBOR_RADIUS); r++) {
+                for (int c = Math.max(0, col - NEIGHBOR_RADIUS); c <= Math.min(board.width - 1, col + NEIGHBOR_RADIUS); c++) {
+                    neighbors[count++] = board.cellAt(r, c);
+                }
+            }
+
+            neighborsOfCell[cell] = java.util.Arrays.copyOf(neighbors, count);
+        }
+
+        SplittableRandom random = new SplittableRandom(seed);
+        zobrist = new long[3][board.cells];
+
+        for (int player = Board.PLAYER_ONE; player <= Board.PLAYER_TWO; player++) {
+            for (int cell = 0; cell < board.cells; cell++) {
+                zobrist[player][cell] = random.nextLong();
+            }
+        }
+
+        killers = new int[board.cells + 1][2];
+        history = new int[2][board.cells];
+        // Each ply's buffers are made the first time the search reaches it, a big board
+        // would need cells * cells of them up front but the search only goes a few plies deep
+        moveBuffers = new int[board.cells + 1][];
+        orderBuffers = new long[board.cells + 1][];
+
+        java.util.Arrays.fill(tableKeys, 0L);
+    }
+
+    /**
+     * @return depth of the deepest search finished for the last move
+     */
+    public int lastDepth(){
+        return lastDepth;
+    }
+
+    /**
+     * @return positions searched per second for the last move
+     */
+    public double nodesPerSecond(){
+        return lastNanos == 0 ? 0 : lastNodes * 1e9 / lastNanos;
+    }
+
+    @Override
+    public String lastMoveStats(){
+        return String.format("depth %d, %d nodes, %.0f nodes/sec", lastDepth, lastNodes, nodesPerSecond());
+    }
+}
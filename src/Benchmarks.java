@@ -0,0 +1,296 @@
+import java.io.ByteArrayInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Scanner;
+import java.util.function.LongSupplier;
+
+/**
+ *  Measures the game's hot paths so changes can be compared before and after. Each
+ *  benchmark is warmed up, then timed over several iterations, and reports operations
+ *  per second with its spread and the bytes allocated per operation. Results are printed
+ *  as a table and written as JSON so runs of different versions can be compared.
+ *
+ *  The board methods are measured on four positions: an empty board, a game in progress,
+ *  a won game and a full board that ended in a tie. Output from displayBoard and the
+ *  console game is thrown away while it is measured.
+ */
+
+public class Benchmarks {
+
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURE_ITERATIONS = 5;
+    private static final long ITERATION_NANOS = 200_000_000L;
+
+    // Moves played to reach each position, as cells on a 3x3 board
+    private static final String[] POSITION_NAMES = {"empty", "midgame", "won", "tie"};
+    private static final int[][] POSITION_MOVES = {
+        {},
+        {4, 0, 8},
+        {0, 3, 1, 4, 2},
+        {0, 4, 8, 1, 7, 6, 2, 5, 3}
+    };
+
+    // A whole match the console game can be driven with, X wins three straight games
+    private static final String SCRIPTED_MATCH = "11\n21\n12\n22\n13\n11\n21\n12\n22\n13\n11\n21\n12\n22\n13\n";
+
+    // Benchmarks run with System.out thrown away, results go to the real console
+    private static final PrintStream RESULTS = System.out;
+    private static final PrintStream DISCARD = new PrintStream(OutputStream.nullOutputStream());
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    // Results are added here so the JIT can't throw the work away
+    static volatile long sink;
+
+    private final List<String> json = new ArrayList<>();
+
+    /**
+     * Runs every benchmark
+     * @param args - file to write JSON results to, defaults to benchmark-results.json
+     */
+    public static void main(String[] args) throws IOException {
+        String output = args.length > 0 ? args[0] : "benchmark-results.json";
+        Benchmarks benchmarks = new Benchmarks();
+
+        System.setOut(DISCARD);
+
+        try {
+            benchmarks.runBoardBenchmarks();
+            benchmarks.runGameBenchmarks();
+            benchmarks.runUltimateBenchmarks();
+            benchmarks.runSymmetryBenchmarks();
+        } finally {
+            System.setOut(RESULTS);
+        }
+
+        benchmarks.writeJson(output);
+
+        System.out.println("Results written to " + output);
+    }
+
+    private void runBoardBenchmarks(){
+        GameSession session = new GameSession();
+
+        for (int position = 0; position < POSITION_NAMES.length; position++) {
+            String name = POSITION_NAMES[position];
+            Board board = boardFor(POSITION_MOVES[position]);
+            int[] moves = POSITION_MOVES[position];
+            int lastMove = moves.length > 0 ? moves[moves.length - 1] : 0;
+            int lastPlayer = moves.length % 2 == 1 ? Board.PLAYER_ONE : Board.PLAYER_TWO;
+            Board scratch = new Board();
+
+            measure("checkForWin", name, () -> GameEngine.checkForWin(board, lastMove, lastPlayer));
+            measure("boardIsFull", name, () -> GameEngine.boardIsFull(board) ? 1 : 0);
+            measure("moveIsInvalid", name, () -> TicTacToe.moveIsInvalid("22", board) ? 1 : 0);
+            measure("initializeBoard", name, () -> {
+                GameEngine.initializeBoard(scratch);
+                return scratch.markCount();
+            });
+            measure("displayBoard", name, () -> {
+                TicTacToe.displayBoard(session, board);
+                return 1;
+            });
+        }
+    }
+
+    private void runGameBenchmarks(){
+        Board board = new Board();
+        GameEngine engine = new GameEngine(board);
+        int[] tieGame = POSITION_MOVES[3];
+
+        // The engine on its own, playing a full tie game per operation
+        measure("playGame.engine", "tie", () -> {
+            engine.newGame();
+            int result = 0;
+
+            for (int move : tieGame) {
+                result = engine.play(move);
+            }
+
+            return result;
+        });
+
+        // The same game on immutable positions, a new Position per move
+        Position empty = new Position(Board.DEFAULT_SIZE, Board.DEFAULT_SIZE, Board.DEFAULT_SIZE);
+
+        measure("playGame.position", "tie", () -> {
+            Position position = empty;
+            long wins = 0;
+
+            for (int move : tieGame) {
+                int player = position.playerToMove();
+                position = position.place(move, player);
+                wins += position.winsThrough(move, player) ? 1 : 0;
+            }
+
+            return wins + position.markCount();
+        });
+
+        // Taking back the last move of a game in progress and playing it again
+        GameEngine midgame = new GameEngine(new Board());
+
+        for (int move : POSITION_MOVES[1]) {
+            midgame.play(move);
+        }
+
+        measure("takeBack.redo", "midgame", () -> midgame.takeBack() + midgame.redo());
+
+        // The console frontend, fed a recorded match through IR4's keyboard
+        GameSession session = new GameSession();
+        byte[] script = SCRIPTED_MATCH.getBytes();
+
+        Scanner keyboard = IR4.keyboard;
+
+        measure("playMatch.console", "scripted", () -> {
+            IR4.keyboard = new Scanner(new ByteArrayInputStream(script));
+            return TicTacToe.playMatch(session, session.newMatch());
+        });
+
+        IR4.keyboard = keyboard;
+
+        // The same match read through FastInput instead of the Scanner
+        measure("playMatch.fastInput", "scripted", () -> {
+            IR4.useFastInput(new ByteArrayInputStream(script));
+            return TicTacToe.playMatch(session, session.newMatch());
+        });
+
+        IR4.fastInput = null;
+    }
+
+    private void runUltimateBenchmarks(){
+        UltimateEngine ultimate = new UltimateEngine();
+        int[] moves = new int[UltimateEngine.CELLS];
+
+        measure("ultimate.legalMoves", "empty", () -> ultimate.legalMoves(moves));
+        measure("ultimate.perft3", "empty", () -> ultimate.perft(3));
+
+        // Sent to a board that is already won, so every open board is legal
+        for (int cell : new int[] {54, 7, 68, 53, 77, 47, 25, 69, 59, 50}) {
+            ultimate.makeMove(cell);
+        }
+
+        measure("ultimate.legalMoves", "midgame", () -> ultimate.legalMoves(moves));
+        measure("ultimate.perft3", "midgame", () -> ultimate.perft(3));
+    }
+
+    private void runSymmetryBenchmarks(){
+        final int SAMPLES = 1 << 12;
+
+        for (int size = 3; size <= 4; size++) {
+            PositionIndex index = new PositionIndex(size, size, size);
+            Symmetry symmetry = index.symmetry;
+            String name = size + "x" + size;
+
+            // Random rotations and reflections of positions from real games
+            java.util.SplittableRandom random = new java.util.SplittableRandom(size);
+            int[] ones = new int[SAMPLES];
+            int[] twos = new int[SAMPLES];
+
+            for (int i = 0; i < SAMPLES; i++) {
+                long key = index.keyAt(random.nextInt(index.size()));
+                int sym = random.nextInt(symmetry.count);
+                ones[i] = symmetry.transformMask(sym, (int) key);
+                twos[i] = symmetry.transformMask(sym, (int) (key >>> 32));
+            }
+
+            int[] next = new int[1];
+
+            measure("symmetry.canonicalKey", name, () -> {
+                int i = next[0]++ & (SAMPLES - 1);
+                return symmetry.canonicalKey(ones[i], twos[i]);
+            });
+            measure("positionIndex.indexOf", name, () -> {
+                int i = next[0]++ & (SAMPLES - 1);
+                return index.indexOf(ones[i], twos[i]);
+            });
+        }
+    }
+
+    /**
+     * Warms up and then times an operation, printing and saving the result
+     */
+    private void measure(String benchmark, String position, LongSupplier operation){
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            runIteration(operation);
+        }
+
+        double[] opsPerSecond = new double[MEASURE_ITERATIONS];
+        long totalOps = 0;
+        long allocatedBefore = THREADS.getCurrentThreadAllocatedBytes();
+
+        for (int i = 0; i < MEASURE_ITERATIONS; i++) {
+            long start = System.nanoTime();
+            long ops = runIteration(operation);
+            long elapsed = System.nanoTime() - start;
+
+            opsPerSecond[i] = ops * 1e9 / elapsed;
+            totalOps += ops;
+        }
+
+        double bytesPerOp = (double) (THREADS.getCurrentThreadAllocatedBytes() - allocatedBefore) / totalOps;
+        double mean = 0;
+
+        for (double score : opsPerSecond) {
+            mean += score / MEASURE_ITERATIONS;
+        }
+
+        double variance = 0;
+
+        for (double score : opsPerSecond) {
+            variance += (score - mean) * (score - mean) / (MEASURE_ITERATIONS - 1);
+        }
+
+        double error = Math.sqrt(variance);
+
+        RESULTS.printf("%-22s %-10s %15.0f ops/s  +- %12.0f  %10.1f B/op%n",
+                benchmark, position, mean, error, bytesPerOp);
+
+        json.add(String.format("  {\"benchmark\": \"%s\", \"position\": \"%s\", \"opsPerSecond\": %.1f, "
+                + "\"error\": %.1f, \"bytesPerOp\": %.2f}", benchmark, position, mean, error, bytesPerOp));
+    }
+
+    /**
+     * Calls an operation in batches until the iteration time is used up
+     * @return how many times the operation ran
+     */
+    private static long runIteration(LongSupplier operation){
+        final int BATCH = 256;
+
+        long deadline = System.nanoTime() + ITERATION_NANOS;
+        long ops = 0;
+        long total = 0;
+
+        do {
+            for (int i = 0; i < BATCH; i++) {
+                total += operation.getAsLong();
+            }
+            ops += BATCH;
+        } while (System.nanoTime() < deadline);
+
+        sink += total;
+        return ops;
+    }
+
+    private static Board boardFor(int[] moves){
+        Board board = new Board();
+        int player = Board.PLAYER_ONE;
+
+        for (int move : moves) {
+            board.place(move, player);
+            player = GameEngine.otherPlayer(player);
+        }
+
+        return board;
+    }
+
+    private void writeJson(String fileName) throws IOException {
+        try (FileWriter writer = new FileWriter(fileName)) {
+            writer.write("[\n" + String.join(",\n", json) + "\n]\n");
+        }
+    }
+}
@@ -0,0 +1,290 @@
+/**
+ *  A compact m,n,k board: width columns, height rows, and a player wins by getting
+ *  winLength of their marks in a line. Classic Tic-Tac-Toe is a 3,3,3 board and
+ *  five-in-a-row is played on a 15,15,5 board.
+ *
+ *  Each player's marks are stored as bits in a long array, where the spot at
+ *  (row, col) is cell row * width + col. Win detection is incremental: after a mark
+ *  is placed only the four lines through that cell are inspected, so checking a
+ *  move costs O(winLength) no matter how big the board is.
+ *
+ *  The board only knows about player numbers. Symbols are resolved by the caller
+ *  when the board is displayed.
+ */
+
+public class Board {
+
+    static final int DEFAULT_SIZE = 3;
+
+    static final int EMPTY = 0;
+    static final int PLAYER_ONE = 1;
+    static final int PLAYER_TWO = 2;
+
+    // Row and column steps for the four lines through a cell:
+    // across, down, down-right diagonal and down-left diagonal
+    static final int[] ROW_STEPS = {0, 1, 1, 1};
+    static final int[] COL_STEPS = {1, 0, 1, -1};
+
+    final int width;
+    final int height;
+    final int winLength;
+    final int cells;
+
+    private final long[] playerOneMarks;
+    private final long[] playerTwoMarks;
+    private int markCount;
+
+    /**
+     * Creates a classic 3x3 board with 3-in-a-row to win
+     */
+    public Board(){
+        this(DEFAULT_SIZE, DEFAULT_SIZE, DEFAULT_SIZE);
+    }
+
+    /**
+     * Creates an empty board
+     * @param width - number of columns
+     * @param height - number of rows
+     * @param winLength - number of marks in a line needed to win
+     */
+    public Board(int width, int height, int winLength){
+        if (width < 1 || height < 1){
+            throw new IllegalArgumentException("Board must have at least one row and column");
+        }
+
+        if (winLength < 1 || winLength > Math.max(width, height)){
+            throw new IllegalArgumentException("Win length must be between 1 and " + Math.max(width, height));
+        }
+
+        this.width = width;
+        this.height = height;
+        this.winLength = winLength;
+        this.cells = width * height;
+
+        int words = (cells + 63) >>> 6;
+        playerOneMarks = new long[words];
+        playerTwoMarks = new long[words];
+    }
+
+    /**
+     * Sets all spots on the board to blank
+     */
+    public void clear(){
+        java.util.Arrays.fill(playerOneMarks, 0L);
+        java.util.Arrays.fill(playerTwoMarks, 0L);
+        markCount = 0;
+    }
+
+    /**
+     * Places a player's mark on a spot. The spot is expected to be blank.
+     * @param cell - cell index, row * width + col
+     * @param player - PLAYER_ONE or PLAYER_TWO
+     */
+    public void place(int cell, int player){
+        long[] marks = player == PLAYER_ONE ? playerOneMarks : playerTwoMarks;
+        marks[cell >>> 6] |= 1L << cell;
+        markCount++;
+    }
+
+    /**
+     * Takes a player's mark back off a spot. Used by searches to undo a move.
+     * @param cell - cell index, row * width + col
+     * @param player - PLAYER_ONE or PLAYER_TWO
+     */
+    public void remove(int cell, int player){
+        long[] marks = player == PLAYER_ONE ? playerOneMarks : playerTwoMarks;
+        marks[cell >>> 6] &= ~(1L << cell);
+        markCount--;
+    }
+
+    /**
+     * Gets the player who owns a spot
+     * @param cell - cell index, row * width + col
+     * @return PLAYER_ONE, PLAYER_TWO or EMPTY
+     */
+    public int get(int cell){
+        long bit = 1L << cell;
+
+        if ((playerOneMarks[cell >>> 6] & bit) != 0){
+            return PLAYER_ONE;
+        }
+
+        if ((playerTwoMarks[cell >>> 6] & bit) != 0){
+            return PLAYER_TWO;
+        }
+
+        return EMPTY;
+    }
+
+    /**
+     * Checks if a spot has not been taken by either player
+     * @param cell - cell index, row * width + col
+     * @return True - spot is blank, False - spot is taken
+     */
+    public boolean isEmpty(int cell){
+        return ((playerOneMarks[cell >>> 6] | playerTwoMarks[cell >>> 6]) & (1L << cell)) == 0;
+    }
+
+    /**
+     * Checks if the mark on a cell completes a line of winLength marks. Only the
+     * row, column and two diagonals through the cell are inspected.
+     * @param cell - cell index of the last placed mark
+     * @param player - owner of the mark
+     * @return True - player has won, False - player has not won
+     */
+    public boolean winsThrough(int cell, int player){
+        long[] marks = player == PLAYER_ONE ? playerOneMarks : playerTwoMarks;
+        int row = cell / width;
+        int col = cell % width;
+
+        for (int dir = 0; dir < ROW_STEPS.length; dir++) {
+            int inLine = 1
+                    + countRun(marks, row, col, ROW_STEPS[dir], COL_STEPS[dir])
+                    + countRun(marks, row, col, -ROW_STEPS[dir], -COL_STEPS[dir]);
+
+            if (inLine >= winLength){
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Lists every stretch of winLength spots in a line on the board, in the same four
+     * directions winsThrough() checks. A player can only still win in a window the
+     * other player has no marks in, which is what threat evaluations count.
+     * @return the cell indexes of each window
+     */
+    public int[][] winningWindows(){
+        java.util.List<int[]> windows = new java.util.ArrayList<>();
+
+        for (int dir = 0; dir < ROW_STEPS.length; dir++) {
+            for (int row = 0; row < height; row++) {
+                for (int col = 0; col < width; col++) {
+                    int lastRow = row + ROW_STEPS[dir] * (winLength - 1);
+                    int lastCol = col + COL_STEPS[dir] * (winLength - 1);
+
+                    if (lastRow < 0 || lastRow >= height || lastCol < 0 || lastCol >= width){
+                        continue; // Window runs off the board
+                    }
+
+                    int[] window = new int[winLength];
+
+                    for (int i = 0; i < winLength; i++) {
+                        window[i] = cellAt(row + ROW_STEPS[dir] * i, col + COL_STEPS[dir] * i);
+                    }
+
+                    windows.add(window);
+                }
+            }
+        }
+
+        return windows.toArray(new int[0][]);
+    }
+
+    /**
+     * Counts the player's marks in a line starting next to (row, col) and moving
+     * one step at a time. Stops at the first spot the player doesn't own, or once
+     * enough marks have been found to win.
+     */
+    private int countRun(long[] marks, int row, int col, int rowStep, int colStep){
+        int count = 0;
+        int r = row + rowStep;
+        int c = col + colStep;
+
+        while (count < winLength - 1 && r >= 0 && r < height && c >= 0 && c < width){
+            int cell = r * width + c;
+
+            if ((marks[cell >>> 6] & (1L << cell)) == 0){
+                break;
+            }
+
+            count++;
+            r += rowStep;
+            c += colStep;
+        }
+
+        return count;
+    }
+
+    /**
+     * Checks if every spot on the board has been taken
+     * @return True - board is full, False - board is not full
+     */
+    public boolean isFull(){
+        return markCount == cells;
+    }
+
+    /**
+     * @return how many marks have been placed on the board
+     */
+    public int markCount(){
+        return markCount;
+    }
+
+    /**
+     * Gets the bitmask of the first 64 spots taken by a player. Boards with up to
+     * 64 cells fit entirely in this mask.
+     * @param player - PLAYER_ONE or PLAYER_TWO
+     * @return the player's marks, bit n is cell n
+     */
+    public long marksOf(int player){
+        return player == PLAYER_ONE ? playerOneMarks[0] : playerTwoMarks[0];
+    }
+
+    /**
+     * Gets one word of a player's marks, for copying a board in and out of packed storage
+     * @param player - PLAYER_ONE or PLAYER_TWO
+     * @param word - 0 for cells 0 to 63, 1 for cells 64 to 127 and so on
+     * @return the player's marks in that word, bit n is cell word * 64 + n
+     */
+    long marksOf(int player, int word){
+        return player == PLAYER_ONE ? playerOneMarks[word] : playerTwoMarks[word];
+    }
+
+    /**
+     * Replaces one word of a player's marks. The caller makes sure the two players'
+     * marks don't overlap.
+     * @param player - PLAYER_ONE or PLAYER_TWO
+     * @param word - 0 for cells 0 to 63, 1 for cells 64 to 127 and so on
+     * @param marks - the player's marks in that word, bit n is cell word * 64 + n
+     */
+    void setMarks(int player, int word, long marks){
+        long[] playerMarks = player == PLAYER_ONE ? playerOneMarks : playerTwoMarks;
+        markCount += Long.bitCount(marks) - Long.bitCount(playerMarks[word]);
+        playerMarks[word] = marks;
+    }
+
+    /**
+     * @return how many longs each player's marks take
+     */
+    int words(){
+        return playerOneMarks.length;
+    }
+
+    /**
+     * Gets the player whose turn it is. Player one always moves first, so it is
+     * player one's turn whenever both players have the same number of marks.
+     * @return PLAYER_ONE or PLAYER_TWO
+     */
+    public int playerToMove(){
+        int playerOneCount = 0;
+
+        for (long word : playerOneMarks) {
+            playerOneCount += Long.bitCount(word);
+        }
+
+        return playerOneCount * 2 == markCount ? PLAYER_ONE : PLAYER_TWO;
+    }
+
+    /**
+     * Converts a row and column to a cell index
+     * @param row - zero based row
+     * @param col - zero based column
+     * @return the cell index
+     */
+    public int cellAt(int row, int col){
+        return row * width + col;
+    }
+}
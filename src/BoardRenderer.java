@@ -0,0 +1,279 @@
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ *  Draws the board and menus. Every frame is built in one reusable buffer and written
+ *  with a single write and flush, instead of one println per line.
+ *
+ *  There are three modes:
+ *  PLAIN - prints the whole board every time, like a normal console
+ *  ANSI  - draws the board once at the top of the screen, then only redraws the spots
+ *          that changed since the last frame using ANSI cursor movement. Each frame
+ *          clears the prompts under the board, so messages meant to stay on screen,
+ *          such as who won, are written with message() and shown again under the next
+ *          board.
+ *  QUIET - draws nothing, for headless and batch runs
+ */
+
+public class BoardRenderer {
+
+    static final int PLAIN = 0;
+    static final int ANSI = 1;
+    static final int QUIET = 2;
+
+    private static final String NEW_LINE = System.lineSeparator();
+    private static final String ESCAPE = "\u001B[";
+
+    private final int mode;
+    private final Writer out;
+    private final StringBuilder frame = new StringBuilder(512);
+    private char[] chars = new char[512];
+
+    // What the ANSI screen currently shows, null when the next frame has to be drawn in full
+    private int[] shownOwners;
+    private int shownWidth;
+    private int shownHeight;
+    private String shownPlayerOne;
+    private String shownPlayerTwo;
+
+    // Messages written since the last board, shown again under the next one
+    private final StringBuilder messages = new StringBuilder();
+
+    /**
+     * @param stream - where frames are written
+     * @param mode - PLAIN, ANSI or QUIET
+     */
+    public BoardRenderer(PrintStream stream, int mode){
+        this.out = new OutputStreamWriter(stream);
+        this.mode = mode;
+    }
+
+    /**
+     * @return a plain renderer that writes to System.out
+     */
+    public static BoardRenderer console(){
+        return new BoardRenderer(System.out, PLAIN);
+    }
+
+    /**
+     * Displays all spots on the board and their game state
+     * @param session - players' symbols, resolved for each spot
+     * @param board - bitboard that contains all spots on the board and player marks
+     */
+    public void drawBoard(GameSession session, Board board){
+        if (mode == QUIET){
+            return;
+        }
+
+        frame.setLength(0);
+
+        if (mode == ANSI && screenMatches(session, board)){
+            appendChangedSpots(session, board);
+        } else {
+            if (mode == ANSI){
+                frame.append(ESCAPE).append("H").append(ESCAPE).append("2J"); // Home and clear screen
+            }
+            appendBoard(session, board);
+        }
+
+        if (mode == ANSI){
+            remember(session, board);
+
+            // Leave the cursor under the board with the rest of the screen cleared for prompts,
+            // keeping the messages that came since the last board
+            frame.append(ESCAPE).append(boardLines(board) + 1).append(";1H").append(ESCAPE).append("J");
+            frame.append(messages);
+            messages.setLength(0);
+        }
+
+        write();
+    }
+
+    /**
+     * Writes a line about the game, such as a move or a result, that should still be on
+     * screen after the next board is drawn
+     * @param text - the line
+     */
+    public void message(String text){
+        frame.setLength(0);
+        frame.append(text).append(NEW_LINE);
+
+        if (mode == ANSI){
+            messages.append(text).append(NEW_LINE);
+        }
+
+        write();
+    }
+
+    /**
+     * Starts a frame of text, such as a menu. Append lines to the returned buffer and
+     * then call writeText() to show them.
+     * @return the empty frame buffer
+     */
+    public StringBuilder startText(){
+        frame.setLength(0);
+        return frame;
+    }
+
+    /**
+     * Ends a line in a text frame
+     * @param text - the line
+     * @return the frame buffer
+     */
+    public StringBuilder line(String text){
+        return frame.append(text).append(NEW_LINE);
+    }
+
+    /**
+     * Writes the text frame started with startText()
+     */
+    public void writeText(){
+        if (mode == QUIET){
+            return;
+        }
+
+        // Text scrolls the screen, so the next board has to be drawn in full, and the
+        // messages before the text have been read by then
+        shownOwners = null;
+        messages.setLength(0);
+        write();
+    }
+
+    private void appendBoard(GameSession session, Board board){
+        // Row labels are padded so columns still line up past row 9
+        int labelWidth = digits(board.height);
+        int indent = labelWidth + 2;
+
+        appendSpaces(indent);
+
+        for (int col = 0; col < board.width; col++) {
+            if (col > 0){
+                frame.append(' ');
+            }
+            appendPadded(col + 1, 2);
+            frame.append(' ');
+        }
+
+        frame.append(NEW_LINE);
+
+        for (int row = 0; row < board.height; row++) {
+            if (row > 0){
+                appendSpaces(indent);
+
+                for (int col = 0; col < board.width; col++) {
+                    if (col > 0){
+                        frame.append('+');
+                    }
+                    frame.append("---");
+                }
+
+                frame.append(NEW_LINE);
+            }
+
+            appendPadded(row + 1, labelWidth);
+            frame.append(": ");
+
+            for (int col = 0; col < board.width; col++) {
+                if (col > 0){
+                    frame.append('|');
+                }
+                frame.append(' ').append(session.symbolOf(board.get(board.cellAt(row, col)))).append(' ');
+            }
+
+            frame.append(NEW_LINE);
+        }
+    }
+
+    /**
+     * Moves the cursor to each spot that changed and writes its new symbol
+     */
+    private void appendChangedSpots(GameSession session, Board board){
+        int firstSymbolColumn = digits(board.height) + 4;
+
+        for (int cell = 0; cell < board.cells; cell++) {
+            int owner = board.get(cell);
+
+            if (owner != shownOwners[cell]){
+                int screenRow = 2 + (cell / board.width) * 2;
+                int screenCol = firstSymbolColumn + (cell % board.width) * 4;
+
+                frame.append(ESCAPE).append(screenRow).append(';').append(screenCol).append('H')
+                     .append(session.symbolOf(owner));
+            }
+        }
+    }
+
+    private boolean screenMatches(GameSession session, Board board){
+        return shownOwners != null
+                && shownWidth == board.width
+                && shownHeight == board.height
+                && session.playerOne.equals(shownPlayerOne)
+                && session.playerTwo.equals(shownPlayerTwo);
+    }
+
+    private void remember(GameSession session, Board board){
+        if (shownOwners == null || shownOwners.length != board.cells){
+            shownOwners = new int[board.cells];
+        }
+
+        for (int cell = 0; cell < board.cells; cell++) {
+            shownOwners[cell] = board.get(cell);
+        }
+
+        shownWidth = board.width;
+        shownHeight = board.height;
+        shownPlayerOne = session.playerOne;
+        shownPlayerTwo = session.playerTwo;
+    }
+
+    private static int boardLines(Board board){
+        return 1 + board.height * 2 - 1;
+    }
+
+    private void appendSpaces(int count){
+        for (int i = 0; i < count; i++) {
+            frame.append(' ');
+        }
+    }
+
+    private void appendPadded(int number, int width){
+        for (int i = digits(number); i < width; i++) {
+            frame.append(' ');
+        }
+        frame.append(number);
+    }
+
+    private static int digits(int number){
+        int digits = 1;
+
+        while (number >= 10){
+            number /= 10;
+            digits++;
+        }
+
+        return digits;
+    }
+
+    /**
+     * Copies the frame into the reusable char buffer and writes it all at once
+     */
+    private void write(){
+        int length = frame.length();
+
+        if (chars.length < length){
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+
+        frame.getChars(0, length, chars, 0);
+
+        try {
+            out.write(chars, 0, length);
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
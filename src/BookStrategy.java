@@ -0,0 +1,25 @@
+/**
+ *  Plays the best move from an OpeningBook, so it is as strong as the Solver but never
+ *  searches. Positions the book doesn't cover are handed to a fallback strategy.
+ */
+
+public class BookStrategy implements MoveStrategy {
+
+    private final OpeningBook book;
+    private final MoveStrategy fallback;
+
+    /**
+     * @param book - book for the boards this strategy will play on
+     * @param fallback - strategy for positions the book doesn't have
+     */
+    public BookStrategy(OpeningBook book, MoveStrategy fallback){
+        this.book = book;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public int chooseMove(Board board, int player){
+        int move = book.bestMove(board);
+        return move >= 0 ? move : fallback.chooseMove(board, player);
+    }
+}
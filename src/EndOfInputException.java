@@ -0,0 +1,13 @@
+/**
+ *  Thrown when a program asks for input and there is none left, such as when a
+ *  recorded script piped into the game runs out.
+ */
+
+public class EndOfInputException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    public EndOfInputException(){
+        super("No more input");
+    }
+}
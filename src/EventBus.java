@@ -0,0 +1,205 @@
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *  Hands game events to sinks such as the console, a log file or a network connection,
+ *  each on its own thread. Publishing an event only adds it to every sink's EventRing,
+ *  so slow output never runs on the thread playing the game.
+ *
+ *  Every sink picks what happens when it falls so far behind that its ring fills up:
+ *  BLOCK makes the publisher wait for room so no event is lost, DROP throws the new event
+ *  away, and COALESCE keeps only the newest of the events that didn't fit and delivers it
+ *  once the sink catches up, which suits sinks that only need the latest state.
+ */
+
+public class EventBus implements AutoCloseable {
+
+    // What to do with an event when a sink's ring is full
+    static final int BLOCK = 0;
+    static final int DROP = 1;
+    static final int COALESCE = 2;
+
+    static final int DEFAULT_CAPACITY = 1024;
+
+    // How long an idle sink thread sleeps before looking for events again
+    private static final long IDLE_PARK_NANOS = 100_000L;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+
+    /**
+     * A sink with its ring, its thread and counts of what happened to its events
+     */
+    public final class Subscription {
+        final String name;
+        final int policy;
+        final EventRing ring;
+        final AtomicReference<GameEvent> overflow = new AtomicReference<>();
+        final AtomicLong delivered = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final AtomicLong coalesced = new AtomicLong();
+        private final EventSink sink;
+        private final Thread thread;
+
+        private Subscription(String name, EventSink sink, int capacity, int policy){
+            this.name = name;
+            this.sink = sink;
+            this.policy = policy;
+            this.ring = new EventRing(capacity);
+            this.thread = new Thread(this::deliver, "events-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        private void publish(GameEvent event){
+            // While an event waits in overflow, newer ones replace it rather than going
+            // into the ring, where they would be delivered before it
+            if (policy == COALESCE && overflow.get() != null){
+                if (overflow.getAndSet(event) != null){
+                    coalesced.incrementAndGet();
+                }
+                return;
+            }
+
+            if (ring.offer(event)){
+                return;
+            }
+
+            if (policy == DROP){
+                dropped.incrementAndGet();
+            } else if (policy == COALESCE){
+                if (overflow.getAndSet(event) != null){
+                    coalesced.incrementAndGet();
+                }
+            } else {
+                while (!ring.offer(event)) {
+                    if (!thread.isAlive()){
+                        dropped.incrementAndGet();
+                        return; // Nobody is left to make room
+                    }
+                    Thread.onSpinWait();
+                }
+            }
+        }
+
+        private void deliver(){
+            while (true) {
+                GameEvent event = ring.poll();
+
+                if (event == null){
+                    event = overflow.getAndSet(null);
+                }
+
+                if (event != null){
+                    sink.accept(event);
+                    delivered.incrementAndGet();
+                    continue;
+                }
+
+                sink.caughtUp();
+
+                if (closed && ring.size() == 0 && overflow.get() == null){
+                    return;
+                }
+
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+
+        @Override
+        public String toString(){
+            return String.format("%-10s delivered=%d dropped=%d coalesced=%d",
+                    name, delivered.get(), dropped.get(), coalesced.get());
+        }
+    }
+
+    /**
+     * Starts a thread that passes every event published from now on to a sink
+     * @param name - name of the sink, shown in its thread name and stats
+     * @param sink - receives the events
+     * @param capacity - events the sink can fall behind by before the policy applies
+     * @param policy - BLOCK, DROP or COALESCE
+     * @return the subscription, for its counts
+     */
+    public Subscription subscribe(String name, EventSink sink, int capacity, int policy){
+        if (closed){
+            throw new IllegalStateException("The event bus is closed");
+        }
+
+        Subscription subscription = new Subscription(name, sink, capacity, policy);
+        subscriptions.add(subscription);
+        subscription.thread.start();
+        return subscription;
+    }
+
+    /**
+     * Passes an event to every sink. Never waits unless a BLOCK sink is full.
+     * @param event - event to pass on
+     */
+    public void publish(GameEvent event){
+        for (Subscription subscription : subscriptions) {
+            subscription.publish(event);
+        }
+    }
+
+    /**
+     * Lets every sink finish the events it has been given and stops their threads
+     */
+    @Override
+    public void close(){
+        closed = true;
+
+        for (Subscription subscription : subscriptions) {
+            LockSupport.unpark(subscription.thread);
+
+            try {
+                subscription.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return every sink's subscription
+     */
+    public List<Subscription> subscriptions(){
+        return subscriptions;
+    }
+
+    /**
+     * Publishes a burst of events to a sink that takes 20 microseconds per event under
+     * each policy, and prints how long publishing took and what reached the sink
+     * @param args - number of events, 200000 by default
+     */
+    public static void main(String[] args){
+        int events = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        String[] policies = {"BLOCK", "DROP", "COALESCE"};
+
+        for (int policy = BLOCK; policy <= COALESCE; policy++) {
+            EventBus bus = new EventBus();
+            Subscription slow = bus.subscribe(policies[policy], event -> {
+                long until = System.nanoTime() + 20_000;
+                while (System.nanoTime() < until) {
+                    Thread.onSpinWait();
+                }
+            }, DEFAULT_CAPACITY, policy);
+
+            long start = System.nanoTime();
+
+            for (int i = 0; i < events; i++) {
+                bus.publish(new GameEvent(GameEvent.MOVE_PLACED, Board.PLAYER_ONE, i % 9,
+                        GameEngine.KEEP_PLAYING, 1, 0, 0));
+            }
+
+            double publishSeconds = (System.nanoTime() - start) / 1e9;
+            bus.close();
+
+            System.out.printf("%s  published %d events in %.3f seconds (%.0f events/sec)%n",
+                    slow, events, publishSeconds, events / publishSeconds);
+        }
+    }
+}
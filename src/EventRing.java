@@ -0,0 +1,92 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *  A bounded queue of events that any number of threads can add to and one thread takes
+ *  from, without locks. Each slot has a sequence number that says whose turn it is to
+ *  use it: a producer claims a slot by moving the tail forward with a compare-and-set,
+ *  writes the event and then bumps the slot's sequence, and the consumer waits for that
+ *  bump before reading. offer() returns False instead of waiting when the ring is full,
+ *  so the caller decides what to do about it.
+ */
+
+public class EventRing {
+
+    private final int mask;
+    private final GameEvent[] events;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+    private long head; // Only touched by the consumer
+
+    /**
+     * @param capacity - most events held at once, rounded up to a power of two
+     */
+    public EventRing(int capacity){
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+
+        mask = size - 1;
+        events = new GameEvent[size];
+        sequences = new AtomicLongArray(size);
+
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Adds an event if there is room
+     * @param event - event to add
+     * @return True - the event was added, False - the ring is full
+     */
+    public boolean offer(GameEvent event){
+        while (true) {
+            long position = tail.get();
+            int slot = (int) position & mask;
+            long sequence = sequences.get(slot);
+
+            if (sequence == position){
+                if (tail.compareAndSet(position, position + 1)){
+                    events[slot] = event;
+                    sequences.set(slot, position + 1); // Publishes the event to the consumer
+                    return true;
+                }
+            } else if (sequence < position){
+                return false; // The consumer hasn't freed this slot yet
+            }
+
+            // Another producer took the slot first, try the next one
+        }
+    }
+
+    /**
+     * Takes the oldest event. Only one thread may call this.
+     * @return the event, or null if the ring is empty
+     */
+    public GameEvent poll(){
+        int slot = (int) head & mask;
+
+        if (sequences.get(slot) != head + 1){
+            return null;
+        }
+
+        GameEvent event = events[slot];
+        events[slot] = null;
+        sequences.set(slot, head + mask + 1); // Frees the slot for the producer one lap ahead
+        head++;
+        return event;
+    }
+
+    /**
+     * @return number of events waiting, which may already be out of date
+     */
+    public int size(){
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    /**
+     * @return most events held at once
+     */
+    public int capacity(){
+        return mask + 1;
+    }
+}
@@ -0,0 +1,19 @@
+/**
+ *  Receives the events published to an EventBus. Each sink is called on its own thread,
+ *  one event at a time and in the order they were published, so a sink doesn't have to
+ *  be thread safe.
+ */
+
+public interface EventSink {
+
+    /**
+     * @param event - event that was published
+     */
+    void accept(GameEvent event);
+
+    /**
+     * Called when no more events are waiting, such as to flush buffered output
+     */
+    default void caughtUp(){
+    }
+}
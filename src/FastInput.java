@@ -0,0 +1,297 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ *  A fast replacement for the parts of Scanner that IR4 uses. Input is read in large
+ *  blocks into a byte buffer and integers are parsed straight from the bytes, so reading
+ *  a number doesn't run a regular expression or create any objects. This matters when
+ *  the game is driven by long recorded move scripts through a pipe.
+ *
+ *  Tokens are separated by whitespace like Scanner's. When the input runs out an
+ *  EndOfInputException is thrown instead of ending the program.
+ */
+
+public class FastInput {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+
+    // Result of the last hasNextInt() so nextInt() doesn't parse the token twice
+    private boolean intReady;
+    private int readyInt;
+    private int readyEnd;
+
+    /**
+     * @param in - stream to read from, usually System.in
+     */
+    public FastInput(InputStream in){
+        this(in, BUFFER_SIZE);
+    }
+
+    /**
+     * @param in - stream to read from
+     * @param bufferSize - starting size of the buffer, it grows to fit longer lines
+     */
+    public FastInput(InputStream in, int bufferSize){
+        this.in = in;
+        this.buffer = new byte[Math.max(16, bufferSize)];
+    }
+
+    /**
+     * Checks if the next token is an int. Blank lines and spaces before the token are skipped.
+     * @return True - the next token is an int, False - it is something else
+     * @throws EndOfInputException if there are no more tokens
+     */
+    public boolean hasNextInt(){
+        if (intReady){
+            return true;
+        }
+
+        skipWhitespace();
+        int end = tokenEnd();
+        int index = position;
+        boolean negative = false;
+
+        if (buffer[index] == '-' || buffer[index] == '+'){
+            negative = buffer[index] == '-';
+            index++;
+        }
+
+        if (index == end){
+            return false; // A sign on its own
+        }
+
+        // Count as a negative number so Integer.MIN_VALUE fits
+        long value = 0;
+
+        for (; index < end; index++) {
+            int digit = buffer[index] - '0';
+
+            if (digit < 0 || digit > 9){
+                return false;
+            }
+
+            value = value * 10 - digit;
+
+            if (value < Integer.MIN_VALUE){
+                return false; // Too big for an int
+            }
+        }
+
+        if (!negative && value == Integer.MIN_VALUE){
+            return false;
+        }
+
+        intReady = true;
+        readyInt = (int) (negative ? value : -value);
+        readyEnd = end;
+        return true;
+    }
+
+    /**
+     * Reads the next token as an int
+     * @return the int
+     * @throws java.util.InputMismatchException if the next token is not an int
+     * @throws EndOfInputException if there are no more tokens
+     */
+    public int nextInt(){
+        if (!hasNextInt()){
+            throw new java.util.InputMismatchException("Next token is not an int");
+        }
+
+        intReady = false;
+        position = readyEnd;
+        return readyInt;
+    }
+
+    /**
+     * Checks if the next token is a number. Blank lines and spaces before the token are skipped.
+     * @return True - the next token is a double, False - it is something else
+     * @throws EndOfInputException if there are no more tokens
+     */
+    public boolean hasNextDouble(){
+        return parseDouble() != null;
+    }
+
+    /**
+     * Reads the next token as a double
+     * @return the double
+     * @throws java.util.InputMismatchException if the next token is not a number
+     * @throws EndOfInputException if there are no more tokens
+     */
+    public double nextDouble(){
+        Double number = parseDouble();
+
+        if (number == null){
+            throw new java.util.InputMismatchException("Next token is not a number");
+        }
+
+        intReady = false;
+        position = tokenEnd();
+        return number;
+    }
+
+    private Double parseDouble(){
+        skipWhitespace();
+        String token = new String(buffer, position, tokenEnd() - position, StandardCharsets.US_ASCII);
+
+        try {
+            double number = Double.parseDouble(token);
+            return Double.isNaN(number) || Double.isInfinite(number) ? null : number;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the rest of the current line
+     * @return the line without its line ending
+     * @throws EndOfInputException if there is nothing left to read
+     */
+    public String nextLine(){
+        intReady = false;
+
+        if (!fill(0)){
+            throw new EndOfInputException();
+        }
+
+        int start = position;
+        int index = position;
+
+        while (true) {
+            if (index == limit){
+                // The line runs past the buffer, move it to the front and read more
+                int read = index - start;
+                compactFrom(start);
+                start = position;
+                index = start + read;
+
+                if (!fill(index - position)){
+                    position = limit;
+                    return decode(start, index);
+                }
+            }
+
+            if (buffer[index] == '\n'){
+                position = index + 1;
+                int end = index > start && buffer[index - 1] == '\r' ? index - 1 : index;
+                return decode(start, end);
+            }
+
+            index++;
+        }
+    }
+
+    /**
+     * Throws away the rest of the current line. Does nothing at the end of the input.
+     */
+    public void skipLine(){
+        intReady = false;
+
+        while (fill(0)) {
+            while (position < limit) {
+                if (buffer[position++] == '\n'){
+                    return;
+                }
+            }
+        }
+    }
+
+    private String decode(int start, int end){
+        return new String(buffer, start, end - start, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Moves past spaces, tabs and line breaks
+     * @throws EndOfInputException if the input ends first
+     */
+    private void skipWhitespace(){
+        while (true) {
+            if (!fill(0)){
+                throw new EndOfInputException();
+            }
+
+            if (!isWhitespace(buffer[position])){
+                return;
+            }
+
+            position++;
+        }
+    }
+
+    /**
+     * Finds the end of the token at the current position, reading more input if the
+     * token runs past the end of the buffer
+     */
+    private int tokenEnd(){
+        int index = position;
+
+        while (true) {
+            if (index == limit){
+                int read = index - position;
+                compactFrom(position);
+
+                if (!fill(read)){
+                    return limit;
+                }
+
+                index = position + read;
+            }
+
+            if (isWhitespace(buffer[index])){
+                return index;
+            }
+
+            index++;
+        }
+    }
+
+    /**
+     * Makes sure more than `needed` bytes are buffered past the current position
+     * @return False - the input ended first
+     */
+    private boolean fill(int needed){
+        while (limit - position <= needed) {
+            if (limit == buffer.length){
+                compactFrom(position);
+
+                if (limit == buffer.length){
+                    buffer = java.util.Arrays.copyOf(buffer, buffer.length * 2);
+                }
+            }
+
+            int read;
+
+            try {
+                read = in.read(buffer, limit, buffer.length - limit);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            if (read < 0){
+                return false;
+            }
+
+            limit += read;
+        }
+
+        return true;
+    }
+
+    private void compactFrom(int start){
+        System.arraycopy(buffer, start, buffer, 0, limit - start);
+        limit -= start;
+        readyEnd -= start;
+        position -= start;
+    }
+
+    private static boolean isWhitespace(byte b){
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f';
+    }
+}
@@ -0,0 +1,326 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ *  Running statistics over finished games, fed one game at a time from the engine as
+ *  games end or from the records of a GameLog. Nothing is kept per game: every game
+ *  adds to a few arrays of counters, and the number of different players and different
+ *  games is estimated with HyperLogLog sketches. The memory used doesn't grow with the
+ *  number of games, and every question below is answered from the counters in constant
+ *  time, whenever it is asked.
+ *
+ *  Symbol pairs are the symbols the two players used, such as X and O. Each new pair is
+ *  given a number by symbolPair, and games are counted under that number.
+ *
+ *  One thread feeds the statistics. The counters are read without locking, so a thread
+ *  asking while games are being added may get answers a game or two behind.
+ */
+
+public class GameAnalytics {
+
+    // Games on boards with more cells than this are counted, but not by opening square
+    static final int MAX_OPENING_CELLS = 1024;
+
+    private long games;
+    private long moves;
+    private final long[] results = new long[4];
+
+    // Results of the games that opened on each cell, at 4 * cell + result
+    private long[] openingResults = new long[4 * GameRecord.MAX_MOVES];
+
+    private final Map<String, Integer> pairIds = new HashMap<>();
+    private String[] pairNames = new String[4];
+    private long[] pairGames = new long[4];
+    private long[] pairTies = new long[4];
+
+    private final HyperLogLog players = new HyperLogLog();
+    private long namesAdded;
+    private final HyperLogLog distinctGames = new HyperLogLog();
+
+    /**
+     * @param playerOne - first player's symbol
+     * @param playerTwo - second player's symbol
+     * @return the number games with these symbols are counted under
+     */
+    public int symbolPair(String playerOne, String playerTwo){
+        String name = playerOne + " vs " + playerTwo;
+        Integer id = pairIds.get(name);
+
+        if (id != null){
+            return id;
+        }
+
+        int pair = pairIds.size();
+
+        if (pair == pairNames.length){
+            pairNames = java.util.Arrays.copyOf(pairNames, pair * 2);
+            pairGames = java.util.Arrays.copyOf(pairGames, pair * 2);
+            pairTies = java.util.Arrays.copyOf(pairTies, pair * 2);
+        }
+
+        pairNames[pair] = name;
+        pairIds.put(name, pair);
+        return pair;
+    }
+
+    /**
+     * Counts a player towards distinctPlayers
+     * @param name - player's name
+     */
+    public void addPlayer(String name){
+        namesAdded++;
+        players.add(HyperLogLog.hash(name));
+    }
+
+    /**
+     * Adds a game from a GameLog
+     * @param record - packed GameRecord
+     * @param pair - from symbolPair, or -1 if the symbols aren't known
+     */
+    public void add(long record, int pair){
+        int count = GameRecord.moveCount(record);
+        int opening = count > 0 ? GameRecord.move(record, 0) : -1;
+        count(opening, count, GameRecord.result(record), HyperLogLog.hash(record), pair);
+    }
+
+    /**
+     * Adds a game that has just ended. Games that fit a GameRecord are counted the same
+     * as their record would be, so the engine and a GameLog can feed the same statistics.
+     * @param game - finished game
+     * @param pair - from symbolPair, or -1 if the symbols aren't known
+     */
+    public void add(GameEngine game, int pair){
+        if (GameRecord.fits(game.board())){
+            add(GameRecord.encode(game), pair);
+            return;
+        }
+
+        // Other boards' games start from the board's shape, so the same cells played on
+        // boards of different shapes count as different games
+        Board board = game.board();
+        int count = game.moveCount();
+        long hash = HyperLogLog.hash((long) board.width << 32 | (long) board.height << 16 | board.winLength);
+
+        for (int i = 0; i < count; i++) {
+            hash = HyperLogLog.hash(hash ^ game.moveAt(i));
+        }
+
+        int opening = count > 0 && board.cells <= MAX_OPENING_CELLS ? game.moveAt(0) : -1;
+        count(opening, count, game.result(), hash, pair);
+    }
+
+    private void count(int opening, int count, int result, long hash, int pair){
+        games++;
+        moves += count;
+        results[result]++;
+
+        if (opening >= 0){
+            if (4 * opening >= openingResults.length){
+                openingResults = java.util.Arrays.copyOf(openingResults, Math.max(openingResults.length * 2, 4 * opening + 4));
+            }
+
+            openingResults[4 * opening + result]++;
+        }
+
+        if (pair >= 0){
+            pairGames[pair]++;
+
+            if (result == GameEngine.TIE){
+                pairTies[pair]++;
+            }
+        }
+
+        distinctGames.add(hash);
+    }
+
+    /**
+     * @return number of games added
+     */
+    public long games(){
+        return games;
+    }
+
+    /**
+     * @return average number of moves in a game
+     */
+    public double averageLength(){
+        return games == 0 ? 0 : (double) moves / games;
+    }
+
+    /**
+     * @param result - GameEngine.FIRST_WINS, SECOND_WINS or TIE
+     * @return fraction of games that ended that way
+     */
+    public double resultRate(int result){
+        return games == 0 ? 0 : (double) results[result] / games;
+    }
+
+    /**
+     * @return how much more often the first player wins than the second, as a fraction
+     *         of all games, so 0 means moving first is no advantage
+     */
+    public double firstMoveAdvantage(){
+        return resultRate(GameEngine.FIRST_WINS) - resultRate(GameEngine.SECOND_WINS);
+    }
+
+    /**
+     * @param cell - cell index of the first move
+     * @return number of games that opened on the cell
+     */
+    public long gamesOpenedAt(int cell){
+        if (4 * cell >= openingResults.length){
+            return 0;
+        }
+
+        int at = 4 * cell;
+        return openingResults[at + GameEngine.FIRST_WINS] + openingResults[at + GameEngine.SECOND_WINS]
+                + openingResults[at + GameEngine.TIE];
+    }
+
+    /**
+     * @param cell - cell index of the first move
+     * @param result - GameEngine.FIRST_WINS, SECOND_WINS or TIE
+     * @return fraction of the games opened on the cell that ended that way
+     */
+    public double resultRate(int cell, int result){
+        long opened = gamesOpenedAt(cell);
+        return opened == 0 ? 0 : (double) openingResults[4 * cell + result] / opened;
+    }
+
+    /**
+     * @param playerOne - first player's symbol
+     * @param playerTwo - second player's symbol
+     * @return fraction of the games between these symbols that were ties
+     */
+    public double tieRate(String playerOne, String playerTwo){
+        Integer pair = pairIds.get(playerOne + " vs " + playerTwo);
+
+        if (pair == null || pairGames[pair] == 0){
+            return 0;
+        }
+
+        return (double) pairTies[pair] / pairGames[pair];
+    }
+
+    /**
+     * @return estimated number of different players added, 0 if no names were added
+     */
+    public long distinctPlayers(){
+        return players.estimate();
+    }
+
+    /**
+     * @return estimated number of different move sequences among the games
+     */
+    public long distinctGames(){
+        return distinctGames.estimate();
+    }
+
+    /**
+     * @param width - width of the board the games were played on, for naming cells
+     * @return the statistics as lines of text
+     */
+    public String describe(int width){
+        StringBuilder text = new StringBuilder();
+        text.append(String.format("%d games (about %d different), %.2f moves per game",
+                games, distinctGames(), averageLength()));
+
+        // Players are only known by name when something asked for their names
+        if (namesAdded > 0){
+            text.append(String.format(", %d players", distinctPlayers()));
+        }
+
+        text.append(System.lineSeparator());
+        text.append(String.format("First player wins %.1f%%, second player %.1f%%, ties %.1f%%, first move advantage %+.1f%%%n",
+                100 * resultRate(GameEngine.FIRST_WINS), 100 * resultRate(GameEngine.SECOND_WINS),
+                100 * resultRate(GameEngine.TIE), 100 * firstMoveAdvantage()));
+
+        for (int cell = 0; 4 * cell < openingResults.length; cell++) {
+            if (gamesOpenedAt(cell) > 0){
+                text.append(String.format("  Opening %d,%d: %d games, first player wins %.1f%%, second %.1f%%%n",
+                        cell / width + 1, cell % width + 1, gamesOpenedAt(cell),
+                        100 * resultRate(cell, GameEngine.FIRST_WINS), 100 * resultRate(cell, GameEngine.SECOND_WINS)));
+            }
+        }
+
+        for (int pair = 0; pair < pairIds.size(); pair++) {
+            if (pairGames[pair] > 0){
+                text.append(String.format("  %s: %d games, %.1f%% ties%n",
+                        pairNames[pair], pairGames[pair], 100.0 * pairTies[pair] / pairGames[pair]));
+            }
+        }
+
+        return text.toString();
+    }
+
+    /**
+     * Plays a random 3x3 game
+     * @return the packed game
+     */
+    private static long randomGame(SplittableRandom random, GameEngine game){
+        game.newGame();
+
+        while (!game.isOver()) {
+            int cell = random.nextInt(game.board().cells);
+
+            if (game.board().isEmpty(cell)){
+                game.play(cell);
+            }
+        }
+
+        return GameRecord.encode(game);
+    }
+
+    /**
+     * Prints the statistics of a GameLog and how fast it was read, or measures how many
+     * random games a minute can be added
+     * @param args - a GameLog file, or nothing for random games
+     */
+    public static void main(String[] args) throws IOException {
+        GameAnalytics analytics = new GameAnalytics();
+        int pair = analytics.symbolPair("X", "O");
+
+        if (args.length > 0){
+            try (GameLog log = new GameLog(Paths.get(args[0]), false, GameLog.DEFAULT_SEGMENT_RECORDS)) {
+                long start = System.nanoTime();
+                log.scan(record -> analytics.add(record, pair));
+                double seconds = (System.nanoTime() - start) / 1e9;
+
+                System.out.print(analytics.describe(Board.DEFAULT_SIZE));
+                System.out.printf("Read %d games in %.3f seconds, %.0f million games a minute%n",
+                        analytics.games(), seconds, analytics.games() / seconds * 60 / 1e6);
+            }
+            return;
+        }
+
+        final int SAMPLE_GAMES = 1 << 20;
+        final int PASSES = 100;
+        SplittableRandom random = new SplittableRandom(24);
+        GameEngine game = new GameEngine(new Board(Board.DEFAULT_SIZE, Board.DEFAULT_SIZE, Board.DEFAULT_SIZE));
+        long[] records = new long[SAMPLE_GAMES];
+
+        for (int i = 0; i < SAMPLE_GAMES; i++) {
+            records[i] = randomGame(random, game);
+        }
+
+        for (int i = 0; i < SAMPLE_GAMES; i++) {
+            analytics.addPlayer("player" + random.nextInt(50_000));
+        }
+
+        long start = System.nanoTime();
+
+        for (int pass = 0; pass < PASSES; pass++) {
+            for (int i = 0; i < SAMPLE_GAMES; i++) {
+                analytics.add(records[i], pair);
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.print(analytics.describe(Board.DEFAULT_SIZE));
+        System.out.printf("Added %d games in %.3f seconds, %.0f million games a minute%n",
+                analytics.games(), seconds, analytics.games() / seconds * 60 / 1e6);
+    }
+}
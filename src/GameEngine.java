@@ -0,0 +1,290 @@
+/**
+ *  Plays a single game of Tic-Tac-Toe without any console input or output. Moves are
+ *  passed in as cell indexes and the engine answers with result codes, so a game can be
+ *  driven by the console, a bot, a network connection or a test at machine speed.
+ *
+ *  Player one always moves first. An engine is not thread safe, but separate engines
+ *  share nothing and can be played on different threads at the same time. To look at a
+ *  game from another thread, take a Position of it with position().
+ *
+ *  Moves can be taken back, and taken back moves redone, until a different move is
+ *  played. The moves taken back stay in the move list past moveCount(), so both cost
+ *  one mark on the board and nothing else.
+ */
+
+public class GameEngine {
+
+    // Game results
+    static final int KEEP_PLAYING = 0;
+    static final int FIRST_WINS = 1;
+    static final int SECOND_WINS = 2;
+    static final int TIE = 3;
+
+    // Reasons a move can be rejected
+    static final int VALID_MOVE = 0;
+    static final int BAD_ROW = 1;
+    static final int BAD_COLUMN = 2;
+    static final int SPACE_TAKEN = 3;
+    static final int GAME_OVER = 4;
+
+    private final Board board;
+    private final int[] moves;
+    private int moveCount;
+    private int redoCount;
+    private int currentPlayer;
+    private int result;
+
+    /**
+     * Creates an engine and starts a new game on the board
+     * @param board - board the game is played on
+     */
+    public GameEngine(Board board){
+        this.board = board;
+        this.moves = new int[board.cells];
+        reset();
+    }
+
+    /**
+     * Clears the board and gives the first move to player one
+     */
+    public void newGame(){
+        reset();
+    }
+
+    // Shared with the constructor, which mustn't call an overridable method
+    private void reset(){
+        initializeBoard(board);
+        moveCount = 0;
+        redoCount = 0;
+        currentPlayer = Board.PLAYER_ONE;
+        result = KEEP_PLAYING;
+    }
+
+    /**
+     * Places the current player's mark on a spot and passes the turn to the other player
+     * @param row - zero based row
+     * @param col - zero based column
+     * @return the reason the move was rejected as a negative number, or the game result
+     *         after the move: KEEP_PLAYING, FIRST_WINS, SECOND_WINS or TIE
+     */
+    public int play(int row, int col){
+        int reason = validateMove(row, col);
+
+        if (reason != VALID_MOVE){
+            return -reason;
+        }
+
+        return place(board.cellAt(row, col));
+    }
+
+    /**
+     * Places the current player's mark on a spot and passes the turn to the other player
+     * @param cell - cell index of the spot
+     * @return the reason the move was rejected as a negative number, or the game result
+     *         after the move: KEEP_PLAYING, FIRST_WINS, SECOND_WINS or TIE
+     */
+    public int play(int cell){
+        if (cell < 0 || cell >= board.cells){
+            return -BAD_ROW;
+        }
+
+        return play(cell / board.width, cell % board.width);
+    }
+
+    private int place(int cell){
+        int player = currentPlayer;
+
+        board.place(cell, player);
+
+        // Playing the next move taken back keeps the rest, any other move forgets them
+        if (redoCount > 0 && moves[moveCount] == cell){
+            redoCount--;
+        } else {
+            redoCount = 0;
+        }
+
+        moves[moveCount++] = cell;
+
+        long start = GameMetrics.startTimer();
+        result = checkForWin(board, cell, player);
+        GameMetrics.recordWinCheck(start);
+
+        currentPlayer = otherPlayer(player);
+
+        return result;
+    }
+
+    /**
+     * Takes back the last move, even one that ended the game, and gives the turn back
+     * to the player who made it
+     * @return the cell index of the move taken back, or -1 if no moves have been played
+     */
+    public int takeBack(){
+        if (moveCount == 0){
+            return -1;
+        }
+
+        int cell = moves[--moveCount];
+        int player = board.get(cell);
+
+        board.remove(cell, player);
+        currentPlayer = player;
+        result = KEEP_PLAYING;
+        redoCount++;
+
+        return cell;
+    }
+
+    /**
+     * @return the cell index of the move redo would play, the last one taken back, or -1
+     *         if there is none
+     */
+    public int redoMove(){
+        return redoCount > 0 ? moves[moveCount] : -1;
+    }
+
+    /**
+     * Plays the last move taken back again
+     * @return -1 if there is nothing to redo, otherwise the game result after the move:
+     *         KEEP_PLAYING, FIRST_WINS, SECOND_WINS or TIE
+     */
+    public int redo(){
+        return redoCount > 0 ? place(moves[moveCount]) : -1;
+    }
+
+    /**
+     * Checks if a move can be played right now
+     * @param row - zero based row
+     * @param col - zero based column
+     * @return VALID_MOVE, BAD_ROW, BAD_COLUMN, SPACE_TAKEN or GAME_OVER
+     */
+    public int validateMove(int row, int col){
+        if (result != KEEP_PLAYING){
+            return GAME_OVER;
+        }
+
+        return validateMove(board, row, col);
+    }
+
+    /**
+     * Checks if a spot is on the board and has not been taken
+     * @param board - board the move is for
+     * @param row - zero based row
+     * @param col - zero based column
+     * @return VALID_MOVE, BAD_ROW, BAD_COLUMN or SPACE_TAKEN
+     */
+    public static int validateMove(Board board, int row, int col){
+        if (row < 0 || row >= board.height){
+            return BAD_ROW;
+        }
+
+        if (col < 0 || col >= board.width){
+            return BAD_COLUMN;
+        }
+
+        if (!board.isEmpty(board.cellAt(row, col))){
+            return SPACE_TAKEN;
+        }
+
+        return VALID_MOVE;
+    }
+
+    /**
+     * Checks the board to see if the last move won, if there is a tie, or if the game should continue.
+     * Only the lines through the last move can have changed, so only those are checked.
+     * @param board - bitboard that contains all spots on the board and player marks
+     * @param lastMove - cell index of the mark that was just placed
+     * @param player - Board.PLAYER_ONE or Board.PLAYER_TWO
+     * @return FIRST_WINS, SECOND_WINS, TIE or KEEP_PLAYING
+     */
+    public static int checkForWin(Board board, int lastMove, int player){
+
+        // Check the row, column and diagonals through the last move
+        if (board.winsThrough(lastMove, player)){
+            return player == Board.PLAYER_ONE ? FIRST_WINS : SECOND_WINS; // Player wins
+        }
+
+        // Check if the board is full
+        if (boardIsFull(board)){
+            return TIE; // Player has not won yet and the board is full so the game is a tie
+        }
+
+        return KEEP_PLAYING; // No player has won or tied yet, continue game
+    }
+
+    /**
+     * Checks if the board is full by looking for remaining blank spaces
+     * @param board - bitboard that contains all spots on the board and player marks
+     * @return True - board is full, False - board is not full
+     */
+    public static boolean boardIsFull(Board board){
+        return board.isFull();
+    }
+
+    /**
+     * Sets all spaces on a game board to blank
+     * @param board - bitboard that contains all spots on the board and player marks
+     */
+    public static void initializeBoard(Board board){
+        board.clear();
+    }
+
+    /**
+     * @param player - Board.PLAYER_ONE or Board.PLAYER_TWO
+     * @return the player's opponent
+     */
+    public static int otherPlayer(int player){
+        return player == Board.PLAYER_ONE ? Board.PLAYER_TWO : Board.PLAYER_ONE;
+    }
+
+    /**
+     * @return the board the game is played on
+     */
+    public Board board(){
+        return board;
+    }
+
+    /**
+     * @return the game's current position, which stays the same as the game goes on, or
+     *         null on boards of more than Position.MAX_CELLS cells
+     */
+    public Position position(){
+        return board.cells <= Position.MAX_CELLS ? Position.of(board) : null;
+    }
+
+    /**
+     * @return how many moves have been played this game
+     */
+    public int moveCount(){
+        return moveCount;
+    }
+
+    /**
+     * @param index - 0 for the first move of the game
+     * @return the cell index of a move played this game
+     */
+    public int moveAt(int index){
+        return moves[index];
+    }
+
+    /**
+     * @return the player whose turn it is
+     */
+    public int currentPlayer(){
+        return currentPlayer;
+    }
+
+    /**
+     * @return KEEP_PLAYING, FIRST_WINS, SECOND_WINS or TIE
+     */
+    public int result(){
+        return result;
+    }
+
+    /**
+     * @return True - the game has been won or tied, False - the game is still going
+     */
+    public boolean isOver(){
+        return result != KEEP_PLAYING;
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ *  Something that happened in a match, returned by MatchEngine for every move so
+ *  frontends can react to the game without the engine doing any input or output.
+ *  Events are immutable and safe to hand to other threads, which is how an EventBus
+ *  passes them to its sinks.
+ */
+
+public class GameEvent {
+
+    static final int MOVE_REJECTED = 1;
+    static final int MOVE_PLACED = 2;
+    static final int GAME_ENDED = 3;
+    static final int MATCH_ENDED = 4;
+    static final int SYMBOL_CHANGED = 5;
+    static final int MOVE_TAKEN_BACK = 6;
+
+    final int type;
+    final int player;
+    final int cell;
+    final int result;
+    final int gameNumber;
+    final int playerOneHalfPoints;
+    final int playerTwoHalfPoints;
+    final String symbol;
+
+    /**
+     * @param type - MOVE_REJECTED, MOVE_PLACED, GAME_ENDED, MATCH_ENDED or MOVE_TAKEN_BACK
+     * @param player - player who made the move
+     * @param cell - cell index of the move
+     * @param result - why a move was rejected (GameEngine.BAD_ROW, ...) for MOVE_REJECTED,
+     *                 otherwise the game result, or the match result for MATCH_ENDED
+     * @param gameNumber - game of the match the move was made in, starting at 1
+     * @param playerOneHalfPoints - player one's match score counted in half points
+     * @param playerTwoHalfPoints - player two's match score counted in half points
+     */
+    public GameEvent(int type, int player, int cell, int result, int gameNumber,
+                     int playerOneHalfPoints, int playerTwoHalfPoints){
+        this(type, player, cell, result, gameNumber, playerOneHalfPoints, playerTwoHalfPoints, null);
+    }
+
+    private GameEvent(int type, int player, int cell, int result, int gameNumber,
+                      int playerOneHalfPoints, int playerTwoHalfPoints, String symbol){
+        this.type = type;
+        this.player = player;
+        this.cell = cell;
+        this.result = result;
+        this.gameNumber = gameNumber;
+        this.playerOneHalfPoints = playerOneHalfPoints;
+        this.playerTwoHalfPoints = playerTwoHalfPoints;
+        this.symbol = symbol;
+    }
+
+    /**
+     * @param player - player whose symbol changed
+     * @param symbol - the player's new symbol
+     * @return a SYMBOL_CHANGED event
+     */
+    public static GameEvent symbolChanged(int player, String symbol){
+        return new GameEvent(SYMBOL_CHANGED, player, -1, GameEngine.KEEP_PLAYING, 0, 0, 0, symbol);
+    }
+
+    /**
+     * @return True - this move finished a game, False - the game is still going or the move was rejected
+     */
+    public boolean endsGame(){
+        return type == GAME_ENDED || type == MATCH_ENDED;
+    }
+
+    @Override
+    public String toString(){
+        if (type == SYMBOL_CHANGED){
+            return "GameEvent[type=" + type + ", player=" + player + ", symbol=" + symbol + "]";
+        }
+
+        return "GameEvent[type=" + type + ", player=" + player + ", cell=" + cell + ", result=" + result
+                + ", game=" + gameNumber + ", score=" + playerOneHalfPoints / 2.0 + "-" + playerTwoHalfPoints / 2.0 + "]";
+    }
+}
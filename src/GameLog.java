@@ -0,0 +1,260 @@
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ *  An append-only file of GameRecords, one long per game. The file is memory mapped in
+ *  fixed-size segments, so appending a game is one store into memory and the operating
+ *  system writes it out in the background. Reading maps the same segments and walks them
+ *  as LongBuffers without copying, so a scan runs at memory speed.
+ *
+ *  The file starts with an 8 byte magic number followed by the records. Mapping a new
+ *  segment grows the file with blank (zero) records, and since no game encodes to 0 the
+ *  end of the log is found on open by skipping the blank records at the end.
+ *
+ *  Appends from several threads are safe: each one claims its own slot. Readers skip
+ *  blank slots, so a slot claimed but not yet written is never read as a game.
+ */
+
+public final class GameLog implements AutoCloseable {
+
+    static final long MAGIC = 0x54545447414D4531L; // "TTTGAME1"
+    static final int DEFAULT_SEGMENT_RECORDS = 1 << 23; // 64 MB per segment
+
+    private static final int HEADER_BYTES = 8;
+    private static final int RECORD_BYTES = 8;
+
+    private final FileChannel channel;
+    private final boolean writable;
+    private final int segmentRecords;
+    private final List<MappedByteBuffer> segments = new CopyOnWriteArrayList<>();
+    private final List<LongBuffer> segmentLongs = new CopyOnWriteArrayList<>();
+    private final AtomicLong size = new AtomicLong();
+
+    /**
+     * Counts recomputed from a scan of the log
+     */
+    public static class Summary {
+        long games;
+        long moves;
+        final long[] results = new long[4];
+        final long[] openings = new long[16];
+
+        @Override
+        public String toString(){
+            StringBuilder text = new StringBuilder();
+            text.append(games).append(" games, ")
+                .append(results[GameEngine.FIRST_WINS]).append(" first player wins, ")
+                .append(results[GameEngine.SECOND_WINS]).append(" second player wins, ")
+                .append(results[GameEngine.TIE]).append(" ties, ")
+                .append(String.format("%.2f", games == 0 ? 0 : (double) moves / games)).append(" moves per game");
+            return text.toString();
+        }
+    }
+
+    /**
+     * Opens a log for appending, creating it if needed
+     * @param path - log file
+     */
+    public GameLog(Path path) throws IOException {
+        this(path, true, DEFAULT_SEGMENT_RECORDS);
+    }
+
+    /**
+     * Opens a log
+     * @param path - log file
+     * @param writable - True to append games, False to only read
+     * @param segmentRecords - records per mapped segment, the file grows one segment at a time
+     */
+    public GameLog(Path path, boolean writable, int segmentRecords) throws IOException {
+        this.writable = writable;
+        this.segmentRecords = segmentRecords;
+
+        if (writable){
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } else {
+            channel = FileChannel.open(path, StandardOpenOption.READ);
+        }
+
+        if (channel.size() == 0 && writable){
+            java.nio.ByteBuffer header = java.nio.ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putLong(0, MAGIC);
+            channel.write(header, 0);
+        } else {
+            java.nio.ByteBuffer header = java.nio.ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+
+            if (header.getLong(0) != MAGIC){
+                channel.close();
+                throw new IOException(path + " is not a game log");
+            }
+        }
+
+        long capacity = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+
+        for (long mapped = 0; mapped < capacity; mapped += segmentRecords) {
+            mapSegment(segments.size(), writable ? segmentRecords : (int) Math.min(segmentRecords, capacity - mapped));
+        }
+
+        size.set(findEnd(capacity));
+    }
+
+    /**
+     * Skips the blank records at the end of the file
+     */
+    private long findEnd(long capacity){
+        for (long index = capacity - 1; index >= 0; index--) {
+            if (read(index) != 0){
+                return index + 1;
+            }
+        }
+
+        return 0;
+    }
+
+    private void mapSegment(int segment, int records) throws IOException {
+        long offset = HEADER_BYTES + (long) segment * segmentRecords * RECORD_BYTES;
+        FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+        MappedByteBuffer buffer = channel.map(mode, offset, (long) records * RECORD_BYTES);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        segments.add(buffer);
+        segmentLongs.add(buffer.asLongBuffer());
+    }
+
+    /**
+     * Adds a game to the end of the log
+     * @param record - packed game from GameRecord
+     */
+    public void append(long record) throws IOException {
+        if (record == 0){
+            throw new IllegalArgumentException("A blank record can't be logged");
+        }
+
+        long index = size.getAndIncrement();
+        int segment = (int) (index / segmentRecords);
+
+        if (segment >= segmentLongs.size()){
+            growTo(segment);
+        }
+
+        segmentLongs.get(segment).put((int) (index % segmentRecords), record);
+    }
+
+    private synchronized void growTo(int segment) throws IOException {
+        while (segmentLongs.size() <= segment) {
+            mapSegment(segmentLongs.size(), segmentRecords);
+        }
+    }
+
+    /**
+     * @param index - 0 for the first game
+     * @return the packed game, or 0 for a blank slot
+     */
+    public long read(long index){
+        return segmentLongs.get((int) (index / segmentRecords)).get((int) (index % segmentRecords));
+    }
+
+    /**
+     * Passes every game in the log to a consumer, in order
+     * @param consumer - receives each packed record
+     */
+    public void scan(LongConsumer consumer){
+        long remaining = size.get();
+
+        for (LongBuffer longs : segmentLongs) {
+            int count = (int) Math.min(remaining, longs.capacity());
+
+            for (int i = 0; i < count; i++) {
+                long record = longs.get(i);
+
+                if (record != 0){
+                    consumer.accept(record);
+                }
+            }
+
+            remaining -= count;
+        }
+    }
+
+    /**
+     * Recomputes the statistics of every game in the log
+     * @return the counts
+     */
+    public Summary summarize(){
+        Summary summary = new Summary();
+        long remaining = size.get();
+
+        for (LongBuffer longs : segmentLongs) {
+            int count = (int) Math.min(remaining, longs.capacity());
+
+            for (int i = 0; i < count; i++) {
+                long record = longs.get(i);
+
+                if (record != 0){
+                    int moves = GameRecord.moveCount(record);
+                    summary.games++;
+                    summary.moves += moves;
+                    summary.results[GameRecord.result(record)]++;
+
+                    if (moves > 0){
+                        summary.openings[GameRecord.move(record, 0)]++;
+                    }
+                }
+            }
+
+            remaining -= count;
+        }
+
+        return summary;
+    }
+
+    /**
+     * @return number of slots in use, including any claimed but not yet written
+     */
+    public long size(){
+        return size.get();
+    }
+
+    /**
+     * Writes every mapped segment to disk
+     */
+    public void force(){
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (writable){
+            force();
+        }
+        channel.close();
+    }
+
+    /**
+     * Prints the statistics of a log and how fast it was scanned
+     * @param args - log file
+     */
+    public static void main(String[] args) throws IOException {
+        try (GameLog log = new GameLog(Paths.get(args[0]), false, DEFAULT_SEGMENT_RECORDS)) {
+            long start = System.nanoTime();
+            Summary summary = log.summarize();
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.println(summary);
+            System.out.printf("Scanned %d games in %.3f seconds, %.0f MB/s%n",
+                    summary.games, seconds, summary.games * RECORD_BYTES / seconds / 1e6);
+        }
+    }
+}
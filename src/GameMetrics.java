@@ -0,0 +1,304 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ *  Counts what the game loop is doing: how long players think and how long moves take to
+ *  validate and check for a win, why input gets rejected, and how games and matches end.
+ *  The counts can be read over JMX and dumped as text every few seconds.
+ *
+ *  Metrics are off until enable() is called. While they are off every record method
+ *  returns after reading one boolean, and startTimer() doesn't read the clock, so the
+ *  calls can stay in the hot paths. While they are on, counters are LongAdders and
+ *  times go into LatencyHistograms, so threads recording at once don't block each other.
+ */
+
+public class GameMetrics implements GameMetricsMBean {
+
+    // Move rejection reasons are GameEngine's reason codes. VALID_MOVE is never a
+    // rejection, so its slot counts input that isn't a move at all.
+    static final int BAD_FORMAT = GameEngine.VALID_MOVE;
+
+    // Symbol rejection reasons
+    static final int SYMBOL_TOO_LONG = 0;
+    static final int SYMBOL_SAME = 1;
+    static final int SYMBOL_SAME_IGNORING_CASE = 2;
+
+    static final GameMetrics METRICS = new GameMetrics();
+
+    // Changed over JMX, so the game and dump threads must see it change
+    private static volatile boolean enabled;
+
+    final LatencyHistogram thinkTime = new LatencyHistogram("think time");
+    final LatencyHistogram validation = new LatencyHistogram("validation");
+    final LatencyHistogram winCheck = new LatencyHistogram("checkForWin");
+
+    private final LongAdder[] moveRejections = adders(GameEngine.SPACE_TAKEN + 1);
+    private final LongAdder[] symbolRejections = adders(SYMBOL_SAME_IGNORING_CASE + 1);
+    private final LongAdder[] gameResults = adders(GameEngine.TIE + 1);
+    private final LongAdder[] matchResults = adders(GameEngine.TIE + 1);
+
+    private GameMetrics(){
+    }
+
+    private static LongAdder[] adders(int count){
+        LongAdder[] adders = new LongAdder[count];
+
+        for (int i = 0; i < count; i++) {
+            adders[i] = new LongAdder();
+        }
+
+        return adders;
+    }
+
+    /**
+     * Turns metrics on and registers them with the platform MBean server
+     */
+    public static void enable(){
+        enabled = true;
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try {
+            register(server, METRICS, "TicTacToe:type=GameMetrics");
+
+            for (LatencyHistogram histogram : METRICS.histograms()) {
+                register(server, histogram, "TicTacToe:type=Latency,name=" + histogram.name().replace(' ', '-'));
+            }
+        } catch (JMException e) {
+            System.err.println("Metrics could not be registered with JMX: " + e.getMessage());
+        }
+    }
+
+    private static void register(MBeanServer server, Object bean, String name) throws JMException {
+        ObjectName objectName = new ObjectName(name);
+
+        if (!server.isRegistered(objectName)){
+            server.registerMBean(bean, objectName);
+        }
+    }
+
+    /**
+     * Prints a dump of the metrics every period on a background thread
+     * @param out - stream to print to
+     * @param periodSeconds - seconds between dumps
+     * @return the scheduler, shut it down to stop the dumps
+     */
+    public static ScheduledExecutorService startDumps(PrintStream out, long periodSeconds){
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        scheduler.scheduleAtFixedRate(() -> out.print(METRICS.dump()), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+        return scheduler;
+    }
+
+    /**
+     * @return True - metrics are being recorded
+     */
+    public static boolean enabled(){
+        return enabled;
+    }
+
+    /**
+     * @return the time to pass to a record method later, or 0 if metrics are off
+     */
+    public static long startTimer(){
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * @param start - time from startTimer() when the player was asked for a move
+     */
+    public static void recordThinkTime(long start){
+        if (enabled && start != 0){
+            METRICS.thinkTime.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @param start - time from startTimer() when validation started
+     */
+    public static void recordValidation(long start){
+        if (enabled && start != 0){
+            METRICS.validation.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @param start - time from startTimer() when the win check started
+     */
+    public static void recordWinCheck(long start){
+        if (enabled && start != 0){
+            METRICS.winCheck.record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @param reason - BAD_FORMAT, or GameEngine's BAD_ROW, BAD_COLUMN or SPACE_TAKEN
+     */
+    public static void moveRejected(int reason){
+        if (enabled){
+            METRICS.moveRejections[reason].increment();
+        }
+    }
+
+    /**
+     * @param reason - SYMBOL_TOO_LONG, SYMBOL_SAME or SYMBOL_SAME_IGNORING_CASE
+     */
+    public static void symbolRejected(int reason){
+        if (enabled){
+            METRICS.symbolRejections[reason].increment();
+        }
+    }
+
+    /**
+     * @param result - FIRST_WINS, SECOND_WINS or TIE
+     */
+    public static void gameEnded(int result){
+        if (enabled){
+            METRICS.gameResults[result].increment();
+        }
+    }
+
+    /**
+     * @param result - FIRST_WINS, SECOND_WINS or TIE
+     */
+    public static void matchEnded(int result){
+        if (enabled){
+            METRICS.matchResults[result].increment();
+        }
+    }
+
+    private LatencyHistogram[] histograms(){
+        return new LatencyHistogram[] {thinkTime, validation, winCheck};
+    }
+
+    private static long total(LongAdder[] adders){
+        long sum = 0;
+
+        for (LongAdder adder : adders) {
+            sum += adder.sum();
+        }
+
+        return sum;
+    }
+
+    @Override
+    public boolean isEnabled(){
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean on){
+        enabled = on;
+    }
+
+    @Override
+    public long getGamesCompleted(){
+        return total(gameResults);
+    }
+
+    @Override
+    public long getMatchesCompleted(){
+        return total(matchResults);
+    }
+
+    @Override
+    public long getFirstPlayerWins(){
+        return gameResults[GameEngine.FIRST_WINS].sum();
+    }
+
+    @Override
+    public long getSecondPlayerWins(){
+        return gameResults[GameEngine.SECOND_WINS].sum();
+    }
+
+    @Override
+    public long getTies(){
+        return gameResults[GameEngine.TIE].sum();
+    }
+
+    @Override
+    public long getBadFormatMoves(){
+        return moveRejections[BAD_FORMAT].sum();
+    }
+
+    @Override
+    public long getBadRowMoves(){
+        return moveRejections[GameEngine.BAD_ROW].sum();
+    }
+
+    @Override
+    public long getBadColumnMoves(){
+        return moveRejections[GameEngine.BAD_COLUMN].sum();
+    }
+
+    @Override
+    public long getTakenSpaceMoves(){
+        return moveRejections[GameEngine.SPACE_TAKEN].sum();
+    }
+
+    @Override
+    public long getTooLongSymbols(){
+        return symbolRejections[SYMBOL_TOO_LONG].sum();
+    }
+
+    @Override
+    public long getSameSymbols(){
+        return symbolRejections[SYMBOL_SAME].sum();
+    }
+
+    @Override
+    public long getSameIgnoringCaseSymbols(){
+        return symbolRejections[SYMBOL_SAME_IGNORING_CASE].sum();
+    }
+
+    /**
+     * @return every metric as lines of text
+     */
+    @Override
+    public String dump(){
+        long games = getGamesCompleted();
+        StringBuilder text = new StringBuilder("------ Metrics ------\n");
+
+        text.append(String.format("games=%d matches=%d first wins=%.1f%% second wins=%.1f%% ties=%.1f%%%n",
+                games, getMatchesCompleted(),
+                percentOf(getFirstPlayerWins(), games), percentOf(getSecondPlayerWins(), games), percentOf(getTies(), games)));
+        text.append(String.format("rejected moves: format=%d row=%d column=%d taken=%d%n",
+                getBadFormatMoves(), getBadRowMoves(), getBadColumnMoves(), getTakenSpaceMoves()));
+        text.append(String.format("rejected symbols: too long=%d same=%d same ignoring case=%d%n",
+                getTooLongSymbols(), getSameSymbols(), getSameIgnoringCaseSymbols()));
+
+        for (LatencyHistogram histogram : histograms()) {
+            text.append(histogram).append('\n');
+        }
+
+        return text.toString();
+    }
+
+    private static double percentOf(long part, long whole){
+        return whole == 0 ? 0 : 100.0 * part / whole;
+    }
+
+    @Override
+    public void reset(){
+        for (LongAdder[] adders : new LongAdder[][] {moveRejections, symbolRejections, gameResults, matchResults}) {
+            for (LongAdder adder : adders) {
+                adder.reset();
+            }
+        }
+
+        for (LatencyHistogram histogram : histograms()) {
+            histogram.reset();
+        }
+    }
+}
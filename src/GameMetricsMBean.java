@@ -0,0 +1,39 @@
+/**
+ *  What GameMetrics shows over JMX. Metrics can be turned on and off from a JMX console
+ *  while the game is running.
+ */
+
+public interface GameMetricsMBean {
+
+    boolean isEnabled();
+
+    void setEnabled(boolean enabled);
+
+    long getGamesCompleted();
+
+    long getMatchesCompleted();
+
+    long getFirstPlayerWins();
+
+    long getSecondPlayerWins();
+
+    long getTies();
+
+    long getBadFormatMoves();
+
+    long getBadRowMoves();
+
+    long getBadColumnMoves();
+
+    long getTakenSpaceMoves();
+
+    long getTooLongSymbols();
+
+    long getSameSymbols();
+
+    long getSameIgnoringCaseSymbols();
+
+    String dump();
+
+    void reset();
+}
@@ -0,0 +1,97 @@
+/**
+ *  Packs a whole 3x3 game into one long. A game has at most 9 moves and each move is a
+ *  cell from 0 to 8, so it fits in 4 bits. The layout is:
+ *
+ *    bits  0-35   moves, move i in bits 4i to 4i+3
+ *    bits 36-39   number of moves
+ *    bits 40-41   result: FIRST_WINS, SECOND_WINS or TIE
+ *
+ *  Every finished game has a result, so a record of 0 never holds a game. Logs use
+ *  that to tell written records from blank space.
+ */
+
+public class GameRecord {
+
+    static final int MAX_MOVES = 9;
+
+    private static final int MOVE_BITS = 4;
+    private static final int COUNT_SHIFT = 36;
+    private static final int RESULT_SHIFT = 40;
+
+    /**
+     * Packs a game
+     * @param moves - cell indexes of the moves in order, each 0 through 15
+     * @param count - how many moves were played
+     * @param result - GameEngine.FIRST_WINS, SECOND_WINS or TIE
+     * @return the packed record
+     */
+    public static long encode(int[] moves, int count, int result){
+        if (count > MAX_MOVES){
+            throw new IllegalArgumentException("A record holds at most " + MAX_MOVES + " moves");
+        }
+
+        long record = 0;
+
+        for (int i = 0; i < count; i++) {
+            record |= (long) (moves[i] & 0xF) << (i * MOVE_BITS);
+        }
+
+        return record | (long) count << COUNT_SHIFT | (long) result << RESULT_SHIFT;
+    }
+
+    /**
+     * Records only make sense for classic games: a cell number means a different spot on
+     * any other board, and a game of the same moves can end differently with another
+     * win length
+     * @param board - board a game was played on
+     * @return True - games on the board can be recorded
+     */
+    public static boolean fits(Board board){
+        return board.width == Board.DEFAULT_SIZE && board.height == Board.DEFAULT_SIZE
+                && board.winLength == Board.DEFAULT_SIZE;
+    }
+
+    /**
+     * Packs a finished game played on a 3x3 board
+     * @param game - game that is over
+     * @return the packed record
+     */
+    public static long encode(GameEngine game){
+        if (!fits(game.board()) || !game.isOver()){
+            throw new IllegalArgumentException("Only finished 3x3 games with 3 in a row to win can be recorded");
+        }
+
+        long record = 0;
+
+        for (int i = 0; i < game.moveCount(); i++) {
+            record |= (long) game.moveAt(i) << (i * MOVE_BITS);
+        }
+
+        return record | (long) game.moveCount() << COUNT_SHIFT | (long) game.result() << RESULT_SHIFT;
+    }
+
+    /**
+     * @param record - packed game
+     * @return how many moves were played
+     */
+    public static int moveCount(long record){
+        return (int) (record >>> COUNT_SHIFT) & 0xF;
+    }
+
+    /**
+     * @param record - packed game
+     * @param index - 0 for the first move
+     * @return the cell index of the move
+     */
+    public static int move(long record, int index){
+        return (int) (record >>> (index * MOVE_BITS)) & 0xF;
+    }
+
+    /**
+     * @param record - packed game
+     * @return GameEngine.FIRST_WINS, SECOND_WINS or TIE
+     */
+    public static int result(long record){
+        return (int) (record >>> RESULT_SHIFT) & 0x3;
+    }
+}
@@ -0,0 +1,491 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+/**
+ *  Hosts Tic-Tac-Toe matches for players connecting over TCP. One thread runs a
+ *  non-blocking Selector loop for every connection, so thousands of matches don't
+ *  need thousands of threads. Players are paired in the order they connect and play
+ *  best-of-NBR_OF_GAMES matches on a MatchEngine. When a match ends both players go
+ *  back in line for a new opponent.
+ *
+ *  The protocol is one short line of text per message. Moves use the same row,column
+ *  format and the same rules as the console game.
+ *
+ *  Server to client:
+ *    START player width height winLength   a match started, player is 1 or 2
+ *    TURN                                  it is your move
+ *    PLACED player row,col                 a move was played
+ *    ERROR reason                          your last line was rejected, reason is one of
+ *                                          FORMAT BAD_ROW BAD_COLUMN SPACE_TAKEN NOT_YOUR_TURN
+ *    GAME result score1 score2             a game ended, result is 1, 2 or 3 (tie)
+ *    NEWGAME number                        the next game of the match started
+ *    MATCH result                          the match ended
+ *    OPPONENT_LEFT                         your opponent disconnected
+ *
+ *  Client to server:
+ *    MOVE row,col                          play a move, counting from 1
+ *    WATCH                                 stop playing and watch the featured match
+ *
+ *  Spectators are sent the frames described in SpectatorHub instead: a SNAPSHOT of the
+ *  board when they start watching and whenever a new game starts, then a DELTA per move.
+ *  The featured match is the first one to start after the last featured match ended.
+ */
+
+public class GameServer {
+
+    static final int DEFAULT_PORT = 7131;
+
+    private static final int MAX_LINE_LENGTH = 64;
+    private static final int BUFFER_SIZE = 1024;
+
+    private final int width;
+    private final int height;
+    private final int winLength;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+
+    // Players waiting for an opponent
+    private final ArrayDeque<Connection> lobby = new ArrayDeque<>();
+
+    // Spectators and the match they are watching
+    private final SpectatorHub hub = new SpectatorHub(SpectatorHub.DEFAULT_QUEUE_CAPACITY);
+    private final ArrayList<Connection> watchers = new ArrayList<>();
+    private ServerMatch featured;
+
+    private long matchesPlayed;
+
+    /**
+     * One connected player or spectator
+     */
+    private static class Connection {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+        final StringBuilder line = new StringBuilder(MAX_LINE_LENGTH);
+        SelectionKey key;
+        ServerMatch match;
+        int player;
+        SpectatorHub.Spectator spectator;
+
+        Connection(SocketChannel channel){
+            this.channel = channel;
+        }
+    }
+
+    /**
+     * A match between two connections
+     */
+    private static class ServerMatch {
+        final MatchEngine engine;
+        final Connection playerOne;
+        final Connection playerTwo;
+
+        ServerMatch(MatchEngine engine, Connection playerOne, Connection playerTwo){
+            this.engine = engine;
+            this.playerOne = playerOne;
+            this.playerTwo = playerTwo;
+        }
+
+        Connection opponentOf(Connection connection){
+            return connection == playerOne ? playerTwo : playerOne;
+        }
+    }
+
+    /**
+     * Opens the server socket
+     * @param port - port to listen on
+     * @param width - number of columns
+     * @param height - number of rows
+     * @param winLength - number of marks in a line needed to win
+     */
+    public GameServer(int port, int width, int height, int winLength) throws IOException {
+        this.width = width;
+        this.height = height;
+        this.winLength = winLength;
+
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port), 1024);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+    }
+
+    /**
+     * Runs the event loop until the thread is interrupted
+     */
+    public void serve() throws IOException {
+        while (!Thread.currentThread().isInterrupted()) {
+            selector.select();
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+
+                try {
+                    if (!key.isValid()){
+                        continue;
+                    }
+
+                    if (key.isAcceptable()){
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+
+                        if (key.isReadable()){
+                            read(connection);
+                        }
+
+                        if (key.isValid() && key.isWritable()){
+                            flush(connection);
+
+                            if (connection.spectator != null){
+                                pump(connection);
+                            }
+                        }
+                    }
+                } catch (IOException e) {
+                    if (key.attachment() != null){
+                        disconnect((Connection) key.attachment());
+                    }
+                }
+            }
+        }
+
+        selector.close();
+        serverChannel.close();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+
+            Connection connection = new Connection(channel);
+            connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+            joinLobby(connection);
+        }
+    }
+
+    /**
+     * Puts a player in line and starts a match once two are waiting
+     */
+    private void joinLobby(Connection connection){
+        connection.match = null;
+        lobby.add(connection);
+
+        while (lobby.size() >= 2) {
+            Connection playerOne = lobby.poll();
+            Connection playerTwo = lobby.poll();
+            ServerMatch match = new ServerMatch(
+                    new MatchEngine(new Board(width, height, winLength), GameSession.NBR_OF_GAMES),
+                    playerOne, playerTwo);
+
+            playerOne.match = match;
+            playerOne.player = Board.PLAYER_ONE;
+            playerTwo.match = match;
+            playerTwo.player = Board.PLAYER_TWO;
+
+            String settings = " " + width + " " + height + " " + winLength;
+            send(playerOne, "START 1" + settings);
+            send(playerTwo, "START 2" + settings);
+            send(playerOne, "TURN");
+
+            if (featured == null){
+                featured = match;
+                hub.publishSnapshot(match.engine.game().board());
+                pumpAll();
+            }
+        }
+    }
+
+    private void read(Connection connection) throws IOException {
+        ByteBuffer in = connection.in;
+
+        if (connection.channel.read(in) < 0){
+            disconnect(connection);
+            return;
+        }
+
+        in.flip();
+
+        while (in.hasRemaining()) {
+            char c = (char) (in.get() & 0xFF);
+
+            if (c == '\n'){
+                handleLine(connection, connection.line);
+                connection.line.setLength(0);
+            } else if (c != '\r'){
+                if (connection.line.length() >= MAX_LINE_LENGTH){
+                    disconnect(connection); // Nobody sends lines this long on purpose
+                    return;
+                }
+                connection.line.append(c);
+            }
+        }
+
+        in.clear();
+    }
+
+    private void handleLine(Connection connection, StringBuilder line){
+        ServerMatch match = connection.match;
+
+        if (line.toString().equals("WATCH")){
+            watch(connection);
+            return;
+        }
+
+        if (line.length() < 5 || !line.substring(0, 5).equals("MOVE ")){
+            send(connection, "ERROR FORMAT");
+            return;
+        }
+
+        if (match == null || match.engine.game().currentPlayer() != connection.player){
+            send(connection, "ERROR NOT_YOUR_TURN");
+            return;
+        }
+
+        Board board = match.engine.game().board();
+        int[] position = TicTacToe.parseMove(line.substring(5), board);
+
+        if (position == null){
+            send(connection, "ERROR FORMAT");
+            return;
+        }
+
+        // Same rules as moveIsInvalid in the console game
+        int row = position[0] - 1;
+        int col = position[1] - 1;
+        int reason = GameEngine.validateMove(board, row, col);
+
+        if (reason != GameEngine.VALID_MOVE){
+            send(connection, "ERROR " + reasonName(reason));
+            return;
+        }
+
+        GameEvent event = match.engine.play(board.cellAt(row, col));
+        Connection opponent = match.opponentOf(connection);
+        String placed = "PLACED " + connection.player + " " + (row + 1) + "," + (col + 1);
+
+        send(connection, placed);
+        send(opponent, placed);
+
+        if (match == featured){
+            hub.publishMove(board, connection.player, event.cell);
+            pumpAll();
+        }
+
+        if (event.type == GameEvent.MOVE_PLACED){
+            send(opponent, "TURN");
+            return;
+        }
+
+        MatchEngine engine = match.engine;
+        String gameOver = "GAME " + engine.lastGameResult() + " " + engine.playerOneScore() + " " + engine.playerTwoScore();
+        send(match.playerOne, gameOver);
+        send(match.playerTwo, gameOver);
+
+        if (event.type == GameEvent.GAME_ENDED){
+            engine.nextGame();
+            send(match.playerOne, "NEWGAME " + engine.gameNumber());
+            send(match.playerTwo, "NEWGAME " + engine.gameNumber());
+            send(match.playerOne, "TURN");
+
+            if (match == featured){
+                hub.publishSnapshot(engine.game().board());
+                pumpAll();
+            }
+            return;
+        }
+
+        matchesPlayed++;
+        send(match.playerOne, "MATCH " + engine.result());
+        send(match.playerTwo, "MATCH " + engine.result());
+        unfeature(match);
+        joinLobby(match.playerOne);
+        joinLobby(match.playerTwo);
+    }
+
+    /**
+     * Turns a player into a spectator of the featured match. A player in a match leaves it
+     * as if they had disconnected.
+     */
+    private void watch(Connection connection){
+        if (connection.spectator != null){
+            return;
+        }
+
+        lobby.remove(connection);
+        leaveMatch(connection);
+        connection.spectator = hub.subscribe();
+        watchers.add(connection);
+        pump(connection);
+    }
+
+    /**
+     * Stops featuring a match that is over and features the next match that starts
+     */
+    private void unfeature(ServerMatch match){
+        if (match == featured){
+            featured = null;
+        }
+    }
+
+    /**
+     * Sends waiting frames to every spectator whose socket is keeping up
+     */
+    private void pumpAll(){
+        for (int i = watchers.size() - 1; i >= 0; i--) {
+            pump(watchers.get(i));
+        }
+    }
+
+    /**
+     * Writes a spectator's frames straight from the shared buffers until the socket stops
+     * taking them. Frames are only taken from the spectator's queue while nothing is left
+     * over from the last write, so a slow socket lets its queue fill up and is sent a
+     * snapshot later instead of a backlog.
+     */
+    private void pump(Connection connection){
+        SpectatorHub.Frame frame;
+
+        try {
+            while (connection.out.position() == 0 && (frame = connection.spectator.poll()) != null) {
+                ByteBuffer bytes = frame.bytes();
+                connection.channel.write(bytes);
+
+                if (bytes.hasRemaining()){
+                    queue(connection, bytes);
+                    flush(connection);
+                }
+            }
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    /**
+     * @param reason - GameEngine.BAD_ROW, BAD_COLUMN, SPACE_TAKEN or GAME_OVER
+     * @return the name of the reason sent to clients and written to event logs
+     */
+    static String reasonName(int reason){
+        switch (reason){
+            case GameEngine.BAD_ROW: return "BAD_ROW";
+            case GameEngine.BAD_COLUMN: return "BAD_COLUMN";
+            case GameEngine.SPACE_TAKEN: return "SPACE_TAKEN";
+            case GameEngine.GAME_OVER: return "GAME_OVER";
+            default: return "NOT_YOUR_TURN";
+        }
+    }
+
+    /**
+     * Queues a line for a connection and writes as much as the socket takes right away
+     */
+    private void send(Connection connection, String message){
+        if (!connection.channel.isOpen()){
+            return;
+        }
+
+        queue(connection, ByteBuffer.wrap((message + "\n").getBytes(StandardCharsets.US_ASCII)));
+
+        try {
+            flush(connection);
+        } catch (IOException e) {
+            disconnect(connection);
+        }
+    }
+
+    private void queue(Connection connection, ByteBuffer bytes){
+        if (connection.out.remaining() < bytes.remaining()){
+            // A slow reader gets a bigger buffer rather than losing messages
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(connection.out.capacity() * 2, connection.out.position() + bytes.remaining()));
+            connection.out.flip();
+            bigger.put(connection.out);
+            connection.out = bigger;
+        }
+
+        connection.out.put(bytes);
+    }
+
+    private void flush(Connection connection) throws IOException {
+        ByteBuffer out = connection.out;
+        out.flip();
+        connection.channel.write(out);
+        out.compact();
+
+        // Only ask to hear about writability while there is something left to write
+        int interest = out.position() > 0 ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ;
+
+        if (connection.key.isValid() && connection.key.interestOps() != interest){
+            connection.key.interestOps(interest);
+        }
+    }
+
+    private void disconnect(Connection connection){
+        lobby.remove(connection);
+
+        try {
+            connection.channel.close();
+        } catch (IOException e) {
+            // Already closed
+        }
+
+        if (connection.spectator != null){
+            hub.unsubscribe(connection.spectator);
+            watchers.remove(connection);
+            connection.spectator = null;
+        }
+
+        leaveMatch(connection);
+    }
+
+    /**
+     * Ends a connection's match early and puts the opponent back in line
+     */
+    private void leaveMatch(Connection connection){
+        ServerMatch match = connection.match;
+        connection.match = null;
+
+        if (match != null){
+            Connection opponent = match.opponentOf(connection);
+
+            if (opponent.match == match){
+                unfeature(match);
+                send(opponent, "OPPONENT_LEFT");
+                joinLobby(opponent);
+            }
+        }
+    }
+
+    /**
+     * @return matches finished since the server started
+     */
+    public long matchesPlayed(){
+        return matchesPlayed;
+    }
+
+    /**
+     * Starts a server
+     * @param args - port, and board width, height and win length. All are optional.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : Board.DEFAULT_SIZE;
+        int height = args.length > 2 ? Integer.parseInt(args[2]) : width;
+        int winLength = args.length > 3 ? Integer.parseInt(args[3]) : Math.min(width, height);
+
+        System.out.println("Tic-Tac-Toe server listening on port " + port);
+        new GameServer(port, width, height, winLength).serve();
+    }
+}
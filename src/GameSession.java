@@ -0,0 +1,91 @@
+/**
+ *  Settings for one group of players: their symbols and the board they play on.
+ *  Every session has its own copy, so many sessions can run in the same program
+ *  without sharing anything.
+ */
+
+public class GameSession {
+
+    static final int NBR_OF_GAMES = 3;
+
+    String playerOne = "X";
+    String playerTwo = "O";
+
+    // Names the players' matches are rated under, when there is a leaderboard
+    String playerOneName;
+    String playerTwoName;
+
+    int boardWidth = Board.DEFAULT_SIZE;
+    int boardHeight = Board.DEFAULT_SIZE;
+    int winLength = Board.DEFAULT_SIZE;
+
+    // A null strategy means the player enters their moves at the console
+    MoveStrategy playerOneStrategy;
+    MoveStrategy playerTwoStrategy;
+
+    // Computer opponent used on boards too big to solve: Monte Carlo tree search when
+    // set, alpha-beta search otherwise
+    boolean useMonteCarlo;
+
+    BoardRenderer renderer = BoardRenderer.console();
+
+    // Finished 3x3 games are archived here when it is set
+    GameLog gameLog;
+
+    // Matches in progress are checkpointed here when it is set, in slot journalSlot
+    MatchJournal journal;
+    int journalSlot = -1;
+
+    // Matches and symbol changes are published here when it is set
+    EventBus events;
+
+    // Match results are logged and rated here when it is set
+    Leaderboard leaderboard;
+
+    // The computer plays from this book on the board it covers, when it is set
+    OpeningBook book;
+
+    // Every finished game is counted here when it is set
+    GameAnalytics analytics;
+
+    /**
+     * @return a new empty board using this session's size and win length
+     */
+    public Board newBoard(){
+        return new Board(boardWidth, boardHeight, winLength);
+    }
+
+    /**
+     * @return a new best-of-NBR_OF_GAMES match on a new board
+     */
+    public MatchEngine newMatch(){
+        MatchEngine match = new MatchEngine(newBoard(), NBR_OF_GAMES);
+        match.publishTo(events);
+        return match;
+    }
+
+    /**
+     * @param player - Board.PLAYER_ONE or Board.PLAYER_TWO
+     * @return the strategy that picks the player's moves, or null for a person at the console
+     */
+    public MoveStrategy strategyOf(int player){
+        return player == Board.PLAYER_ONE ? playerOneStrategy : playerTwoStrategy;
+    }
+
+    /**
+     * Resolves the symbol to display for a player
+     * @param player - Board.PLAYER_ONE, Board.PLAYER_TWO or Board.EMPTY
+     * @return playerOne, playerTwo or a blank space
+     */
+    public String symbolOf(int player){
+        if (player == Board.PLAYER_ONE){
+            return playerOne;
+        }
+
+        if (player == Board.PLAYER_TWO){
+            return playerTwo;
+        }
+
+        return " ";
+    }
+}
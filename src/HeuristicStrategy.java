@@ -0,0 +1,101 @@
+import java.util.SplittableRandom;
+
+/**
+ *  Plays like a careful beginner: take a win if there is one, otherwise block the
+ *  opponent's win, otherwise play the blank spot closest to the center. Ties between
+ *  equally central spots are broken at random.
+ */
+
+public class HeuristicStrategy implements MoveStrategy {
+
+    private final SplittableRandom random;
+    private int[] moveOrder = new int[0];
+
+    /**
+     * @param random - generator owned by this strategy, used to break ties
+     */
+    public HeuristicStrategy(SplittableRandom random){
+        this.random = random;
+    }
+
+    @Override
+    public int chooseMove(Board board, int player){
+        int winningMove = findWinningMove(board, player);
+
+        if (winningMove >= 0){
+            return winningMove;
+        }
+
+        int blockingMove = findWinningMove(board, GameEngine.otherPlayer(player));
+
+        if (blockingMove >= 0){
+            return blockingMove;
+        }
+
+        if (moveOrder.length != board.cells){
+            moveOrder = Solver.centerFirstOrder(board.width, board.height);
+        }
+
+        // Count how many blank spots share the best distance from the center and pick one
+        int first = -1;
+        int ties = 0;
+        double bestDistance = 0;
+
+        for (int cell : moveOrder) {
+            if (!board.isEmpty(cell)){
+                continue;
+            }
+
+            double distance = distanceFromCenter(board, cell);
+
+            if (first < 0){
+                first = cell;
+                bestDistance = distance;
+            } else if (distance != bestDistance){
+                break;
+            }
+
+            ties++;
+        }
+
+        int pick = random.nextInt(ties);
+
+        for (int cell : moveOrder) {
+            if (board.isEmpty(cell) && pick-- == 0){
+                return cell;
+            }
+        }
+
+        return first;
+    }
+
+    /**
+     * Finds a blank spot that would complete a line for a player
+     * @param board - current position, left as it was
+     * @param player - player to look for a win for
+     * @return the cell index of the winning spot, or -1 if there is none
+     */
+    static int findWinningMove(Board board, int player){
+        for (int cell = 0; cell < board.cells; cell++) {
+            if (!board.isEmpty(cell)){
+                continue;
+            }
+
+            board.place(cell, player);
+            boolean wins = board.winsThrough(cell, player);
+            board.remove(cell, player);
+
+            if (wins){
+                return cell;
+            }
+        }
+
+        return -1;
+    }
+
+    private static double distanceFromCenter(Board board, int cell){
+        double rowOffset = cell / board.width - (board.height - 1) / 2.0;
+        double colOffset = cell % board.width - (board.width - 1) / 2.0;
+        return rowOffset * rowOffset + colOffset * colOffset;
+    }
+}
@@ -0,0 +1,110 @@
+/**
+ *  Estimates how many different values it has been given, in a fixed amount of memory
+ *  and without keeping the values. Each value is hashed; the top bits of the hash pick
+ *  a register and the register keeps the longest run of leading zeros seen in the rest.
+ *  With 2^precision registers the estimate is usually within 1.04 / sqrt(2^precision)
+ *  of the true count, about 1.6% for the default of 4096 one-byte registers.
+ *
+ *  The sum the estimate is made from is kept up to date as registers change, so
+ *  estimate() is a couple of arithmetic operations however many registers there are.
+ */
+
+public class HyperLogLog {
+
+    static final int DEFAULT_PRECISION = 12;
+
+    private final int precision;
+    private final byte[] registers;
+    private final double alpha;
+
+    // Sum of 2^-register over all registers, and how many registers are still 0
+    private double inverseSum;
+    private int zeros;
+
+    /**
+     * @param precision - log2 of the number of registers, 4 through 18
+     */
+    public HyperLogLog(int precision){
+        if (precision < 4 || precision > 18){
+            throw new IllegalArgumentException("Precision must be 4 through 18");
+        }
+
+        int size = 1 << precision;
+        this.precision = precision;
+        this.registers = new byte[size];
+        this.alpha = 0.7213 / (1 + 1.079 / size);
+        this.inverseSum = size;
+        this.zeros = size;
+    }
+
+    public HyperLogLog(){
+        this(DEFAULT_PRECISION);
+    }
+
+    /**
+     * Adds a value by its hash. Equal values need equal hashes and different values
+     * should get well mixed ones, such as from hash(long) or hash(String).
+     * @param hash - 64 bit hash of the value
+     */
+    public void add(long hash){
+        int register = (int) (hash >>> (64 - precision));
+        // The low bit set stops the run of zeros at the end of the hash
+        int rank = Long.numberOfLeadingZeros(hash << precision | 1L << (precision - 1)) + 1;
+        int old = registers[register];
+
+        if (rank > old){
+            registers[register] = (byte) rank;
+            inverseSum += Math.scalb(1.0, -rank) - Math.scalb(1.0, -old);
+
+            if (old == 0){
+                zeros--;
+            }
+        }
+    }
+
+    /**
+     * @return estimated number of different values added
+     */
+    public long estimate(){
+        int size = registers.length;
+        double estimate = alpha * size * size / inverseSum;
+
+        // Few values leave most registers empty, counting the empty ones is more accurate
+        if (estimate <= 2.5 * size && zeros > 0){
+            estimate = size * Math.log((double) size / zeros);
+        }
+
+        return Math.round(estimate);
+    }
+
+    /**
+     * @return bytes used by the registers
+     */
+    public int footprintBytes(){
+        return registers.length;
+    }
+
+    /**
+     * @param value - any long
+     * @return the value's bits well mixed, so nearby values get unrelated hashes
+     */
+    public static long hash(long value){
+        value = (value ^ (value >>> 30)) * 0xBF58476D1CE4E5B9L;
+        value = (value ^ (value >>> 27)) * 0x94D049BB133111EBL;
+        return value ^ (value >>> 31);
+    }
+
+    /**
+     * @param text - any string
+     * @return a 64 bit hash of the string's characters
+     */
+    public static long hash(String text){
+        long hash = 0xCBF29CE484222325L;
+
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001B3L;
+        }
+
+        return hash(hash);
+    }
+}
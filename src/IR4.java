@@ -8,12 +8,19 @@
   * Use at your own risk. Test your program well. No guarantee this code works in all situations. 
   ******************************************************************************************************************/ 
 
+import java.io.InputStream;
 import java.util.Scanner;
 
 public class IR4 {
    //Putting the Scanner object here makes it global so it does not have to be passed to modules.
    static Scanner keyboard = new Scanner(System.in);
    
+   //When this is set, input is read through FastInput instead of the Scanner. See useFastInput().
+   static FastInput fastInput = null;
+   
+   //When this is set for a thread, that thread reads from it instead. See useThreadInput().
+   static final ThreadLocal<FastInput> threadInput = new ThreadLocal<>();
+   
    public static void main(String[] args) {
       /** Main () - 
         * This program demonstrates various generalized input routines. 
@@ -49,11 +56,44 @@ public class IR4 {
    ///////////////////////////////////////////////////////////////////////////////////////////////////////////////////
    // GENERALIZED INPUT FUNCTIONS 
    ///////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+   /** Switches all input functions to a buffered byte-level reader. This is much faster than the
+     * Scanner for large piped input such as recorded move scripts. The functions check input the
+     * same way, but when the input runs out they throw an EndOfInputException instead of ending the program.
+     * @param in is the stream to read from, usually System.in.
+     */
+   public static void useFastInput(InputStream in) {
+      fastInput = new FastInput(in);
+   }
+   
+   //------------------------------------------------------------------------------------------------------------------
+   /** Gives the calling thread its own input, so many games can run at once on different threads
+     * without sharing the keyboard. Input is read through FastInput, see useFastInput().
+     * @param in is the stream this thread reads from.
+     * @param bufferSize is how many bytes are buffered to start with. Keep it small when there are many threads.
+     */
+   public static void useThreadInput(InputStream in, int bufferSize) {
+      threadInput.set(new FastInput(in, bufferSize));
+   }
+   
+   //------------------------------------------------------------------------------------------------------------------
+   /** @return Returns the calling thread's own input, or the shared FastInput, or null to use the Scanner.
+     */
+   private static FastInput input() {
+      FastInput in = threadInput.get();
+      return in != null ? in : fastInput;
+   }
+   
+   //------------------------------------------------------------------------------------------------------------------
    /** Gets a String from the keyboard. Rejects null entry or any number of spaces.
      * @param msg is the text that will be displayed the user to ask them to enter a value.
      * @return Returns a String from the keyboard. 
      */ 
    public static String getString(String msg) {
+      FastInput in = input();
+      if (in != null) {
+         return getStringFast(msg, in);
+      }
+      
       String answer = "";
       System.out.println(msg);
       try {
@@ -78,6 +118,25 @@ public class IR4 {
       return answer;            
    }
    
+   //------------------------------------------------------------------------------------------------------------------
+   /** getString() for FastInput. Rejects null entry or any number of spaces.
+     * @param msg is the text that will be displayed the user to ask them to enter a value.
+     * @param in is the input to read from.
+     * @return Returns a String from the input. 
+     * @throws EndOfInputException when there is no input left.
+     */ 
+   private static String getStringFast(String msg, FastInput in) {
+      System.out.println(msg);
+      String answer = in.nextLine();
+      
+      while (answer.replace(" ", "").equals("")) {
+         System.err.println("Error: Missing input.");
+         System.out.println(msg);
+         answer = in.nextLine();
+      }
+      return answer;
+   }
+   
    //------------------------------------------------------------------------------------------------------------------
    /** Gets an Integer from the keyboard. Rejects null, spaces and non-integers.
      * @param msg is the text that will be displayed the user to ask them to enter a number.
@@ -85,6 +144,17 @@ public class IR4 {
      */  
    public static int getInteger(String msg) {
       System.out.println(msg);
+      FastInput in = input();
+      if (in != null) {
+         while (!in.hasNextInt()) {
+            in.skipLine();
+            System.err.println("Invalid integer. Try again.");
+         }
+         int number = in.nextInt();
+         in.skipLine(); //flushes the buffer
+         return number;
+      }
+      
       while (!keyboard.hasNextInt()) {
          keyboard.nextLine();
          System.err.println("Invalid integer. Try again.");
@@ -101,6 +171,17 @@ public class IR4 {
      */ 
    public static double getDouble(String msg) {
       System.out.println(msg);
+      FastInput in = input();
+      if (in != null) {
+         while (!in.hasNextDouble()) {
+            in.skipLine();
+            System.err.println("Invalid number. Try again.");
+         }
+         double number = in.nextDouble();
+         in.skipLine(); //flushes the buffer
+         return number;
+      }
+      
       while (!keyboard.hasNextDouble()) {
          keyboard.nextLine();
          System.err.println("Invalid number. Try again.");
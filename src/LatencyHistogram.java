@@ -0,0 +1,163 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ *  Counts how long something took in buckets that grow with the value, the way an HDR
+ *  histogram does: every power of two is split into 32 buckets, so any value is counted
+ *  within about 3% of what it was, from nanoseconds up to days, in under 2000 longs.
+ *
+ *  Recording is a few shifts and one atomic add, with no locks and no allocation, so it
+ *  can be left on in the game loop and called from many threads at once.
+ */
+
+public class LatencyHistogram implements LatencyHistogramMBean {
+
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param name - what is being timed, shown in dumps
+     */
+    public LatencyHistogram(String name){
+        this.name = name;
+    }
+
+    /**
+     * Counts one measurement
+     * @param nanos - time taken in nanoseconds, negative values count as 0
+     */
+    public void record(long nanos){
+        long value = Math.max(0, nanos);
+
+        counts.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        total.addAndGet(value);
+
+        long highest = max.get();
+
+        while (value > highest && !max.compareAndSet(highest, value)) {
+            highest = max.get();
+        }
+    }
+
+    /**
+     * Values below SUB_BUCKETS get a bucket each. Above that, the bucket is picked by
+     * the position of the highest set bit and the SUB_BUCKET_BITS bits after it.
+     */
+    static int bucketOf(long value){
+        if (value < SUB_BUCKETS){
+            return (int) value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int mantissa = (int) (value >>> (exponent - SUB_BUCKET_BITS));
+
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + (mantissa - SUB_BUCKETS);
+    }
+
+    /**
+     * @return the smallest value counted in a bucket
+     */
+    static long lowestValueOf(int bucket){
+        if (bucket < 2 * SUB_BUCKETS){
+            return bucket;
+        }
+
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long mantissa = bucket % SUB_BUCKETS + SUB_BUCKETS;
+
+        return mantissa << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * @param percent - 0 to 100, like 99.9
+     * @return the value the given percent of measurements were at or below, in nanoseconds
+     */
+    public long percentile(double percent){
+        long recorded = count.get();
+
+        if (recorded == 0){
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percent / 100 * recorded));
+        long seen = 0;
+
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts.get(bucket);
+
+            if (seen >= rank){
+                // Report the top of the bucket, but never more than the largest value seen
+                long highest = bucket + 1 < BUCKETS ? lowestValueOf(bucket + 1) - 1 : Long.MAX_VALUE;
+                return Math.min(highest, max.get());
+            }
+        }
+
+        return max.get();
+    }
+
+    /**
+     * Clears all counts
+     */
+    @Override
+    public void reset(){
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            counts.set(bucket, 0);
+        }
+
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    /**
+     * @return what is being timed
+     */
+    public String name(){
+        return name;
+    }
+
+    @Override
+    public long getCount(){
+        return count.get();
+    }
+
+    @Override
+    public double getMeanMicros(){
+        long recorded = count.get();
+        return recorded == 0 ? 0 : total.get() / 1e3 / recorded;
+    }
+
+    @Override
+    public double getP50Micros(){
+        return percentile(50) / 1e3;
+    }
+
+    @Override
+    public double getP99Micros(){
+        return percentile(99) / 1e3;
+    }
+
+    @Override
+    public double getP999Micros(){
+        return percentile(99.9) / 1e3;
+    }
+
+    @Override
+    public double getMaxMicros(){
+        return max.get() / 1e3;
+    }
+
+    @Override
+    public String toString(){
+        return String.format("%-16s count=%d mean=%.1fus p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus",
+                name, getCount(), getMeanMicros(), getP50Micros(), getP99Micros(), getP999Micros(), getMaxMicros());
+    }
+}
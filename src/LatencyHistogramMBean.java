@@ -0,0 +1,20 @@
+/**
+ *  What a LatencyHistogram shows over JMX. Times are in microseconds.
+ */
+
+public interface LatencyHistogramMBean {
+
+    long getCount();
+
+    double getMeanMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaxMicros();
+
+    void reset();
+}
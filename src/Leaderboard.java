@@ -0,0 +1,358 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ *  Elo ratings for named players, kept in step with an append-only log of match results.
+ *  Each result moves the two players' ratings by how surprising it was, so recording a
+ *  match costs the same however long the history is. A RatingIndex keeps the players
+ *  sorted by rating for rank and top-N lookups.
+ *
+ *  The log starts with an 8 byte magic number followed by two kinds of record:
+ *
+ *    'P' length name-bytes           a new player, ids count up from 0 in log order
+ *    'M' first second result         a match, first and second are ids and result is
+ *                                    FIRST_WINS, SECOND_WINS or TIE
+ *
+ *  Opening a log streams it once to replay the ratings and then indexes every player.
+ *  A record cut short by a crash is cut off the end of the file.
+ */
+
+public class Leaderboard implements AutoCloseable {
+
+    static final long MAGIC = 0x545454454C4F3031L; // "TTTELO01"
+    static final double INITIAL_RATING = 1500;
+    static final double K_FACTOR = 32;
+
+    private static final byte PLAYER = 'P';
+    private static final byte MATCH = 'M';
+    private static final int HEADER_BYTES = 8;
+    private static final int MATCH_BYTES = 10;
+
+    private final HashMap<String, Integer> ids = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private double[] ratings = new double[1024];
+    private int[] matches = new int[1024];
+    private final RatingIndex index = new RatingIndex(ratings);
+
+    private final FileOutputStream file;
+    private final DataOutputStream out;
+
+    /**
+     * Opens a log, creating it if needed, and rebuilds the ratings from it
+     * @param path - results log
+     */
+    public Leaderboard(Path path) throws IOException {
+        long validBytes = Files.exists(path) ? replay(path) : 0;
+
+        file = new FileOutputStream(path.toFile(), true);
+        FileChannel channel = file.getChannel();
+
+        if (channel.size() > validBytes){
+            channel.truncate(validBytes);
+        }
+
+        out = new DataOutputStream(new BufferedOutputStream(file));
+
+        // A new log, or one that died before its header was written, starts over
+        if (validBytes == 0){
+            out.writeLong(MAGIC);
+            out.flush();
+        }
+
+        for (int player = 0; player < names.size(); player++) {
+            index.add(player);
+        }
+    }
+
+    /**
+     * Reads the log and replays every record, without indexing
+     * @return bytes of the log that hold whole records, 0 if not even the header was written
+     */
+    private long replay(Path path) throws IOException {
+        try (InputStream stream = Files.newInputStream(path, StandardOpenOption.READ)) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+            long validBytes = 0;
+
+            try {
+                if (in.readLong() != MAGIC){
+                    throw new IOException(path + " is not a results log");
+                }
+
+                validBytes = HEADER_BYTES;
+
+                while (true) {
+                    byte type = in.readByte();
+
+                    if (type == PLAYER){
+                        byte[] name = new byte[in.readUnsignedShort()];
+                        in.readFully(name);
+                        addPlayer(new String(name, StandardCharsets.UTF_8));
+                        validBytes += 3 + name.length;
+                    } else if (type == MATCH){
+                        int first = in.readInt();
+                        int second = in.readInt();
+                        int result = in.readByte();
+
+                        if (first < 0 || first >= names.size() || second < 0 || second >= names.size()){
+                            break; // A torn write, not a real match
+                        }
+
+                        rate(first, second, result);
+                        validBytes += MATCH_BYTES;
+                    } else {
+                        break;
+                    }
+                }
+            } catch (EOFException e) {
+                // The last record was cut short, or the log ended cleanly
+            }
+
+            return validBytes;
+        }
+    }
+
+    /**
+     * @param name - player's name
+     * @return the player's id, adding a new player with the initial rating if needed
+     */
+    public int playerId(String name) throws IOException {
+        Integer id = ids.get(name);
+
+        if (id != null){
+            return id;
+        }
+
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+
+        if (bytes.length > 0xFFFF){
+            throw new IllegalArgumentException("Player names are limited to 65535 bytes");
+        }
+
+        out.writeByte(PLAYER);
+        out.writeShort(bytes.length);
+        out.write(bytes);
+
+        int player = addPlayer(name);
+        index.add(player);
+        return player;
+    }
+
+    private int addPlayer(String name){
+        int player = names.size();
+
+        if (player == ratings.length){
+            ratings = Arrays.copyOf(ratings, player * 2);
+            matches = Arrays.copyOf(matches, player * 2);
+            index.grow(ratings);
+        }
+
+        names.add(name);
+        ids.put(name, player);
+        ratings[player] = INITIAL_RATING;
+        return player;
+    }
+
+    /**
+     * Logs a match and updates both players' ratings and ranks
+     * @param first - id of the player who went first
+     * @param second - id of the other player
+     * @param result - FIRST_WINS, SECOND_WINS or TIE
+     */
+    public void record(int first, int second, int result) throws IOException {
+        // Checked before anything is written, a bad record would cut the log short on replay
+        if (first < 0 || first >= names.size() || second < 0 || second >= names.size()){
+            throw new IllegalArgumentException("No player with id " + (first < 0 || first >= names.size() ? first : second));
+        }
+
+        if (first == second){
+            throw new IllegalArgumentException("A player can't play a rated match against themselves");
+        }
+
+        if (result != GameEngine.FIRST_WINS && result != GameEngine.SECOND_WINS && result != GameEngine.TIE){
+            throw new IllegalArgumentException("A match result is FIRST_WINS, SECOND_WINS or TIE, not " + result);
+        }
+
+        out.writeByte(MATCH);
+        out.writeInt(first);
+        out.writeInt(second);
+        out.writeByte(result);
+
+        index.remove(first);
+        index.remove(second);
+        rate(first, second, result);
+        index.add(first);
+        index.add(second);
+    }
+
+    /**
+     * Moves both ratings toward the result, by more when it was less expected
+     */
+    private void rate(int first, int second, int result){
+        double expected = 1 / (1 + Math.pow(10, (ratings[second] - ratings[first]) / 400));
+        double score = result == GameEngine.FIRST_WINS ? 1 : result == GameEngine.SECOND_WINS ? 0 : 0.5;
+        double change = K_FACTOR * (score - expected);
+
+        ratings[first] += change;
+        ratings[second] -= change;
+        matches[first]++;
+        matches[second]++;
+    }
+
+    /**
+     * Hands recorded results to the operating system
+     */
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Flushes recorded results and waits until they are on disk
+     */
+    public void sync() throws IOException {
+        out.flush();
+        file.getFD().sync();
+    }
+
+    /**
+     * @param player - player id
+     * @return the player's rank, 1 for the best rating
+     */
+    public int rankOf(int player){
+        return index.rankOf(player);
+    }
+
+    /**
+     * @param count - number of players wanted
+     * @return ids of the best rated players, best first
+     */
+    public int[] top(int count){
+        return index.top(count);
+    }
+
+    /**
+     * @param player - player id
+     * @return the player's name
+     */
+    public String nameOf(int player){
+        return names.get(player);
+    }
+
+    /**
+     * @param player - player id
+     * @return the player's rating
+     */
+    public double ratingOf(int player){
+        return ratings[player];
+    }
+
+    /**
+     * @param player - player id
+     * @return number of rated matches the player has played
+     */
+    public int matchesOf(int player){
+        return matches[player];
+    }
+
+    /**
+     * @return number of players
+     */
+    public int players(){
+        return names.size();
+    }
+
+    /**
+     * @param player - player id
+     * @return one line with the player's rank, name, rating and matches played
+     */
+    public String describe(int player){
+        return String.format("%4d. %-20s %6.0f  (%d matches)",
+                rankOf(player), nameOf(player), ratingOf(player), matchesOf(player));
+    }
+
+    @Override
+    public void close() throws IOException {
+        sync();
+        out.close();
+    }
+
+    /**
+     * Records random matches between many players, then reopens the log and times the
+     * rebuild and the rank and top-N lookups
+     * @param args - log file, players and matches, 1000000 and 5000000 by default
+     */
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get(args.length > 0 ? args[0] : "leaderboard-test.log");
+        int playerCount = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        int matchCount = args.length > 2 ? Integer.parseInt(args[2]) : 5_000_000;
+        final int QUERIES = 1_000_000;
+        SplittableRandom random = new SplittableRandom(19);
+
+        Files.deleteIfExists(path);
+        long start = System.nanoTime();
+
+        try (Leaderboard board = new Leaderboard(path)) {
+            for (int i = 0; i < playerCount; i++) {
+                board.playerId("player" + i);
+            }
+
+            for (int i = 0; i < matchCount; i++) {
+                int first = random.nextInt(playerCount);
+                int second = (first + 1 + random.nextInt(playerCount - 1)) % playerCount;
+                board.record(first, second, 1 + random.nextInt(3));
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Recorded %d players and %d matches in %.2f seconds (%.0f matches/sec), log is %d MB%n",
+                playerCount, matchCount, seconds, matchCount / seconds, Files.size(path) >> 20);
+
+        start = System.nanoTime();
+
+        try (Leaderboard board = new Leaderboard(path)) {
+            System.out.printf("Rebuilt %d players from the log in %.2f seconds%n",
+                    board.players(), (System.nanoTime() - start) / 1e9);
+
+            start = System.nanoTime();
+            long rankSum = 0;
+
+            for (int i = 0; i < QUERIES; i++) {
+                rankSum += board.rankOf(random.nextInt(playerCount));
+            }
+
+            System.out.printf("rankOf: %.0f ns per lookup (average rank %d)%n",
+                    (double) (System.nanoTime() - start) / QUERIES, rankSum / QUERIES);
+
+            start = System.nanoTime();
+            int[] top = null;
+
+            for (int i = 0; i < QUERIES / 100; i++) {
+                top = board.top(10);
+            }
+
+            System.out.printf("top(10): %.0f ns per lookup%n", (double) (System.nanoTime() - start) / (QUERIES / 100));
+
+            for (int player : top) {
+                System.out.println(board.describe(player));
+            }
+        }
+
+        Files.delete(path);
+    }
+}
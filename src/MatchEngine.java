@@ -0,0 +1,239 @@
+/**
+ *  Plays a match, which is a series of games, without any console input or output.
+ *  The winner of each game gets a point and both players get half a point for a tie.
+ *  Scores are kept in half points so they stay whole numbers.
+ *
+ *  When a game ends the board is left as it was so it can be shown, and the caller
+ *  starts the next game with nextGame().
+ */
+
+public class MatchEngine {
+
+    private final GameEngine game;
+    private final int nbrOfGames;
+
+    private int gameNumber;
+    private int playerOneHalfPoints;
+    private int playerTwoHalfPoints;
+    private int lastGameResult;
+    private int result;
+    private EventBus events;
+
+    /**
+     * Creates a match and starts its first game
+     * @param board - board the games are played on
+     * @param nbrOfGames - most games the match can take
+     */
+    public MatchEngine(Board board, int nbrOfGames){
+        this.game = new GameEngine(board);
+        this.nbrOfGames = nbrOfGames;
+        this.gameNumber = 1;
+        this.lastGameResult = GameEngine.KEEP_PLAYING;
+        this.result = GameEngine.KEEP_PLAYING;
+    }
+
+    /**
+     * Plays the current player's move in the current game
+     * @param cell - cell index of the spot
+     * @return what happened: MOVE_REJECTED, MOVE_PLACED, GAME_ENDED or MATCH_ENDED
+     */
+    public GameEvent play(int cell){
+        int player = game.currentPlayer();
+        int gameResult = result == GameEngine.KEEP_PLAYING ? game.play(cell) : -GameEngine.GAME_OVER;
+
+        if (gameResult < 0){
+            return event(GameEvent.MOVE_REJECTED, player, cell, -gameResult);
+        }
+
+        if (gameResult == GameEngine.KEEP_PLAYING){
+            return event(GameEvent.MOVE_PLACED, player, cell, gameResult);
+        }
+
+        recordGame(gameResult);
+        GameMetrics.gameEnded(gameResult);
+
+        if (result != GameEngine.KEEP_PLAYING){
+            GameMetrics.matchEnded(result);
+
+            // Sinks see the game end before the match does
+            if (events != null){
+                event(GameEvent.GAME_ENDED, player, cell, gameResult);
+            }
+
+            return event(GameEvent.MATCH_ENDED, player, cell, result);
+        }
+
+        return event(GameEvent.GAME_ENDED, player, cell, gameResult);
+    }
+
+    /**
+     * Takes back the last move of the current game. A finished game has already been
+     * scored, so its moves can't be taken back.
+     * @return a MOVE_TAKEN_BACK event for the move, or null if there is none to take back
+     */
+    public GameEvent takeBack(){
+        if (game.isOver() || game.moveCount() == 0){
+            return null;
+        }
+
+        int cell = game.takeBack();
+        return event(GameEvent.MOVE_TAKEN_BACK, game.currentPlayer(), cell, GameEngine.KEEP_PLAYING);
+    }
+
+    /**
+     * Plays the last move taken back again, like play() would
+     * @return what happened, or null if there is nothing to redo
+     */
+    public GameEvent redo(){
+        int cell = game.redoMove();
+        return cell < 0 || game.isOver() ? null : play(cell);
+    }
+
+    /**
+     * Adds a finished game to the match score and decides the match if it is over
+     */
+    private void recordGame(int gameResult){
+        lastGameResult = gameResult;
+
+        if (gameResult == GameEngine.FIRST_WINS){
+            playerOneHalfPoints += 2;
+        } else if (gameResult == GameEngine.SECOND_WINS){
+            playerTwoHalfPoints += 2;
+        } else {
+            playerOneHalfPoints++;
+            playerTwoHalfPoints++;
+        }
+
+        // If a user has won more than half of the games,
+        // They can be declared the winner because the other
+        // player can no longer catch up
+        if (playerOneHalfPoints > nbrOfGames){
+            result = GameEngine.FIRST_WINS;
+        } else if (playerTwoHalfPoints > nbrOfGames){
+            result = GameEngine.SECOND_WINS;
+        } else if (gameNumber == nbrOfGames){
+            // If neither player has won the match after all
+            // games have been played, the match is a tie
+            result = GameEngine.TIE;
+        }
+    }
+
+    /**
+     * Clears the board and starts the next game of the match
+     * @throws IllegalStateException if the current game is not over or the match is over
+     */
+    public void nextGame(){
+        if (!game.isOver() || result != GameEngine.KEEP_PLAYING){
+            throw new IllegalStateException("The next game can only start after a game ends and before the match ends");
+        }
+
+        gameNumber++;
+        game.newGame();
+    }
+
+    /**
+     * Puts a match back the way it was saved, such as after a restart. The current
+     * game's moves are replayed on the board afterwards through game().play().
+     * @param gameNumber - number of the current game, starting at 1
+     * @param playerOneHalfPoints - player one's match score in half points
+     * @param playerTwoHalfPoints - player two's match score in half points
+     * @param lastGameResult - result of the most recently finished game
+     * @param result - KEEP_PLAYING, FIRST_WINS, SECOND_WINS or TIE for the match
+     */
+    void restore(int gameNumber, int playerOneHalfPoints, int playerTwoHalfPoints, int lastGameResult, int result){
+        this.gameNumber = gameNumber;
+        this.playerOneHalfPoints = playerOneHalfPoints;
+        this.playerTwoHalfPoints = playerTwoHalfPoints;
+        this.lastGameResult = lastGameResult;
+        this.result = result;
+        game.newGame();
+    }
+
+    private GameEvent event(int type, int player, int cell, int code){
+        GameEvent event = new GameEvent(type, player, cell, code, gameNumber, playerOneHalfPoints, playerTwoHalfPoints);
+
+        if (events != null){
+            events.publish(event);
+        }
+
+        return event;
+    }
+
+    /**
+     * Publishes every event of the match to a bus from now on
+     * @param events - bus to publish to, or null to stop publishing
+     */
+    public void publishTo(EventBus events){
+        this.events = events;
+    }
+
+    /**
+     * @return the game currently being played
+     */
+    public GameEngine game(){
+        return game;
+    }
+
+    /**
+     * @return the number of the current game, starting at 1
+     */
+    public int gameNumber(){
+        return gameNumber;
+    }
+
+    /**
+     * @return most games the match can take
+     */
+    public int nbrOfGames(){
+        return nbrOfGames;
+    }
+
+    /**
+     * @return player one's match score
+     */
+    public double playerOneScore(){
+        return playerOneHalfPoints / 2.0;
+    }
+
+    /**
+     * @return player two's match score
+     */
+    public double playerTwoScore(){
+        return playerTwoHalfPoints / 2.0;
+    }
+
+    /**
+     * @return player one's match score in half points
+     */
+    int playerOneHalfPoints(){
+        return playerOneHalfPoints;
+    }
+
+    /**
+     * @return player two's match score in half points
+     */
+    int playerTwoHalfPoints(){
+        return playerTwoHalfPoints;
+    }
+
+    /**
+     * @return result of the most recently finished game, or KEEP_PLAYING before the first game ends
+     */
+    public int lastGameResult(){
+        return lastGameResult;
+    }
+
+    /**
+     * @return KEEP_PLAYING while the match is going, otherwise FIRST_WINS, SECOND_WINS or TIE
+     */
+    public int result(){
+        return result;
+    }
+
+    /**
+     * @return True - the match has been decided, False - more games are left
+     */
+    public boolean isOver(){
+        return result != GameEngine.KEEP_PLAYING;
+    }
+}
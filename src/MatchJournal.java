@@ -0,0 +1,370 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ObjIntConsumer;
+
+/**
+ *  Saves every match in progress to a memory-mapped file so the matches can be picked
+ *  up again after the program dies. Each match gets a slot in the file, and a checkpoint
+ *  copies the match's scores, game number and current game moves into its slot. That is
+ *  a few stores into memory; the operating system writes the pages out on its own, and
+ *  force() or a background flusher makes sure they reach the disk in batches instead of
+ *  once per move.
+ *
+ *  Every slot holds two copies. A checkpoint overwrites the older copy and writes its
+ *  sequence number last, and every copy has a checksum, so a crash in the middle of a
+ *  checkpoint leaves the other copy to restore from.
+ *
+ *  Different slots can be checkpointed from different threads at the same time.
+ */
+
+public class MatchJournal implements AutoCloseable {
+
+    static final long MAGIC = 0x5454544A524E4C31L; // "TTTJRNL1"
+
+    private static final int HEADER_BYTES = 16;    // magic, capacity, max moves
+
+    // Copy layout, in bytes from the start of the copy
+    private static final int SEQUENCE = 0;         // long, 0 for a copy never written
+    private static final int CHECKSUM = 8;         // int, over everything after it
+    private static final int WIDTH = 12;           // byte
+    private static final int HEIGHT = 13;          // byte
+    private static final int WIN_LENGTH = 14;      // byte
+    private static final int NBR_OF_GAMES = 15;    // byte
+    private static final int GAME_NUMBER = 16;     // byte
+    private static final int LAST_GAME_RESULT = 17; // byte
+    private static final int MATCH_RESULT = 18;    // byte
+    private static final int IN_USE = 19;          // byte, 0 once the slot is released
+    private static final int PLAYER_ONE_POINTS = 20; // short, half points
+    private static final int PLAYER_TWO_POINTS = 22; // short, half points
+    private static final int MOVE_COUNT = 24;      // short
+    private static final int MOVES = 26;           // shorts, cell indexes of the current game
+
+    private static final int NO_COPY = -1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer map;
+    private final int capacity;
+    private final int maxMoves;
+    private final int copyBytes;
+
+    private final boolean[] inUse;
+    private final int[] freeSlots;
+    private int freeCount;
+
+    private volatile boolean dirty;
+    private ScheduledExecutorService flusher;
+
+    /**
+     * Opens a journal, creating it if needed. An existing journal keeps the capacity and
+     * move limit it was created with, and is refused if its move limit is below maxMoves.
+     * @param path - journal file
+     * @param capacity - most matches saved at once
+     * @param maxMoves - most moves in a game, the number of spots on the largest board
+     */
+    public MatchJournal(Path path, int capacity, int maxMoves) throws IOException {
+        boolean exists = Files.exists(path) && Files.size(path) >= HEADER_BYTES;
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+
+        if (exists){
+            channel.read(header, 0);
+
+            if (header.getLong(0) != MAGIC){
+                channel.close();
+                throw new IOException(path + " is not a match journal");
+            }
+
+            // Slots sized for smaller boards would be overrun by this caller's games
+            if (header.getInt(12) < maxMoves){
+                channel.close();
+                throw new IOException(path + " holds games of up to " + header.getInt(12) + " moves, "
+                        + maxMoves + " are needed");
+            }
+
+            capacity = header.getInt(8);
+            maxMoves = header.getInt(12);
+        } else {
+            header.putLong(0, MAGIC).putInt(8, capacity).putInt(12, maxMoves);
+            channel.write(header, 0);
+        }
+
+        this.capacity = capacity;
+        this.maxMoves = maxMoves;
+        this.copyBytes = (MOVES + 2 * maxMoves + 7) & ~7;
+
+        if ((long) capacity * 2 * copyBytes > Integer.MAX_VALUE){
+            channel.close();
+            throw new IllegalArgumentException("A journal can hold at most " + Integer.MAX_VALUE / (2 * copyBytes) + " matches");
+        }
+
+        map = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES, (long) capacity * 2 * copyBytes);
+        map.order(ByteOrder.LITTLE_ENDIAN);
+
+        inUse = new boolean[capacity];
+        freeSlots = new int[capacity];
+
+        // Find every slot still in use, free slots are handed out lowest first
+        for (int slot = capacity - 1; slot >= 0; slot--) {
+            int copy = newestCopy(slot);
+
+            inUse[slot] = copy != NO_COPY && map.get(copy + IN_USE) != 0;
+
+            if (!inUse[slot]){
+                freeSlots[freeCount++] = slot;
+            }
+        }
+    }
+
+    /**
+     * @return the offset of the slot's newest copy with a good checksum, or NO_COPY
+     */
+    private int newestCopy(int slot){
+        int first = slot * 2 * copyBytes;
+        int second = first + copyBytes;
+        boolean firstGood = isValid(first);
+        boolean secondGood = isValid(second);
+
+        if (firstGood && secondGood){
+            return map.getLong(first + SEQUENCE) > map.getLong(second + SEQUENCE) ? first : second;
+        }
+
+        return firstGood ? first : secondGood ? second : NO_COPY;
+    }
+
+    private boolean isValid(int copy){
+        return map.getLong(copy + SEQUENCE) != 0 && map.getInt(copy + CHECKSUM) == checksum(copy);
+    }
+
+    private int checksum(int copy){
+        int end = copy + MOVES + 2 * Math.min(maxMoves, Math.max(0, map.getShort(copy + MOVE_COUNT)));
+        int hash = 0x811C9DC5;
+
+        for (int i = copy + WIDTH; i < end; i++) {
+            hash = (hash ^ map.get(i)) * 0x01000193;
+        }
+
+        return hash;
+    }
+
+    /**
+     * Reserves a slot for a new match
+     * @return the slot number
+     * @throws IllegalStateException if every slot is in use
+     */
+    public synchronized int allocate(){
+        if (freeCount == 0){
+            throw new IllegalStateException("All " + capacity + " journal slots are in use");
+        }
+
+        int slot = freeSlots[--freeCount];
+        inUse[slot] = true;
+        return slot;
+    }
+
+    /**
+     * Saves a match into its slot. The save is in memory until the next force().
+     * @param slot - slot from allocate()
+     * @param match - match to save
+     */
+    public void checkpoint(int slot, MatchEngine match){
+        GameEngine game = match.game();
+        Board board = game.board();
+
+        if (game.moveCount() > maxMoves){
+            throw new IllegalArgumentException("The journal holds games of up to " + maxMoves + " moves, not " + game.moveCount());
+        }
+
+        int copy = olderCopy(slot);
+
+        map.put(copy + WIDTH, (byte) board.width);
+        map.put(copy + HEIGHT, (byte) board.height);
+        map.put(copy + WIN_LENGTH, (byte) board.winLength);
+        map.put(copy + NBR_OF_GAMES, (byte) match.nbrOfGames());
+        map.put(copy + GAME_NUMBER, (byte) match.gameNumber());
+        map.put(copy + LAST_GAME_RESULT, (byte) match.lastGameResult());
+        map.put(copy + MATCH_RESULT, (byte) match.result());
+        map.put(copy + IN_USE, (byte) 1);
+        map.putShort(copy + PLAYER_ONE_POINTS, (short) match.playerOneHalfPoints());
+        map.putShort(copy + PLAYER_TWO_POINTS, (short) match.playerTwoHalfPoints());
+        map.putShort(copy + MOVE_COUNT, (short) game.moveCount());
+
+        for (int i = 0; i < game.moveCount(); i++) {
+            map.putShort(copy + MOVES + 2 * i, (short) game.moveAt(i));
+        }
+
+        commit(slot, copy);
+    }
+
+    /**
+     * Frees a match's slot once the match is over, so it isn't restored
+     * @param slot - slot from allocate()
+     */
+    public synchronized void release(int slot){
+        int copy = olderCopy(slot);
+
+        map.put(copy + IN_USE, (byte) 0);
+        map.putShort(copy + MOVE_COUNT, (short) 0);
+        commit(slot, copy);
+
+        inUse[slot] = false;
+        freeSlots[freeCount++] = slot;
+    }
+
+    private int olderCopy(int slot){
+        int first = slot * 2 * copyBytes;
+        return map.getLong(first + SEQUENCE) <= map.getLong(first + copyBytes + SEQUENCE) ? first : first + copyBytes;
+    }
+
+    /**
+     * Seals a written copy: checksum first, then the sequence number that makes it the newest
+     */
+    private void commit(int slot, int copy){
+        int other = copy == slot * 2 * copyBytes ? copy + copyBytes : copy - copyBytes;
+        long sequence = Math.max(map.getLong(copy + SEQUENCE), map.getLong(other + SEQUENCE)) + 1;
+
+        map.putInt(copy + CHECKSUM, checksum(copy));
+        map.putLong(copy + SEQUENCE, sequence);
+        dirty = true;
+    }
+
+    /**
+     * Rebuilds every saved match, replaying the moves of its current game
+     * @param consumer - receives each match and its slot, keep the slot to go on checkpointing it
+     * @return number of matches restored
+     */
+    public int restore(ObjIntConsumer<MatchEngine> consumer){
+        int restored = 0;
+
+        for (int slot = 0; slot < capacity; slot++) {
+            int copy = inUse[slot] ? newestCopy(slot) : NO_COPY;
+
+            if (copy == NO_COPY || map.get(copy + IN_USE) == 0){
+                continue; // Free, or allocated but not checkpointed yet
+            }
+
+            Board board = new Board(map.get(copy + WIDTH), map.get(copy + HEIGHT), map.get(copy + WIN_LENGTH));
+            MatchEngine match = new MatchEngine(board, map.get(copy + NBR_OF_GAMES));
+            match.restore(map.get(copy + GAME_NUMBER), map.getShort(copy + PLAYER_ONE_POINTS),
+                    map.getShort(copy + PLAYER_TWO_POINTS), map.get(copy + LAST_GAME_RESULT), map.get(copy + MATCH_RESULT));
+
+            int moveCount = map.getShort(copy + MOVE_COUNT);
+
+            for (int i = 0; i < moveCount; i++) {
+                match.game().play(map.getShort(copy + MOVES + 2 * i));
+            }
+
+            consumer.accept(match, slot);
+            restored++;
+        }
+
+        return restored;
+    }
+
+    /**
+     * Writes all checkpoints made since the last force to disk
+     */
+    public void force(){
+        if (dirty){
+            dirty = false;
+            map.force();
+        }
+    }
+
+    /**
+     * Forces the journal to disk on a background thread every few milliseconds, so a
+     * crash of the whole machine loses at most that much play
+     * @param periodMillis - milliseconds between forces
+     */
+    public synchronized void startFlusher(long periodMillis){
+        if (flusher == null){
+            flusher = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "journal-flusher");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleWithFixedDelay(this::force, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return number of slots in use
+     */
+    public synchronized int size(){
+        return capacity - freeCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (flusher != null){
+                flusher.shutdown();
+            }
+        }
+
+        force();
+        channel.close();
+    }
+
+    /**
+     * Saves a large number of matches in progress, then reopens the journal and times
+     * how long restoring them takes
+     * @param args - journal file and number of matches, 200000 by default
+     */
+    public static void main(String[] args) throws IOException {
+        Path path = Paths.get(args.length > 0 ? args[0] : "matches.journal");
+        int matches = args.length > 1 ? Integer.parseInt(args[1]) : 200_000;
+        SplittableRandom random = new SplittableRandom(11);
+
+        Files.deleteIfExists(path);
+
+        try (MatchJournal journal = new MatchJournal(path, matches, GameRecord.MAX_MOVES)) {
+            long start = System.nanoTime();
+            long checkpoints = 0;
+
+            for (int i = 0; i < matches; i++) {
+                MatchEngine match = new MatchEngine(new Board(), GameSession.NBR_OF_GAMES);
+                int slot = journal.allocate();
+                int moves = random.nextInt(GameRecord.MAX_MOVES);
+
+                for (int move = 0; move < moves && !match.game().isOver(); move++) {
+                    match.play(RandomStrategy.randomEmptyCell(match.game().board(), random));
+                    journal.checkpoint(slot, match);
+                    checkpoints++;
+                }
+
+                journal.checkpoint(slot, match);
+                checkpoints++;
+            }
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d checkpoints in %.2f seconds, %.0f checkpoints/sec%n",
+                    checkpoints, seconds, checkpoints / seconds);
+
+            start = System.nanoTime();
+            journal.force();
+            System.out.printf("Forced to disk in %.1f ms%n", (System.nanoTime() - start) / 1e6);
+        }
+
+        long start = System.nanoTime();
+
+        try (MatchJournal journal = new MatchJournal(path, matches, GameRecord.MAX_MOVES)) {
+            long[] placed = new long[1];
+            int restored = journal.restore((match, slot) -> placed[0] += match.game().moveCount());
+
+            System.out.printf("Restored %d matches with %d moves in %.1f ms%n",
+                    restored, placed[0], (System.nanoTime() - start) / 1e6);
+        }
+    }
+}
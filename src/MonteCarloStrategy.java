@@ -0,0 +1,408 @@
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ *  A computer opponent that picks moves with Monte Carlo tree search. Instead of scoring
+ *  positions it plays thousands of random games (playouts) from them, and grows a tree
+ *  toward the moves whose playouts win most often.
+ *
+ *  All threads search the same tree at once. A thread walking down the tree adds a
+ *  virtual loss to every node it passes, which makes that path look worse to the other
+ *  threads until its playout is counted, so they spread out over different moves instead
+ *  of all following the same one. Node counts are updated with atomic adds, and each
+ *  thread plays its playouts with its own SplittableRandom rather than a shared one
+ *  like Math.random(). The helper threads come from a pool the strategy keeps for its
+ *  lifetime, so a move doesn't pay for starting threads.
+ *
+ *  The search stops when its time or playout budget runs out, whichever comes first.
+ *  The part of the tree under the move played is kept for the next move of the same
+ *  game, so playouts from earlier turns aren't thrown away.
+ */
+
+public class MonteCarloStrategy implements MoveStrategy {
+
+    static final long DEFAULT_BUDGET_NANOS = 50_000_000L;
+
+    // How strongly the search tries moves with few playouts, sqrt(2) in textbook UCT
+    private static final double EXPLORATION = 1.4;
+
+    // Playouts a thread charges to a path as losses until its own playout is counted
+    private static final int VIRTUAL_LOSS = 1;
+
+    // A node's counts are packed into one long so both change in a single atomic add:
+    // playouts in the high half, half points won in the low half
+    private static final int VISIT_SHIFT = 32;
+    private static final long POINTS_MASK = 0xFFFFFFFFL;
+
+    private static final int WIN_POINTS = 2;
+    private static final int TIE_POINTS = 1;
+
+    private final long budgetNanos;
+    private final long maxPlayouts;
+    private final int threads;
+    private final SplittableRandom random;
+
+    // Threads that search alongside the caller, null when the caller searches alone.
+    // Idle pool threads are daemons and time out, so the pool never has to be shut down.
+    private final ForkJoinPool helpers;
+
+    // Tree kept between moves of a game, with the position it starts from
+    private Node root;
+    private Board rootBoard;
+
+    private long lastPlayouts;
+    private long lastNanos;
+    private long lastReused;
+
+    /**
+     * One move in the tree, with the results of the playouts that went through it
+     */
+    private static final class Node {
+        final int move;
+        final int player;
+        final AtomicLong stats = new AtomicLong();
+        volatile Node[] children;
+        volatile int result = -1; // Game result after the move, -1 until it is first reached
+
+        Node(int move, int player){
+            this.move = move;
+            this.player = player;
+        }
+
+        long visits(){
+            return stats.get() >>> VISIT_SHIFT;
+        }
+    }
+
+    /**
+     * Creates a player with 50 ms per move on every core
+     * @param random - generator owned by this strategy, the search threads are split from it
+     */
+    public MonteCarloStrategy(SplittableRandom random){
+        this(DEFAULT_BUDGET_NANOS, Long.MAX_VALUE, Runtime.getRuntime().availableProcessors(), random);
+    }
+
+    /**
+     * @param budgetNanos - time allowed per move in nanoseconds
+     * @param maxPlayouts - playouts allowed per move
+     * @param threads - number of threads searching the tree
+     * @param random - generator owned by this strategy, the search threads are split from it
+     */
+    public MonteCarloStrategy(long budgetNanos, long maxPlayouts, int threads, SplittableRandom random){
+        this.budgetNanos = budgetNanos;
+        this.maxPlayouts = maxPlayouts;
+        this.threads = threads;
+        this.random = random;
+        this.helpers = threads > 1 ? new ForkJoinPool(threads - 1) : null;
+    }
+
+    @Override
+    public int chooseMove(Board board, int player){
+        long start = System.nanoTime();
+        Board position = copyOf(board);
+
+        reuseTree(position, player);
+        lastReused = root.visits();
+
+        // Take a win, or block one, without searching
+        int move = HeuristicStrategy.findWinningMove(position, player);
+
+        if (move < 0){
+            move = HeuristicStrategy.findWinningMove(position, GameEngine.otherPlayer(player));
+        }
+
+        lastPlayouts = 0;
+
+        if (move < 0){
+            expand(root, position);
+            search(position, start + budgetNanos);
+            move = mostVisitedChild(root).move;
+        }
+
+        lastNanos = System.nanoTime() - start;
+
+        position.place(move, player);
+        root = childFor(root, move, player);
+        rootBoard = position;
+
+        return move;
+    }
+
+    /**
+     * Runs playouts on all threads until the time or playout budget runs out
+     */
+    private void search(Board position, long deadline){
+        AtomicLong playouts = new AtomicLong();
+        ForkJoinTask<?>[] workers = new ForkJoinTask<?>[threads - 1];
+
+        for (int i = 0; i < workers.length; i++) {
+            SplittableRandom workerRandom = random.split();
+            workers[i] = helpers.submit(() -> runPlayouts(position, workerRandom, playouts, deadline));
+        }
+
+        // The calling thread searches too
+        runPlayouts(position, random, playouts, deadline);
+
+        for (ForkJoinTask<?> worker : workers) {
+            worker.join();
+        }
+
+        lastPlayouts = playouts.get();
+    }
+
+    private void runPlayouts(Board position, SplittableRandom random, AtomicLong playouts, long deadline){
+        Board board = copyOf(position);
+        Node[] path = new Node[board.cells + 1];
+        int[] empties = new int[board.cells];
+
+        while (playouts.get() < maxPlayouts && System.nanoTime() < deadline) {
+            int depth = select(board, path);
+            Node leaf = path[depth - 1];
+            int result = leaf.result > GameEngine.KEEP_PLAYING ? leaf.result : playout(board, leaf, empties, random);
+
+            // Count the playout on every node of the path and take back the virtual loss
+            for (int i = 0; i < depth; i++) {
+                Node node = path[i];
+                long visits = (1L - (i == 0 ? 0 : VIRTUAL_LOSS)) << VISIT_SHIFT;
+                node.stats.getAndAdd(visits + pointsFor(node.player, result));
+            }
+
+            for (int i = depth - 1; i > 0; i--) {
+                board.remove(path[i].move, path[i].player);
+            }
+
+            playouts.incrementAndGet();
+        }
+    }
+
+    /**
+     * Walks from the root to a leaf, playing the moves on the board and adding a virtual
+     * loss to each node passed. Expands the leaf if it has been played out before.
+     * @return the number of nodes on the path, including the root
+     */
+    private int select(Board board, Node[] path){
+        Node node = root;
+        int depth = 0;
+        path[depth++] = node;
+
+        while (node.result <= GameEngine.KEEP_PLAYING) {
+            Node[] children = node.children;
+
+            if (children == null){
+                if (node != root && node.visits() <= VIRTUAL_LOSS){
+                    break; // Play it out first, expand on a later visit
+                }
+                children = expand(node, board);
+            }
+
+            node = bestChild(node, children);
+            node.stats.getAndAdd((long) VIRTUAL_LOSS << VISIT_SHIFT);
+            board.place(node.move, node.player);
+
+            if (node.result < 0){
+                node.result = GameEngine.checkForWin(board, node.move, node.player);
+            }
+
+            path[depth++] = node;
+        }
+
+        return depth;
+    }
+
+    /**
+     * Picks the child with the best UCT score: its win rate plus a bonus for having
+     * few playouts. Children with no playouts are tried first.
+     */
+    private static Node bestChild(Node parent, Node[] children){
+        double logVisits = Math.log(Math.max(1, parent.visits()));
+        Node best = children[0];
+        double bestScore = Double.NEGATIVE_INFINITY;
+
+        for (Node child : children) {
+            long stats = child.stats.get();
+            long visits = stats >>> VISIT_SHIFT;
+
+            if (visits == 0){
+                return child;
+            }
+
+            double winRate = (stats & POINTS_MASK) / (double) (WIN_POINTS * visits);
+            double score = winRate + EXPLORATION * Math.sqrt(logVisits / visits);
+
+            if (score > bestScore){
+                bestScore = score;
+                best = child;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Adds a child for every blank spot. Only one thread expands a node, the others
+     * wait and use its children.
+     */
+    private static Node[] expand(Node node, Board board){
+        synchronized (node) {
+            if (node.children == null){
+                int player = GameEngine.otherPlayer(node.player);
+                Node[] children = new Node[board.cells - board.markCount()];
+                int count = 0;
+
+                for (int cell = 0; cell < board.cells; cell++) {
+                    if (board.isEmpty(cell)){
+                        children[count++] = new Node(cell, player);
+                    }
+                }
+
+                node.children = children;
+            }
+
+            return node.children;
+        }
+    }
+
+    /**
+     * Plays random moves from the leaf's position to the end of the game and then takes
+     * them back
+     * @return FIRST_WINS, SECOND_WINS or TIE
+     */
+    private static int playout(Board board, Node leaf, int[] empties, SplittableRandom random){
+        int count = 0;
+
+        for (int cell = 0; cell < board.cells; cell++) {
+            if (board.isEmpty(cell)){
+                empties[count++] = cell;
+            }
+        }
+
+        int played = 0;
+        int player = leaf.player;
+        int result = GameEngine.KEEP_PLAYING;
+
+        while (result == GameEngine.KEEP_PLAYING) {
+            player = GameEngine.otherPlayer(player);
+
+            // Swap a random blank spot to the end of the unplayed ones and play it
+            int pick = random.nextInt(count - played);
+            int cell = empties[pick];
+            empties[pick] = empties[count - played - 1];
+            empties[count - played - 1] = cell;
+            played++;
+
+            board.place(cell, player);
+            result = GameEngine.checkForWin(board, cell, player);
+        }
+
+        for (int i = 0; i < played; i++) {
+            int cell = empties[count - 1 - i];
+            board.remove(cell, board.get(cell));
+        }
+
+        return result;
+    }
+
+    /**
+     * @param player - player who made a node's move
+     * @param result - FIRST_WINS, SECOND_WINS or TIE
+     * @return half points the result is worth to the player
+     */
+    private static long pointsFor(int player, int result){
+        if (result == GameEngine.TIE){
+            return TIE_POINTS;
+        }
+
+        boolean won = (result == GameEngine.FIRST_WINS) == (player == Board.PLAYER_ONE);
+        return won ? WIN_POINTS : 0;
+    }
+
+    private static Node mostVisitedChild(Node node){
+        Node best = null;
+
+        for (Node child : node.children) {
+            if (best == null || child.visits() > best.visits()){
+                best = child;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * Keeps the tree from the last move if the board is the same position plus one
+     * opponent move, otherwise starts a new tree
+     */
+    private void reuseTree(Board position, int player){
+        int opponent = GameEngine.otherPlayer(player);
+        int newMove = -1;
+
+        if (root != null && rootBoard.cells == position.cells && rootBoard.winLength == position.winLength
+                && position.markCount() == rootBoard.markCount() + 1){
+
+            for (int cell = 0; cell < position.cells; cell++) {
+                int before = rootBoard.get(cell);
+                int now = position.get(cell);
+
+                if (before == now){
+                    continue;
+                }
+
+                if (before != Board.EMPTY || now != opponent || newMove >= 0){
+                    newMove = -1;
+                    break;
+                }
+
+                newMove = cell;
+            }
+        }
+
+        root = newMove >= 0 ? childFor(root, newMove, opponent) : new Node(-1, opponent);
+        root.result = GameEngine.KEEP_PLAYING;
+    }
+
+    /**
+     * @return the child of a node for a move, or a new node if the move has not been searched
+     */
+    private static Node childFor(Node node, int move, int player){
+        Node[] children = node.children;
+
+        if (children != null){
+            for (Node child : children) {
+                if (child.move == move){
+                    return child;
+                }
+            }
+        }
+
+        return new Node(move, player);
+    }
+
+    private static Board copyOf(Board board){
+        Board copy = new Board(board.width, board.height, board.winLength);
+
+        for (int cell = 0; cell < board.cells; cell++) {
+            int owner = board.get(cell);
+
+            if (owner != Board.EMPTY){
+                copy.place(cell, owner);
+            }
+        }
+
+        return copy;
+    }
+
+    /**
+     * @return playouts per second for the last move
+     */
+    public double playoutsPerSecond(){
+        return lastNanos == 0 ? 0 : lastPlayouts * 1e9 / lastNanos;
+    }
+
+    @Override
+    public String lastMoveStats(){
+        return String.format("%d playouts, %d reused, %.0f playouts/sec on %d threads",
+                lastPlayouts, lastReused, playoutsPerSecond(), threads);
+    }
+}
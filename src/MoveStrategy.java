@@ -0,0 +1,23 @@
+/**
+ *  Something that can pick a move for a player: a person at the console, a bot, or
+ *  a perfect solver. The game loop asks the strategy of the player whose turn it is.
+ */
+
+public interface MoveStrategy {
+
+    /**
+     * Picks a move for a player. The board must be left as it was.
+     * @param board - current position, with at least one blank spot
+     * @param player - Board.PLAYER_ONE or Board.PLAYER_TWO
+     * @return the cell index of a blank spot
+     */
+    int chooseMove(Board board, int player);
+
+    /**
+     * @return a short description of how the last move was chosen, such as search
+     *         depth and speed, or null if the strategy has nothing to report
+     */
+    default String lastMoveStats(){
+        return null;
+    }
+}
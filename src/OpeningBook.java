@@ -0,0 +1,308 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.SplittableRandom;
+
+/**
+ *  The outcome and a best move for every position of a small board, worked out ahead of
+ *  time and saved to a file. Opening the file memory maps it and reads nothing else, so
+ *  the book is ready straight away and its pages are only loaded as lookups touch them.
+ *  A lookup is a PositionIndex lookup followed by reading one byte.
+ *
+ *  The file is little endian:
+ *
+ *    header       64 bytes: magic, version, width, height, winLength, positions,
+ *                 buckets and slots, then zeros
+ *    keys         8 bytes per position, the PositionIndex's canonical keys
+ *    seeds        4 bytes per bucket of the PositionIndex's perfect hash
+ *    slots        4 bytes per slot of the perfect hash
+ *    entries      1 byte per position: the outcome in the top two bits and the best
+ *                 move, as a cell of the canonical position, in the low six
+ *
+ *  Outcomes are for the player to move. A file with a different version is refused
+ *  rather than misread.
+ */
+
+public class OpeningBook {
+
+    static final long MAGIC = 0x545454424F4F4B31L; // "TTTBOOK1"
+    static final int VERSION = 1;
+
+    // Outcomes for the player to move
+    static final int LOSS = 0;
+    static final int DRAW = 1;
+    static final int WIN = 2;
+    static final int GAME_OVER = 3;
+
+    private static final int HEADER_BYTES = 64;
+    private static final int NO_MOVE = 0x3F;
+    private static final byte UNSOLVED = Byte.MIN_VALUE;
+
+    private final PositionIndex index;
+    private final ByteBuffer entries;
+
+    private OpeningBook(PositionIndex index, ByteBuffer entries){
+        this.index = index;
+        this.entries = entries;
+    }
+
+    /**
+     * Works out every position of a board and writes the book to a file
+     * @param path - file to write
+     * @param width - number of columns
+     * @param height - number of rows
+     * @param winLength - number of marks in a line needed to win
+     * @return number of positions in the book
+     */
+    public static int generate(Path path, int width, int height, int winLength) throws IOException {
+        if (width * height > NO_MOVE){
+            throw new IllegalArgumentException("Opening books hold boards with fewer than " + NO_MOVE + " spots");
+        }
+
+        PositionIndex index = new PositionIndex(width, height, winLength);
+        int positions = index.size();
+        byte[] scores = new byte[positions];
+        byte[] entries = new byte[positions];
+
+        java.util.Arrays.fill(scores, UNSOLVED);
+        java.util.Arrays.fill(entries, (byte) (GAME_OVER << 6 | NO_MOVE));
+        solve(index, new Board(width, height, winLength), Board.PLAYER_ONE, scores, entries);
+
+        ByteBuffer keys = ByteBuffer.allocate(positions * 8).order(ByteOrder.LITTLE_ENDIAN);
+        keys.asLongBuffer().put(index.keys());
+        ByteBuffer seeds = ByteBuffer.allocate(index.bucketSeeds().limit() * 4).order(ByteOrder.LITTLE_ENDIAN);
+        seeds.asIntBuffer().put(index.bucketSeeds());
+        ByteBuffer slots = ByteBuffer.allocate(index.slotIndexes().limit() * 4).order(ByteOrder.LITTLE_ENDIAN);
+        slots.asIntBuffer().put(index.slotIndexes());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(MAGIC).putInt(VERSION).putInt(width).putInt(height).putInt(winLength)
+              .putInt(positions).putInt(index.bucketSeeds().limit()).putInt(index.slotIndexes().limit());
+        header.clear();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer[] sections = {header, keys, seeds, slots, ByteBuffer.wrap(entries)};
+
+            while (sections[sections.length - 1].hasRemaining()) {
+                channel.write(sections);
+            }
+        }
+
+        return positions;
+    }
+
+    /**
+     * Scores a position the way Solver does, from the player to move's point of view:
+     * a win counts more the sooner it comes, and 0 is a draw. Each canonical position is
+     * scored once and its best move saved in the canonical position's orientation.
+     */
+    private static int solve(PositionIndex index, Board board, int player, byte[] scores, byte[] entries){
+        Symmetry symmetry = index.symmetry;
+        int one = (int) board.marksOf(Board.PLAYER_ONE);
+        int two = (int) board.marksOf(Board.PLAYER_TWO);
+        int sym = symmetry.canonicalSymmetry(one, two);
+        int position = index.indexOfCanonical(Symmetry.key(symmetry.transformMask(sym, one), symmetry.transformMask(sym, two)));
+
+        if (scores[position] != UNSOLVED){
+            return scores[position];
+        }
+
+        int bestScore = Integer.MIN_VALUE;
+        int bestMove = -1;
+
+        for (int cell = 0; cell < board.cells; cell++) {
+            if (!board.isEmpty(cell)){
+                continue;
+            }
+
+            board.place(cell, player);
+            int score;
+
+            if (board.winsThrough(cell, player)){
+                score = board.cells - board.markCount() + 1;
+            } else if (board.isFull()){
+                score = 0;
+            } else {
+                score = -solve(index, board, GameEngine.otherPlayer(player), scores, entries);
+            }
+
+            board.remove(cell, player);
+
+            if (score > bestScore){
+                bestScore = score;
+                bestMove = cell;
+            }
+        }
+
+        int outcome = bestScore > 0 ? WIN : bestScore < 0 ? LOSS : DRAW;
+        scores[position] = (byte) bestScore;
+        entries[position] = (byte) (outcome << 6 | symmetry.transformCell(sym, bestMove));
+        return bestScore;
+    }
+
+    /**
+     * Maps a book file. Nothing is read up front apart from the header.
+     * @param path - file written by generate
+     * @return the book
+     */
+    public static OpeningBook open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+
+            if (file.limit() < HEADER_BYTES || file.getLong(0) != MAGIC){
+                throw new IOException(path + " is not an opening book");
+            }
+
+            if (file.getInt(8) != VERSION){
+                throw new IOException(path + " is opening book version " + file.getInt(8) + ", expected " + VERSION);
+            }
+
+            int width = file.getInt(12);
+            int height = file.getInt(16);
+            int winLength = file.getInt(20);
+            int positions = file.getInt(24);
+            int buckets = file.getInt(28);
+            int slots = file.getInt(32);
+
+            int keysAt = HEADER_BYTES;
+            int seedsAt = keysAt + positions * 8;
+            int slotsAt = seedsAt + buckets * 4;
+            int entriesAt = slotsAt + slots * 4;
+
+            if (file.limit() != entriesAt + positions){
+                throw new IOException(path + " is cut short or has extra bytes");
+            }
+
+            PositionIndex index = new PositionIndex(width, height, winLength,
+                    file.slice(keysAt, positions * 8).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer(),
+                    file.slice(seedsAt, buckets * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer(),
+                    file.slice(slotsAt, slots * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer());
+
+            return new OpeningBook(index, file.slice(entriesAt, positions));
+        }
+    }
+
+    /**
+     * @param width - number of columns
+     * @param height - number of rows
+     * @param winLength - number of marks in a line needed to win
+     * @return True - the book is for this game
+     */
+    public boolean covers(int width, int height, int winLength){
+        return index.width == width && index.height == height && index.winLength == winLength;
+    }
+
+    /**
+     * @param board - board the book covers
+     * @return the symmetry that turns the board into its canonical position
+     */
+    private int symmetryOf(Board board){
+        return index.symmetry.canonicalSymmetry((int) board.marksOf(Board.PLAYER_ONE), (int) board.marksOf(Board.PLAYER_TWO));
+    }
+
+    /**
+     * @param board - board the book covers
+     * @param sym - from symmetryOf
+     * @return the position's entry, or -1 if it can't come up in a game
+     */
+    private int entry(Board board, int sym){
+        Symmetry symmetry = index.symmetry;
+        int one = symmetry.transformMask(sym, (int) board.marksOf(Board.PLAYER_ONE));
+        int two = symmetry.transformMask(sym, (int) board.marksOf(Board.PLAYER_TWO));
+        int position = index.indexOfCanonical(Symmetry.key(one, two));
+
+        return position < 0 ? -1 : entries.get(position) & 0xFF;
+    }
+
+    /**
+     * @param board - board the book covers
+     * @return WIN, DRAW or LOSS for the player to move, GAME_OVER, or -1 if the position
+     *         can't come up in a game
+     */
+    public int outcome(Board board){
+        int entry = entry(board, symmetryOf(board));
+        return entry < 0 ? -1 : entry >>> 6;
+    }
+
+    /**
+     * @param board - board the book covers
+     * @return the cell of a best move, or -1 if the game is over or the position can't
+     *         come up in a game
+     */
+    public int bestMove(Board board){
+        int sym = symmetryOf(board);
+        int entry = entry(board, sym);
+
+        if (entry < 0 || entry >>> 6 == GAME_OVER){
+            return -1;
+        }
+
+        return index.symmetry.inverseCell(sym, entry & NO_MOVE);
+    }
+
+    /**
+     * @return number of positions in the book
+     */
+    public int size(){
+        return index.size();
+    }
+
+    /**
+     * Writes a book, or opens one and times lookups on random positions from it
+     * @param args - "--generate file width height winLength", or a book file
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 5 && args[0].equals("--generate")){
+            long start = System.nanoTime();
+            int positions = generate(Paths.get(args[1]), Integer.parseInt(args[2]), Integer.parseInt(args[3]),
+                    Integer.parseInt(args[4]));
+            System.out.printf("Wrote %d positions to %s in %.2f seconds%n", positions, args[1], (System.nanoTime() - start) / 1e9);
+            return;
+        }
+
+        if (args.length != 1){
+            System.err.println("Usage: OpeningBook --generate book-file width height winLength");
+            System.err.println("       OpeningBook book-file");
+            return;
+        }
+
+        final int LOOKUPS = 10_000_000;
+        long start = System.nanoTime();
+        OpeningBook book = open(Paths.get(args[0]));
+        System.out.printf("Opened %d positions in %.3f ms%n", book.size(), (System.nanoTime() - start) / 1e6);
+
+        Board board = new Board(book.index.width, book.index.height, book.index.winLength);
+        String[] outcomes = {"loses", "draws", "wins"};
+        int outcome = book.outcome(board);
+        System.out.println("With best play the first player " + outcomes[outcome]
+                + ", opening at " + TicTacToe.formatMove(board, book.bestMove(board)));
+
+        // Random positions from real games, in random orientations
+        SplittableRandom random = new SplittableRandom(23);
+        int samples = 1 << 12;
+        Board[] boards = new Board[samples];
+
+        for (int i = 0; i < samples; i++) {
+            long key = book.index.keyAt(random.nextInt(book.size()));
+            int sym = random.nextInt(book.index.symmetry.count);
+            boards[i] = new Board(book.index.width, book.index.height, book.index.winLength);
+            boards[i].setMarks(Board.PLAYER_ONE, 0, book.index.symmetry.transformMask(sym, (int) key) & 0xFFFFFFFFL);
+            boards[i].setMarks(Board.PLAYER_TWO, 0, book.index.symmetry.transformMask(sym, (int) (key >>> 32)) & 0xFFFFFFFFL);
+        }
+
+        long check = 0;
+        start = System.nanoTime();
+
+        for (int i = 0; i < LOOKUPS; i++) {
+            check += book.bestMove(boards[i & (samples - 1)]);
+        }
+
+        double nanos = (double) (System.nanoTime() - start) / LOOKUPS;
+        System.out.printf("bestMove: %.1f ns per lookup (%.0f per second)  [%d]%n", nanos, 1e9 / nanos, check & 0xFF);
+    }
+}
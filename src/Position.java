@@ -0,0 +1,240 @@
+/**
+ *  A board position that never changes: placing a mark gives a new Position and leaves
+ *  this one as it was. Each player's marks are packed into a long, so a new position is
+ *  two longs and a few ints, made in constant time, and positions of the same game share
+ *  nothing that can change. They can be kept as history, tried out in "what if" searches
+ *  and handed to other threads without copying or locking.
+ *
+ *  Positions hold boards of up to 64 cells, which covers every board small enough to
+ *  solve or search. Bigger boards are played on a Board.
+ */
+
+public final class Position {
+
+    static final int MAX_CELLS = 64;
+
+    final int width;
+    final int height;
+    final int winLength;
+    final int cells;
+
+    private final long playerOneMarks;
+    private final long playerTwoMarks;
+
+    /**
+     * Creates an empty position
+     * @param width - number of columns
+     * @param height - number of rows
+     * @param winLength - number of marks in a line needed to win
+     */
+    public Position(int width, int height, int winLength){
+        if (width < 1 || height < 1 || width * height > MAX_CELLS){
+            throw new IllegalArgumentException("Positions hold boards of 1 to " + MAX_CELLS + " cells");
+        }
+
+        if (winLength < 1 || winLength > Math.max(width, height)){
+            throw new IllegalArgumentException("Win length must be between 1 and " + Math.max(width, height));
+        }
+
+        this.width = width;
+        this.height = height;
+        this.winLength = winLength;
+        this.cells = width * height;
+        this.playerOneMarks = 0;
+        this.playerTwoMarks = 0;
+    }
+
+    private Position(int width, int height, int winLength, long playerOneMarks, long playerTwoMarks){
+        this.width = width;
+        this.height = height;
+        this.winLength = winLength;
+        this.cells = width * height;
+        this.playerOneMarks = playerOneMarks;
+        this.playerTwoMarks = playerTwoMarks;
+    }
+
+    /**
+     * @param board - board of up to 64 cells
+     * @return the board's current position
+     */
+    public static Position of(Board board){
+        if (board.cells > MAX_CELLS){
+            throw new IllegalArgumentException("Positions hold boards of up to " + MAX_CELLS + " cells");
+        }
+
+        return new Position(board.width, board.height, board.winLength,
+                board.marksOf(Board.PLAYER_ONE), board.marksOf(Board.PLAYER_TWO));
+    }
+
+    /**
+     * Places the mark of the player whose turn it is
+     * @param cell - cell index of an empty spot
+     * @return the position after the move
+     */
+    public Position place(int cell){
+        return place(cell, playerToMove());
+    }
+
+    /**
+     * @param cell - cell index of an empty spot
+     * @param player - Board.PLAYER_ONE or Board.PLAYER_TWO
+     * @return the position with the player's mark added
+     */
+    public Position place(int cell, int player){
+        if (cell < 0 || cell >= cells || !isEmpty(cell)){
+            throw new IllegalArgumentException("Cell " + cell + " is not an empty spot");
+        }
+
+        if (player == Board.PLAYER_ONE){
+            return new Position(width, height, winLength, playerOneMarks | 1L << cell, playerTwoMarks);
+        }
+
+        return new Position(width, height, winLength, playerOneMarks, playerTwoMarks | 1L << cell);
+    }
+
+    /**
+     * @param cell - cell index of a taken spot
+     * @return the position with the mark on the spot removed
+     */
+    public Position remove(int cell){
+        long clear = ~(1L << cell);
+        return new Position(width, height, winLength, playerOneMarks & clear, playerTwoMarks & clear);
+    }
+
+    /**
+     * @param cell - cell index
+     * @return EMPTY, PLAYER_ONE or PLAYER_TWO
+     */
+    public int get(int cell){
+        if ((playerOneMarks & 1L << cell) != 0){
+            return Board.PLAYER_ONE;
+        }
+
+        if ((playerTwoMarks & 1L << cell) != 0){
+            return Board.PLAYER_TWO;
+        }
+
+        return Board.EMPTY;
+    }
+
+    /**
+     * @param cell - cell index
+     * @return True - nobody has a mark on the spot
+     */
+    public boolean isEmpty(int cell){
+        return ((playerOneMarks | playerTwoMarks) & 1L << cell) == 0;
+    }
+
+    /**
+     * Checks the four lines through a cell for winLength of the player's marks
+     * @param cell - cell index of the player's mark
+     * @param player - Board.PLAYER_ONE or Board.PLAYER_TWO
+     * @return True - the player has a winning line through the cell
+     */
+    public boolean winsThrough(int cell, int player){
+        long marks = marksOf(player);
+        int row = cell / width;
+        int col = cell % width;
+
+        for (int line = 0; line < Board.ROW_STEPS.length; line++) {
+            int rowStep = Board.ROW_STEPS[line];
+            int colStep = Board.COL_STEPS[line];
+            int count = 1 + countRun(marks, row, col, rowStep, colStep) + countRun(marks, row, col, -rowStep, -colStep);
+
+            if (count >= winLength){
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private int countRun(long marks, int row, int col, int rowStep, int colStep){
+        int count = 0;
+        int r = row + rowStep;
+        int c = col + colStep;
+
+        while (count < winLength - 1 && r >= 0 && r < height && c >= 0 && c < width){
+            if ((marks & 1L << (r * width + c)) == 0){
+                break;
+            }
+
+            count++;
+            r += rowStep;
+            c += colStep;
+        }
+
+        return count;
+    }
+
+    /**
+     * @param player - Board.PLAYER_ONE or Board.PLAYER_TWO
+     * @return the player's marks, bit n is cell n
+     */
+    public long marksOf(int player){
+        return player == Board.PLAYER_ONE ? playerOneMarks : playerTwoMarks;
+    }
+
+    /**
+     * @return how many marks have been placed
+     */
+    public int markCount(){
+        return Long.bitCount(playerOneMarks | playerTwoMarks);
+    }
+
+    /**
+     * @return True - every spot has been taken
+     */
+    public boolean isFull(){
+        return markCount() == cells;
+    }
+
+    /**
+     * @return PLAYER_ONE when both players have the same number of marks, otherwise PLAYER_TWO
+     */
+    public int playerToMove(){
+        return Long.bitCount(playerOneMarks) == Long.bitCount(playerTwoMarks) ? Board.PLAYER_ONE : Board.PLAYER_TWO;
+    }
+
+    /**
+     * @return a new Board set to this position, for code that plays on a Board
+     */
+    public Board toBoard(){
+        Board board = new Board(width, height, winLength);
+        board.setMarks(Board.PLAYER_ONE, 0, playerOneMarks);
+        board.setMarks(Board.PLAYER_TWO, 0, playerTwoMarks);
+        return board;
+    }
+
+    @Override
+    public boolean equals(Object other){
+        if (!(other instanceof Position)){
+            return false;
+        }
+
+        Position position = (Position) other;
+        return position.playerOneMarks == playerOneMarks && position.playerTwoMarks == playerTwoMarks
+                && position.width == width && position.height == height && position.winLength == winLength;
+    }
+
+    @Override
+    public int hashCode(){
+        return Long.hashCode(playerOneMarks * 0x9E3779B97F4A7C15L + playerTwoMarks) * 31 + cells;
+    }
+
+    @Override
+    public String toString(){
+        StringBuilder text = new StringBuilder();
+
+        for (int cell = 0; cell < cells; cell++) {
+            int player = get(cell);
+            text.append(player == Board.PLAYER_ONE ? 'X' : player == Board.PLAYER_TWO ? 'O' : '.');
+
+            if (cell % width == width - 1 && cell < cells - 1){
+                text.append('/');
+            }
+        }
+
+        return text.toString();
+    }
+}
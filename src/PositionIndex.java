@@ -0,0 +1,427 @@
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ *  Numbers every position that can come up in a game, counting rotations and reflections
+ *  of a position as the same one, from 0 to size() - 1 with no gaps. Data about positions,
+ *  like how often they were played or how they turned out, can then live in a plain int
+ *  or long array indexed by position instead of a map.
+ *
+ *  The positions are found by playing out every game from the empty board and keeping
+ *  the canonical key (see Symmetry) of each position reached. Games stop at a win or a
+ *  full board. A 3x3 board has 765 such positions.
+ *
+ *  indexOf() uses a perfect hash built for exactly those keys: a key is hashed to a
+ *  bucket, each bucket stores the seed that sends its keys to slots no other key uses,
+ *  and the slot is looked up in a table of indexes. Nothing is probed, so a lookup is
+ *  the canonicalization plus two array reads and a final check that the key really is
+ *  one of the positions.
+ *
+ *  The tables are kept in buffers so they can be saved in a file and used straight from
+ *  a memory mapping of it, see OpeningBook.
+ */
+
+public class PositionIndex {
+
+    // Average keys per bucket, and how full the slot table is
+    private static final int KEYS_PER_BUCKET = 4;
+    private static final double LOAD_FACTOR = 0.98;
+    private static final int MAX_SEED = 1 << 20;
+
+    final Symmetry symmetry;
+    final int width;
+    final int height;
+    final int winLength;
+
+    // Canonical keys in ascending order, a position's index is its place in this table
+    private final LongBuffer keys;
+
+    private final IntBuffer bucketSeeds;
+    private final IntBuffer slotIndexes;
+    private final int buckets;
+    private final int slotCount;
+
+    /**
+     * Finds every position of a game and builds the index
+     * @param width - number of columns
+     * @param height - number of rows
+     * @param winLength - number of marks in a line needed to win
+     */
+    public PositionIndex(int width, int height, int winLength){
+        this.width = width;
+        this.height = height;
+        this.winLength = winLength;
+        symmetry = new Symmetry(width, height);
+
+        long[] keyArray = enumerate();
+        int[] seeds = new int[Math.max(1, keyArray.length / KEYS_PER_BUCKET)];
+        int[] slots = new int[Math.max(1, (int) Math.ceil(keyArray.length / LOAD_FACTOR))];
+
+        buckets = seeds.length;
+        slotCount = slots.length;
+        buildHash(keyArray, seeds, slots);
+
+        keys = LongBuffer.wrap(keyArray);
+        bucketSeeds = IntBuffer.wrap(seeds);
+        slotIndexes = IntBuffer.wrap(slots);
+    }
+
+    /**
+     * Uses tables that were built before, such as ones mapped from a file
+     * @param width - number of columns
+     * @param height - number of rows
+     * @param winLength - number of marks in a line needed to win
+     * @param keys - from keys() of the index that was built
+     * @param bucketSeeds - from bucketSeeds()
+     * @param slotIndexes - from slotIndexes()
+     */
+    PositionIndex(int width, int height, int winLength, LongBuffer keys, IntBuffer bucketSeeds, IntBuffer slotIndexes){
+        this.width = width;
+        this.height = height;
+        this.winLength = winLength;
+        this.symmetry = new Symmetry(width, height);
+        this.keys = keys;
+        this.bucketSeeds = bucketSeeds;
+        this.slotIndexes = slotIndexes;
+        this.buckets = bucketSeeds.limit();
+        this.slotCount = slotIndexes.limit();
+    }
+
+    /**
+     * Plays out every game, visiting each canonical position once
+     * @return the canonical keys of all positions, sorted
+     */
+    private long[] enumerate(){
+        Board board = new Board(width, height, winLength);
+        LongSet seen = new LongSet();
+        long[] stack = new long[64];
+        int depth = 0;
+
+        long empty = Symmetry.key(0, 0);
+        seen.add(empty);
+        stack[depth++] = empty;
+
+        while (depth > 0) {
+            long key = stack[--depth];
+            int one = (int) key;
+            int two = (int) (key >>> 32);
+            int player = Integer.bitCount(one) > Integer.bitCount(two) ? Board.PLAYER_TWO : Board.PLAYER_ONE;
+
+            board.clear();
+            board.setMarks(Board.PLAYER_ONE, 0, one & 0xFFFFFFFFL);
+            board.setMarks(Board.PLAYER_TWO, 0, two & 0xFFFFFFFFL);
+
+            for (int cell = 0; cell < board.cells; cell++) {
+                if (!board.isEmpty(cell)){
+                    continue;
+                }
+
+                board.place(cell, player);
+                long child = symmetry.canonicalKey(board);
+
+                if (seen.add(child) && !board.winsThrough(cell, player) && !board.isFull()){
+                    if (depth == stack.length){
+                        stack = Arrays.copyOf(stack, depth * 2);
+                    }
+                    stack[depth++] = child;
+                }
+
+                board.remove(cell, player);
+            }
+        }
+
+        long[] found = seen.toArray();
+        Arrays.sort(found);
+        return found;
+    }
+
+    /**
+     * Finds a seed for every bucket, biggest buckets first while the table is emptiest,
+     * that sends all the bucket's keys to free slots
+     */
+    private void buildHash(long[] keys, int[] bucketSeeds, int[] slotIndexes){
+        int[] bucketSizes = new int[buckets + 1];
+
+        for (long key : keys) {
+            bucketSizes[bucketOf(key) + 1]++;
+        }
+
+        // Keys grouped by bucket, bucketStarts[b] is where bucket b's keys begin
+        int[] bucketStarts = new int[buckets + 1];
+        for (int b = 0; b < buckets; b++) {
+            bucketStarts[b + 1] = bucketStarts[b] + bucketSizes[b + 1];
+        }
+
+        int[] grouped = new int[keys.length];
+        int[] fill = Arrays.copyOf(bucketStarts, buckets);
+
+        for (int index = 0; index < keys.length; index++) {
+            grouped[fill[bucketOf(keys[index])]++] = index;
+        }
+
+        // Bucket numbers sorted by size, largest first, sizes are small so count them
+        int largest = 0;
+        for (int b = 0; b < buckets; b++) {
+            largest = Math.max(largest, bucketStarts[b + 1] - bucketStarts[b]);
+        }
+
+        int[] order = new int[buckets];
+        int next = 0;
+
+        for (int bucketSize = largest; bucketSize > 0; bucketSize--) {
+            for (int b = 0; b < buckets; b++) {
+                if (bucketStarts[b + 1] - bucketStarts[b] == bucketSize){
+                    order[next++] = b;
+                }
+            }
+        }
+
+        Arrays.fill(slotIndexes, -1);
+        int[] slots = new int[Math.max(1, largest)];
+
+        for (int i = 0; i < next; i++) {
+            int bucket = order[i];
+            int start = bucketStarts[bucket];
+            int count = bucketStarts[bucket + 1] - start;
+            int seed = 0;
+
+            while (!tryPlace(keys, slotIndexes, grouped, start, count, seed, slots)) {
+                if (++seed == MAX_SEED){
+                    throw new IllegalStateException("No seed places bucket " + bucket);
+                }
+            }
+
+            bucketSeeds[bucket] = seed;
+
+            for (int k = 0; k < count; k++) {
+                slotIndexes[slots[k]] = grouped[start + k];
+            }
+        }
+    }
+
+    /**
+     * @return True - every key of the bucket lands on its own free slot with this seed
+     */
+    private boolean tryPlace(long[] keys, int[] slotIndexes, int[] grouped, int start, int count, int seed, int[] slots){
+        for (int k = 0; k < count; k++) {
+            int slot = slotOf(keys[grouped[start + k]], seed);
+
+            if (slotIndexes[slot] >= 0){
+                return false;
+            }
+
+            for (int j = 0; j < k; j++) {
+                if (slots[j] == slot){
+                    return false;
+                }
+            }
+
+            slots[k] = slot;
+        }
+
+        return true;
+    }
+
+    /**
+     * @param playerOneMarks - player one's marks
+     * @param playerTwoMarks - player two's marks
+     * @return index of the position or any rotation or reflection of it, or -1 if it
+     *         can't come up in a game
+     */
+    public int indexOf(int playerOneMarks, int playerTwoMarks){
+        return indexOfCanonical(symmetry.canonicalKey(playerOneMarks, playerTwoMarks));
+    }
+
+    /**
+     * @param board - board of this index's size
+     * @return index of the board's position, or -1 if it can't come up in a game
+     */
+    public int indexOf(Board board){
+        return indexOfCanonical(symmetry.canonicalKey(board));
+    }
+
+    /**
+     * @param key - a canonical key from Symmetry.canonicalKey
+     * @return index of the position, or -1 if it can't come up in a game
+     */
+    public int indexOfCanonical(long key){
+        int index = slotIndexes.get(slotOf(key, bucketSeeds.get(bucketOf(key))));
+        return index >= 0 && keys.get(index) == key ? index : -1;
+    }
+
+    /**
+     * @param index - position index, 0 through size() - 1
+     * @return the canonical key of the position
+     */
+    public long keyAt(int index){
+        return keys.get(index);
+    }
+
+    /**
+     * @return number of positions
+     */
+    public int size(){
+        return keys.limit();
+    }
+
+    /**
+     * @return bytes used by the key, seed and slot arrays
+     */
+    public long footprintBytes(){
+        return keys.limit() * 8L + buckets * 4L + slotCount * 4L;
+    }
+
+    /**
+     * @return the canonical keys, in index order
+     */
+    LongBuffer keys(){
+        return keys.duplicate();
+    }
+
+    /**
+     * @return the perfect hash's seed for each bucket
+     */
+    IntBuffer bucketSeeds(){
+        return bucketSeeds.duplicate();
+    }
+
+    /**
+     * @return the position index in each slot of the perfect hash, -1 for an empty slot
+     */
+    IntBuffer slotIndexes(){
+        return slotIndexes.duplicate();
+    }
+
+    private int bucketOf(long key){
+        return reduce(mix(key), buckets);
+    }
+
+    private int slotOf(long key, int seed){
+        return reduce(mix(key ^ (seed + 1) * 0x9E3779B97F4A7C15L) >>> 32, slotCount);
+    }
+
+    /**
+     * Maps the low 32 bits of a hash onto 0 through range - 1 without a division
+     */
+    private static int reduce(long hash, int range){
+        return (int) (((hash & 0xFFFFFFFFL) * range) >>> 32);
+    }
+
+    private static long mix(long key){
+        key = (key ^ (key >>> 33)) * 0xFF51AFD7ED558CCDL;
+        key = (key ^ (key >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return key ^ (key >>> 33);
+    }
+
+    /**
+     * An open addressing set of keys that grows when half full. Keys are stored plus one
+     * so 0 can mark an empty slot.
+     */
+    private static class LongSet {
+        private long[] table = new long[1 << 10];
+        private int size;
+
+        boolean add(long key){
+            if (size * 2 >= table.length){
+                rehash();
+            }
+
+            int mask = table.length - 1;
+            int slot = (int) mix(key) & mask;
+
+            while (table[slot] != 0) {
+                if (table[slot] == key + 1){
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+
+            table[slot] = key + 1;
+            size++;
+            return true;
+        }
+
+        private void rehash(){
+            long[] old = table;
+            table = new long[old.length * 2];
+            size = 0;
+
+            for (long stored : old) {
+                if (stored != 0){
+                    add(stored - 1);
+                }
+            }
+        }
+
+        long[] toArray(){
+            long[] keys = new long[size];
+            int next = 0;
+
+            for (long stored : table) {
+                if (stored != 0){
+                    keys[next++] = stored - 1;
+                }
+            }
+
+            return keys;
+        }
+    }
+
+    /**
+     * Builds the indexes for 3x3 and 4x4 and times canonicalization and lookups on
+     * random positions from each
+     * @param args - not used
+     */
+    public static void main(String[] args){
+        final int LOOKUPS = 20_000_000;
+        int[][] sizes = {{3, 3, 3}, {4, 4, 4}, {4, 4, 3}};
+
+        for (int[] size : sizes) {
+            long start = System.nanoTime();
+            PositionIndex index = new PositionIndex(size[0], size[1], size[2]);
+            double buildSeconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%dx%d, %d in a row: %d positions, built in %.2f seconds, %d KB%n",
+                    size[0], size[1], size[2], index.size(), buildSeconds, index.footprintBytes() >> 10);
+
+            // Random rotations and reflections of known positions, as a game would ask
+            SplittableRandom random = new SplittableRandom(20);
+            int samples = 1 << 16;
+            int[] ones = new int[samples];
+            int[] twos = new int[samples];
+
+            for (int i = 0; i < samples; i++) {
+                long key = index.keyAt(random.nextInt(index.size()));
+                int sym = random.nextInt(index.symmetry.count);
+                ones[i] = index.symmetry.transformMask(sym, (int) key);
+                twos[i] = index.symmetry.transformMask(sym, (int) (key >>> 32));
+            }
+
+            long check = 0;
+            start = System.nanoTime();
+
+            for (int i = 0; i < LOOKUPS; i++) {
+                check += index.symmetry.canonicalKey(ones[i & (samples - 1)], twos[i & (samples - 1)]);
+            }
+
+            double canonicalNanos = (double) (System.nanoTime() - start) / LOOKUPS;
+            start = System.nanoTime();
+
+            for (int i = 0; i < LOOKUPS; i++) {
+                int found = index.indexOf(ones[i & (samples - 1)], twos[i & (samples - 1)]);
+
+                if (found < 0){
+                    throw new IllegalStateException("Position " + i + " is missing from the index");
+                }
+                check += found;
+            }
+
+            double indexNanos = (double) (System.nanoTime() - start) / LOOKUPS;
+
+            System.out.printf("    canonicalKey %.1f ns (%.0f per second), indexOf %.1f ns (%.0f per second)  [%d]%n",
+                    canonicalNanos, 1e9 / canonicalNanos, indexNanos, 1e9 / indexNanos, check & 0xFF);
+        }
+    }
+}
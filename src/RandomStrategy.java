@@ -0,0 +1,42 @@
+import java.util.SplittableRandom;
+
+/**
+ *  Plays a random blank spot. Each strategy has its own random number generator
+ *  so games on different threads don't fight over a shared one, and a game played
+ *  from the same seed always makes the same moves.
+ */
+
+public class RandomStrategy implements MoveStrategy {
+
+    private final SplittableRandom random;
+
+    /**
+     * @param random - generator owned by this strategy
+     */
+    public RandomStrategy(SplittableRandom random){
+        this.random = random;
+    }
+
+    @Override
+    public int chooseMove(Board board, int player){
+        return randomEmptyCell(board, random);
+    }
+
+    /**
+     * Picks a blank spot with every blank spot equally likely
+     * @param board - board with at least one blank spot
+     * @param random - generator to pick with
+     * @return the cell index of a blank spot
+     */
+    static int randomEmptyCell(Board board, SplittableRandom random){
+        int pick = random.nextInt(board.cells - board.markCount());
+
+        for (int cell = 0; cell < board.cells; cell++) {
+            if (board.isEmpty(cell) && pick-- == 0){
+                return cell;
+            }
+        }
+
+        throw new IllegalStateException("The board has no blank spots");
+    }
+}
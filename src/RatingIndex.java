@@ -0,0 +1,245 @@
+import java.util.Arrays;
+
+/**
+ *  Keeps player ids sorted by rating, best first, so a player's rank and the player at
+ *  any rank are found in O(log n). It is a treap: a binary search tree whose nodes are
+ *  also a heap on a priority, which keeps it balanced without rotations being planned
+ *  ahead. Every node stores the size of its subtree, which is what makes rank lookups
+ *  logarithmic.
+ *
+ *  Nodes are player ids and live in int arrays indexed by id, so millions of players
+ *  cost a few ints each and no objects. A player's priority is a hash of their id, so it
+ *  doesn't need storing either. Ratings are read from the array the index is given and
+ *  must not change while a player is in the index: remove, change, then add back.
+ */
+
+public class RatingIndex {
+
+    private static final int NONE = -1;
+
+    private double[] ratings;
+    private int[] left;
+    private int[] right;
+    private int[] size;
+    private int root = NONE;
+
+    /**
+     * @param ratings - ratings by player id, read whenever two players are compared
+     */
+    public RatingIndex(double[] ratings){
+        this.ratings = ratings;
+        left = new int[ratings.length];
+        right = new int[ratings.length];
+        size = new int[ratings.length];
+    }
+
+    /**
+     * Points the index at a bigger ratings array, with room for more player ids
+     * @param ratings - ratings by player id, starting with the ones in the old array
+     */
+    public void grow(double[] ratings){
+        this.ratings = ratings;
+        left = Arrays.copyOf(left, ratings.length);
+        right = Arrays.copyOf(right, ratings.length);
+        size = Arrays.copyOf(size, ratings.length);
+    }
+
+    /**
+     * @param player - id of a player not in the index
+     */
+    public void add(int player){
+        left[player] = NONE;
+        right[player] = NONE;
+        size[player] = 1;
+        root = insert(root, player);
+    }
+
+    /**
+     * @param player - id of a player in the index
+     */
+    public void remove(int player){
+        root = delete(root, player);
+    }
+
+    /**
+     * @return number of players in the index
+     */
+    public int size(){
+        return sizeOf(root);
+    }
+
+    /**
+     * @param player - id of a player in the index
+     * @return the player's rank, 1 for the best rating
+     */
+    public int rankOf(int player){
+        int rank = 1;
+        int node = root;
+
+        while (node != player) {
+            if (before(player, node)){
+                node = left[node];
+            } else {
+                rank += sizeOf(left[node]) + 1;
+                node = right[node];
+            }
+        }
+
+        return rank + sizeOf(left[node]);
+    }
+
+    /**
+     * @param rank - 1 for the best rating, up to size()
+     * @return id of the player at that rank
+     */
+    public int playerAt(int rank){
+        int node = root;
+        int skip = rank - 1;
+
+        while (true) {
+            int leftSize = sizeOf(left[node]);
+
+            if (skip < leftSize){
+                node = left[node];
+            } else if (skip == leftSize){
+                return node;
+            } else {
+                skip -= leftSize + 1;
+                node = right[node];
+            }
+        }
+    }
+
+    /**
+     * @param count - number of players wanted
+     * @return ids of the best players, best first, at most count of them
+     */
+    public int[] top(int count){
+        int[] players = new int[Math.min(count, size())];
+        int[] stack = new int[64];
+        int depth = 0;
+        int node = root;
+        int found = 0;
+
+        // In-order walk that stops once enough players are found
+        while (found < players.length) {
+            while (node != NONE) {
+                if (depth == stack.length){
+                    stack = Arrays.copyOf(stack, depth * 2);
+                }
+                stack[depth++] = node;
+                node = left[node];
+            }
+
+            node = stack[--depth];
+            players[found++] = node;
+            node = right[node];
+        }
+
+        return players;
+    }
+
+    private int insert(int node, int player){
+        if (node == NONE){
+            return player;
+        }
+
+        if (before(player, node)){
+            left[node] = insert(left[node], player);
+
+            if (priority(left[node]) > priority(node)){
+                node = rotateRight(node);
+            }
+        } else {
+            right[node] = insert(right[node], player);
+
+            if (priority(right[node]) > priority(node)){
+                node = rotateLeft(node);
+            }
+        }
+
+        update(node);
+        return node;
+    }
+
+    private int delete(int node, int player){
+        if (node == player){
+            return merge(left[node], right[node]);
+        }
+
+        if (before(player, node)){
+            left[node] = delete(left[node], player);
+        } else {
+            right[node] = delete(right[node], player);
+        }
+
+        update(node);
+        return node;
+    }
+
+    /**
+     * Joins two treaps where every player in the first comes before every player in the second
+     */
+    private int merge(int first, int second){
+        if (first == NONE){
+            return second;
+        }
+
+        if (second == NONE){
+            return first;
+        }
+
+        if (priority(first) > priority(second)){
+            right[first] = merge(right[first], second);
+            update(first);
+            return first;
+        }
+
+        left[second] = merge(first, left[second]);
+        update(second);
+        return second;
+    }
+
+    private int rotateRight(int node){
+        int child = left[node];
+        left[node] = right[child];
+        right[child] = node;
+        update(node);
+        return child;
+    }
+
+    private int rotateLeft(int node){
+        int child = right[node];
+        right[node] = left[child];
+        left[child] = node;
+        update(node);
+        return child;
+    }
+
+    private void update(int node){
+        size[node] = sizeOf(left[node]) + sizeOf(right[node]) + 1;
+    }
+
+    private int sizeOf(int node){
+        return node == NONE ? 0 : size[node];
+    }
+
+    /**
+     * Higher ratings come first, and the older player first when ratings are equal
+     */
+    private boolean before(int a, int b){
+        double ratingA = ratings[a];
+        double ratingB = ratings[b];
+        return ratingA > ratingB || (ratingA == ratingB && a < b);
+    }
+
+    /**
+     * A fixed pseudo-random priority for each player id
+     */
+    private static int priority(int player){
+        int hash = player * 0x9E3779B9;
+        hash ^= hash >>> 16;
+        hash *= 0x85EBCA6B;
+        return hash ^ (hash >>> 13);
+    }
+}
@@ -0,0 +1,558 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ *  Checks files of recorded games without playing them through the console. Every line
+ *  is one game, a list of moves in the two-digit row-column format players type, like
+ *  "11 22 13 21 12". The spaces are optional, "1122132112" is the same game. Each game is replayed on an empty board
+ *  and gets one line in the report, in the same order:
+ *
+ *    OK result moves                         every move was legal
+ *    reason moveNumber result moves          move moveNumber was illegal, result and
+ *                                            moves describe the game just before it
+ *
+ *  result is FIRST_WINS, SECOND_WINS, TIE or UNFINISHED and reason is BAD_FORMAT,
+ *  BAD_ROW, BAD_COLUMN, SPACE_TAKEN or GAME_OVER (a move after the game was decided).
+ *
+ *  The input is read in blocks that end on a line break. Worker threads check the blocks
+ *  while the next ones are read, and the reports are written in input order. Only a few
+ *  blocks per thread are held at a time, so memory stays the same however big the input is.
+ */
+
+public class ScriptValidator {
+
+    // Reason codes, the same numbers as GameEngine's with BAD_FORMAT added
+    static final int VALID_MOVE = GameEngine.VALID_MOVE;
+    static final int BAD_ROW = GameEngine.BAD_ROW;
+    static final int BAD_COLUMN = GameEngine.BAD_COLUMN;
+    static final int SPACE_TAKEN = GameEngine.SPACE_TAKEN;
+    static final int GAME_OVER = GameEngine.GAME_OVER;
+    static final int BAD_FORMAT = 5;
+
+    static final int DEFAULT_BLOCK_SIZE = 1 << 20;
+
+    private static final String[] REASON_NAMES = {"OK", "BAD_ROW", "BAD_COLUMN", "SPACE_TAKEN", "GAME_OVER", "BAD_FORMAT"};
+    private static final String[] RESULT_NAMES = {"UNFINISHED", "FIRST_WINS", "SECOND_WINS", "TIE"};
+
+    // Blocks being checked or waiting to be written, per thread
+    private static final int BLOCKS_PER_THREAD = 4;
+
+    private final int width;
+    private final int height;
+    private final int blockSize;
+
+    // Bitmasks of the winning windows through each cell, and of the whole board
+    private final long[][] windowsThrough;
+    private final long fullBoard;
+
+    /**
+     * Totals for everything that was checked
+     */
+    public static class Summary {
+        long games;
+        long bytes;
+        final long[] results = new long[4];
+        final long[] reasons = new long[REASON_NAMES.length];
+
+        private void add(Summary other){
+            games += other.games;
+            bytes += other.bytes;
+
+            for (int i = 0; i < results.length; i++) {
+                results[i] += other.results[i];
+            }
+
+            for (int i = 0; i < reasons.length; i++) {
+                reasons[i] += other.reasons[i];
+            }
+        }
+
+        @Override
+        public String toString(){
+            StringBuilder text = new StringBuilder();
+            text.append(games).append(" games, ").append(reasons[VALID_MOVE]).append(" legal");
+
+            for (int reason = 1; reason < reasons.length; reason++) {
+                text.append(", ").append(reasons[reason]).append(' ').append(REASON_NAMES[reason]);
+            }
+
+            text.append(". Legal games: ");
+
+            for (int result = 0; result < results.length; result++) {
+                text.append(result == 0 ? "" : ", ").append(results[result]).append(' ').append(RESULT_NAMES[result]);
+            }
+
+            return text.toString();
+        }
+    }
+
+    /**
+     * @param width - number of columns, up to 9 for the two-digit format
+     * @param height - number of rows, up to 9
+     * @param winLength - number of marks in a line needed to win
+     */
+    public ScriptValidator(int width, int height, int winLength){
+        this(width, height, winLength, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param width - number of columns, up to 9 for the two-digit format
+     * @param height - number of rows, up to 9
+     * @param winLength - number of marks in a line needed to win
+     * @param blockSize - bytes of input handed to a worker at a time
+     */
+    public ScriptValidator(int width, int height, int winLength, int blockSize){
+        if (width > 9 || height > 9 || width * height > Long.SIZE){
+            throw new IllegalArgumentException("Scripts can be checked on boards up to 9 rows and columns and 64 spots");
+        }
+
+        this.width = width;
+        this.height = height;
+        this.blockSize = blockSize;
+
+        int cells = width * height;
+        windowsThrough = new long[cells][0];
+
+        for (int[] window : new Board(width, height, winLength).winningWindows()) {
+            long mask = 0;
+
+            for (int cell : window) {
+                mask |= 1L << cell;
+            }
+
+            for (int cell : window) {
+                long[] masks = Arrays.copyOf(windowsThrough[cell], windowsThrough[cell].length + 1);
+                masks[masks.length - 1] = mask;
+                windowsThrough[cell] = masks;
+            }
+        }
+
+        fullBoard = cells == Long.SIZE ? -1L : (1L << cells) - 1;
+    }
+
+    /**
+     * Replays one game. The board is kept as two bitmasks, the marks of the player to move
+     * and of the other player, and a win is a winning window through the new mark that the
+     * player fills.
+     * @param script - the game's moves
+     * @param from - index of the first byte of the game
+     * @param to - index just past the last byte, not counting the line break
+     * @return the outcome, see reasonOf, moveNumberOf, resultOf and movesOf
+     */
+    public long validate(byte[] script, int from, int to){
+        long toMove = 0;
+        long waiting = 0;
+        int player = Board.PLAYER_ONE;
+        int result = GameEngine.KEEP_PLAYING;
+        int moves = 0;
+        int reason = VALID_MOVE;
+        int index = from;
+
+        while (true) {
+            while (index < to && isSpace(script[index])) {
+                index++;
+            }
+
+            if (index == to){
+                break;
+            }
+
+            if (to - index < 2 || !isDigit(script[index]) || !isDigit(script[index + 1])){
+                reason = BAD_FORMAT;
+                break;
+            }
+
+            // Moves are always two digits, so moves written back to back split cleanly
+            int row = script[index] - '1';
+            int col = script[index + 1] - '1';
+            index += 2;
+
+            if (result != GameEngine.KEEP_PLAYING){
+                reason = GAME_OVER;
+                break;
+            }
+
+            if (row < 0 || row >= height){
+                reason = BAD_ROW;
+                break;
+            }
+
+            if (col < 0 || col >= width){
+                reason = BAD_COLUMN;
+                break;
+            }
+
+            int cell = row * width + col;
+            long bit = 1L << cell;
+
+            if (((toMove | waiting) & bit) != 0){
+                reason = SPACE_TAKEN;
+                break;
+            }
+
+            toMove |= bit;
+            moves++;
+
+            for (long window : windowsThrough[cell]) {
+                if ((toMove & window) == window){
+                    result = player == Board.PLAYER_ONE ? GameEngine.FIRST_WINS : GameEngine.SECOND_WINS;
+                    break;
+                }
+            }
+
+            if (result == GameEngine.KEEP_PLAYING && (toMove | waiting) == fullBoard){
+                result = GameEngine.TIE;
+            }
+
+            long swap = toMove;
+            toMove = waiting;
+            waiting = swap;
+            player = GameEngine.otherPlayer(player);
+        }
+
+        int moveNumber = reason == VALID_MOVE ? 0 : moves + 1;
+        return ((long) moveNumber << 32) | (moves << 8) | (result << 4) | reason;
+    }
+
+    /**
+     * @param outcome - from validate
+     * @return VALID_MOVE or the reason the first illegal move was rejected
+     */
+    public static int reasonOf(long outcome){
+        return (int) outcome & 0xF;
+    }
+
+    /**
+     * @param outcome - from validate
+     * @return KEEP_PLAYING, FIRST_WINS, SECOND_WINS or TIE, before any illegal move
+     */
+    public static int resultOf(long outcome){
+        return (int) (outcome >>> 4) & 0xF;
+    }
+
+    /**
+     * @param outcome - from validate
+     * @return number of legal moves played
+     */
+    public static int movesOf(long outcome){
+        return (int) outcome >>> 8;
+    }
+
+    /**
+     * @param outcome - from validate
+     * @return the number of the first illegal move counting from 1, or 0 if every move was legal
+     */
+    public static int moveNumberOf(long outcome){
+        return (int) (outcome >>> 32);
+    }
+
+    /**
+     * Checks every game in a stream and writes the report
+     * @param in - games, one per line
+     * @param out - where the report is written
+     * @param threads - number of worker threads
+     * @return totals for all the games
+     */
+    public Summary run(InputStream in, OutputStream out, int threads) throws IOException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "validator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayDeque<Future<Block>> pending = new ArrayDeque<>();
+        Summary total = new Summary();
+        byte[] carry = new byte[0];
+        int carryLength = 0;
+
+        try {
+            while (true) {
+                // A block is the leftover partial line from the last read plus fresh input
+                byte[] bytes = Arrays.copyOf(carry, Math.max(blockSize, carryLength * 2));
+                int length = carryLength;
+                int read = 0;
+
+                while (length < bytes.length && (read = in.read(bytes, length, bytes.length - length)) >= 0) {
+                    length += read;
+                }
+
+                boolean ended = read < 0;
+                int lineEnd = length;
+
+                if (!ended){
+                    while (lineEnd > 0 && bytes[lineEnd - 1] != '\n') {
+                        lineEnd--;
+                    }
+                }
+
+                if (lineEnd == 0 && !ended){
+                    carry = bytes; // A line longer than the block, read on with a bigger one
+                    carryLength = length;
+                    continue;
+                }
+
+                carry = Arrays.copyOfRange(bytes, lineEnd, length);
+                carryLength = carry.length;
+
+                int end = lineEnd;
+                pending.add(workers.submit(() -> check(bytes, end)));
+
+                while (pending.size() >= threads * BLOCKS_PER_THREAD || (ended && !pending.isEmpty())) {
+                    Block block = pending.poll().get();
+                    out.write(block.report, 0, block.reportLength);
+                    total.add(block.summary);
+                }
+
+                if (ended){
+                    out.flush();
+                    return total;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while checking games", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Checking a block of games failed", e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * A block's report and totals
+     */
+    private static class Block {
+        byte[] report;
+        int reportLength;
+        final Summary summary = new Summary();
+
+        void append(String text){
+            ensure(text.length());
+
+            for (int i = 0; i < text.length(); i++) {
+                report[reportLength++] = (byte) text.charAt(i);
+            }
+        }
+
+        void append(int number){
+            ensure(11);
+
+            if (number == 0){
+                report[reportLength++] = '0';
+                return;
+            }
+
+            int digits = 0;
+            for (int n = number; n > 0; n /= 10) {
+                digits++;
+            }
+
+            for (int i = digits - 1; i >= 0; i--) {
+                report[reportLength + i] = (byte) ('0' + number % 10);
+                number /= 10;
+            }
+
+            reportLength += digits;
+        }
+
+        void append(char c){
+            ensure(1);
+            report[reportLength++] = (byte) c;
+        }
+
+        private void ensure(int more){
+            if (reportLength + more > report.length){
+                report = Arrays.copyOf(report, Math.max(report.length * 2, reportLength + more));
+            }
+        }
+    }
+
+    /**
+     * Checks every game in a block, runs on a worker thread
+     */
+    private Block check(byte[] bytes, int length){
+        Block block = new Block();
+        block.report = new byte[Math.max(64, length)];
+        block.summary.bytes = length;
+        int start = 0;
+
+        while (start < length) {
+            int end = start;
+            while (end < length && bytes[end] != '\n') {
+                end++;
+            }
+
+            int lineEnd = end > start && bytes[end - 1] == '\r' ? end - 1 : end;
+            long outcome = validate(bytes, start, lineEnd);
+            int reason = reasonOf(outcome);
+            int result = resultOf(outcome);
+
+            if (reason == VALID_MOVE){
+                block.append("OK ");
+                block.summary.results[result]++;
+            } else {
+                block.append(REASON_NAMES[reason]);
+                block.append(' ');
+                block.append(moveNumberOf(outcome));
+                block.append(' ');
+            }
+
+            block.append(RESULT_NAMES[result]);
+            block.append(' ');
+            block.append(movesOf(outcome));
+            block.append('\n');
+            block.summary.reasons[reason]++;
+            block.summary.games++;
+            start = end + 1;
+        }
+
+        return block;
+    }
+
+    /**
+     * @param outcome - from validate
+     * @return the game's report line, without the line break
+     */
+    static String describe(long outcome){
+        int reason = reasonOf(outcome);
+        String start = reason == VALID_MOVE ? "OK " : REASON_NAMES[reason] + " " + moveNumberOf(outcome) + " ";
+        return start + RESULT_NAMES[resultOf(outcome)] + " " + movesOf(outcome);
+    }
+
+    private static boolean isSpace(byte b){
+        return b == ' ' || b == '\t';
+    }
+
+    private static boolean isDigit(byte b){
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * Writes random games for testing, about one in fifty with a mistake
+     */
+    private static void generate(String fileName, long games) throws IOException {
+        final int MISTAKE_EVERY = 50;
+        SplittableRandom random = new SplittableRandom(22);
+        Board board = new Board();
+        int[] cells = new int[board.cells];
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(fileName)), 1 << 16)) {
+            for (long game = 0; game < games; game++) {
+                for (int i = 0; i < cells.length; i++) {
+                    cells[i] = i;
+                }
+
+                // Shuffled cells, cut short where the game is won
+                board.clear();
+                int player = Board.PLAYER_ONE;
+                int moves = 0;
+
+                while (moves < cells.length) {
+                    int pick = moves + random.nextInt(cells.length - moves);
+                    int cell = cells[pick];
+                    cells[pick] = cells[moves];
+                    cells[moves++] = cell;
+                    board.place(cell, player);
+
+                    if (board.winsThrough(cell, player)){
+                        break;
+                    }
+                    player = GameEngine.otherPlayer(player);
+                }
+
+                if (random.nextInt(MISTAKE_EVERY) == 0){
+                    cells[random.nextInt(moves)] = random.nextBoolean() ? cells[0] : 9 + random.nextInt(3); // Taken or off the board
+                }
+
+                for (int i = 0; i < moves; i++) {
+                    out.write('1' + cells[i] / 3);
+                    out.write('1' + cells[i] % 3);
+                    out.write(i + 1 < moves ? ' ' : '\n');
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks that games written with and without spaces between the moves get the same
+     * report lines, and prints any that don't
+     */
+    private static void check(){
+        final String[][] GAMES = {
+            {"11 22 13 21 12", "1122132112", "OK FIRST_WINS 5"},
+            {"22 11 33 13 12 32 21 23 31", "221133131232212331", "OK TIE 9"},
+            {"11 22 11", "112211", "SPACE_TAKEN 3 UNFINISHED 2"},
+            {"11 22 13 21 12 33", "112213211233", "GAME_OVER 6 FIRST_WINS 5"},
+            {"11 42", "1142", "BAD_ROW 2 UNFINISHED 1"},
+            {"11 2", "112", "BAD_FORMAT 2 UNFINISHED 1"}
+        };
+        ScriptValidator validator = new ScriptValidator(Board.DEFAULT_SIZE, Board.DEFAULT_SIZE, Board.DEFAULT_SIZE);
+        int failures = 0;
+
+        for (String[] game : GAMES) {
+            for (int form = 0; form < 2; form++) {
+                byte[] script = game[form].getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+                String report = describe(validator.validate(script, 0, script.length));
+
+                if (!report.equals(game[2])){
+                    System.out.println("\"" + game[form] + "\" gave " + report + ", expected " + game[2]);
+                    failures++;
+                }
+            }
+        }
+
+        System.out.println(failures == 0 ? "Spaced and packed games all checked out" : failures + " checks failed");
+    }
+
+    /**
+     * Checks a file of games, or writes a file of random games to check
+     * @param args - input file, report file and threads, the report goes to standard output
+     *               when it is "-" or missing and threads defaults to the number of cores.
+     *               "--generate file games" writes random games instead.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length == 1 && args[0].equals("--check")){
+            check();
+            return;
+        }
+
+        if (args.length == 3 && args[0].equals("--generate")){
+            generate(args[1], Long.parseLong(args[2]));
+            return;
+        }
+
+        if (args.length == 0){
+            System.err.println("Usage: ScriptValidator games-file [report-file|-] [threads]");
+            System.err.println("       ScriptValidator --generate games-file games");
+            System.err.println("       ScriptValidator --check");
+            return;
+        }
+
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        boolean toConsole = args.length < 2 || args[1].equals("-");
+        ScriptValidator validator = new ScriptValidator(Board.DEFAULT_SIZE, Board.DEFAULT_SIZE, Board.DEFAULT_SIZE);
+        long start = System.nanoTime();
+        Summary summary;
+
+        try (InputStream in = Files.newInputStream(Paths.get(args[0]));
+             OutputStream out = toConsole ? new BufferedOutputStream(System.out, 1 << 16)
+                                          : new BufferedOutputStream(Files.newOutputStream(Paths.get(args[1])), 1 << 16)) {
+            summary = validator.run(in, out, threads);
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.println(summary);
+        System.err.printf("Checked %d MB in %.2f seconds (%.0f MB/s, %.0f games/sec) on %d threads%n",
+                summary.bytes >> 20, seconds, summary.bytes / 1048576.0 / seconds, summary.games / seconds, threads);
+    }
+}
@@ -0,0 +1,198 @@
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.SplittableRandom;
+
+/**
+ *  Load tests a GameServer by simulating many players from one thread. Every simulated
+ *  player keeps its own copy of the board from the PLACED messages and plays a random
+ *  blank spot whenever it gets a TURN. At the end it reports matches per second and the
+ *  move latency, which is the time from sending a MOVE to seeing the server's PLACED for it.
+ */
+
+public class ServerLoadClient {
+
+    // Latencies after this many are sampled over the top of older ones
+    private static final int MAX_SAMPLES = 1 << 20;
+
+    private final SplittableRandom random;
+    private final long[] latencies = new long[MAX_SAMPLES];
+    private long latencyCount;
+    private long matchesSeen;
+
+    /**
+     * One simulated player
+     */
+    private static class Player {
+        final SocketChannel channel;
+        final ByteBuffer in = ByteBuffer.allocate(4096);
+        final StringBuilder line = new StringBuilder();
+        Board board;
+        int moveSentAt;
+        long moveSentNanos;
+
+        Player(SocketChannel channel){
+            this.channel = channel;
+        }
+    }
+
+    private ServerLoadClient(long seed){
+        random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Runs a load test
+     * @param args - host, port, number of simulated players and seconds to run. All are optional.
+     */
+    public static void main(String[] args) throws IOException {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : GameServer.DEFAULT_PORT;
+        int players = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        new ServerLoadClient(131).run(new InetSocketAddress(host, port), players, seconds);
+    }
+
+    private void run(InetSocketAddress address, int players, int seconds) throws IOException {
+        Selector selector = Selector.open();
+
+        for (int i = 0; i < players; i++) {
+            SocketChannel channel = SocketChannel.open(address);
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            channel.register(selector, SelectionKey.OP_READ, new Player(channel));
+        }
+
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+
+        while (System.nanoTime() < end) {
+            selector.select(100);
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                read((Player) key.attachment());
+            }
+        }
+
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        for (SelectionKey key : selector.keys()) {
+            key.channel().close();
+        }
+        selector.close();
+
+        report(players, elapsed);
+    }
+
+    private void read(Player player) throws IOException {
+        if (player.channel.read(player.in) < 0){
+            player.channel.close();
+            return;
+        }
+
+        player.in.flip();
+
+        while (player.in.hasRemaining()) {
+            char c = (char) player.in.get();
+
+            if (c == '\n'){
+                handleLine(player, player.line.toString());
+                player.line.setLength(0);
+            } else {
+                player.line.append(c);
+            }
+        }
+
+        player.in.clear();
+    }
+
+    private void handleLine(Player player, String line) throws IOException {
+        String[] parts = line.split(" ");
+
+        switch (parts[0]){
+            case "START":
+                player.board = new Board(Integer.parseInt(parts[2]), Integer.parseInt(parts[3]), Integer.parseInt(parts[4]));
+                break;
+            case "NEWGAME":
+                player.board.clear();
+                break;
+            case "PLACED":
+                int[] position = TicTacToe.parseMove(parts[2], player.board);
+                int cell = player.board.cellAt(position[0] - 1, position[1] - 1);
+                player.board.place(cell, Integer.parseInt(parts[1]));
+
+                if (cell == player.moveSentAt && player.moveSentNanos != 0){
+                    recordLatency(System.nanoTime() - player.moveSentNanos);
+                    player.moveSentNanos = 0;
+                }
+                break;
+            case "TURN":
+                int move = RandomStrategy.randomEmptyCell(player.board, random);
+                player.moveSentAt = move;
+                player.moveSentNanos = System.nanoTime();
+                send(player, "MOVE " + TicTacToe.formatMove(player.board, move));
+                break;
+            case "MATCH":
+                matchesSeen++;
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void send(Player player, String message) throws IOException {
+        ByteBuffer out = ByteBuffer.wrap((message + "\n").getBytes(StandardCharsets.US_ASCII));
+
+        // Moves are tiny, so a blocked socket here means the server has stopped reading
+        while (out.hasRemaining()) {
+            player.channel.write(out);
+        }
+    }
+
+    private void recordLatency(long nanos){
+        if (latencyCount < MAX_SAMPLES){
+            latencies[(int) latencyCount] = nanos;
+        } else {
+            // Reservoir sampling keeps an even sample of every latency seen
+            long slot = random.nextLong(latencyCount + 1);
+
+            if (slot < MAX_SAMPLES){
+                latencies[(int) slot] = nanos;
+            }
+        }
+
+        latencyCount++;
+    }
+
+    private void report(int players, double seconds){
+        int samples = (int) Math.min(latencyCount, MAX_SAMPLES);
+        long[] sorted = Arrays.copyOf(latencies, samples);
+        Arrays.sort(sorted);
+
+        // Both players see every MATCH message
+        long matches = matchesSeen / 2;
+
+        System.out.printf("%d players, %d matches in %.1f seconds, %.0f matches per second%n",
+                players, matches, seconds, matches / seconds);
+        System.out.printf("%d moves, latency p50 %.3f ms, p99 %.3f ms, max %.3f ms%n",
+                latencyCount, percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0));
+    }
+
+    private static double percentile(long[] sorted, double fraction){
+        if (sorted.length == 0){
+            return 0;
+        }
+
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(fraction * sorted.length) - 1);
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+}
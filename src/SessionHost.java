@@ -0,0 +1,303 @@
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ *  Runs the console game for many players at once, each session on its own virtual
+ *  thread with its own input and output. The game code stays exactly as it is, prompts
+ *  and all: IR4 reads from the thread's own input and ThreadConsole sends System.out and
+ *  System.err to the thread's own output. A session waiting for its player to type parks
+ *  its virtual thread, which costs a little heap and no platform thread, so a handful of
+ *  carrier threads can host a very large number of slow human players.
+ *
+ *  Started with a port, players connect with telnet or nc and get the full main menu.
+ *  Started with --load it runs a load test instead, see main.
+ *
+ *  Needs Java 21 for virtual threads.
+ */
+
+public class SessionHost {
+
+    static final int DEFAULT_PORT = 7132;
+
+    // Input buffers start small, there can be a lot of them
+    static final int INPUT_BUFFER_SIZE = 256;
+
+    private static final AtomicLong sessionsStarted = new AtomicLong();
+
+    /**
+     * Starts a session on a new virtual thread
+     * @param in - what the player types
+     * @param out - where the session's output goes
+     * @param game - the blocking console code to run, such as TicTacToe::runMainMenu
+     * @return the session's thread
+     */
+    public static Thread start(InputStream in, OutputStream out, Consumer<GameSession> game){
+        ThreadConsole.install();
+
+        return Thread.ofVirtual().name("session-" + sessionsStarted.incrementAndGet()).start(() -> {
+            PrintStream console = new PrintStream(out, true, StandardCharsets.UTF_8);
+            ThreadConsole.bind(console);
+            IR4.useThreadInput(in, INPUT_BUFFER_SIZE);
+
+            GameSession session = new GameSession();
+            session.renderer = new BoardRenderer(console, BoardRenderer.PLAIN);
+
+            try {
+                game.accept(session);
+            } catch (EndOfInputException e) {
+                // The player went away
+            } finally {
+                IR4.threadInput.remove();
+                ThreadConsole.unbind();
+                console.close();
+            }
+        });
+    }
+
+    /**
+     * Accepts players on a port until the program is stopped, each one plays from the main menu
+     */
+    private static void serve(int port) throws IOException {
+        try (ServerSocket server = new ServerSocket(port)) {
+            System.out.println("Tic-Tac-Toe sessions on port " + port);
+
+            while (true) {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+
+                start(socket.getInputStream(), new BufferedOutputStream(socket.getOutputStream()), session -> {
+                    TicTacToe.runMainMenu(session);
+                    System.out.println("------Thanks for playing!------");
+                });
+            }
+        }
+    }
+
+    /**
+     * Input for a load test session, filled a line at a time by a simulated player. A read
+     * with nothing to read parks until the next line, and that moment is when the session
+     * has finished answering the last line, so it is when the line's latency is recorded.
+     */
+    private static class PlayerInput extends InputStream {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition typed = lock.newCondition();
+        private final LatencyHistogram latency;
+        private final AtomicInteger waiting;
+        private byte[] bytes = new byte[16];
+        private int start;
+        private int end;
+        private long typedNanos;
+        private boolean closed;
+
+        PlayerInput(LatencyHistogram latency, AtomicInteger waiting){
+            this.latency = latency;
+            this.waiting = waiting;
+        }
+
+        void type(String line){
+            lock.lock();
+
+            try {
+                byte[] text = line.getBytes(StandardCharsets.US_ASCII);
+
+                if (end + text.length > bytes.length){
+                    System.arraycopy(bytes, start, bytes, 0, end - start);
+                    end -= start;
+                    start = 0;
+
+                    if (end + text.length > bytes.length){
+                        bytes = java.util.Arrays.copyOf(bytes, Math.max(bytes.length * 2, end + text.length));
+                    }
+                }
+
+                System.arraycopy(text, 0, bytes, end, text.length);
+                end += text.length;
+
+                if (typedNanos == 0){
+                    typedNanos = System.nanoTime();
+                }
+
+                typed.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close(){
+            lock.lock();
+
+            try {
+                closed = true;
+                typed.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public int read(){
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length){
+            lock.lock();
+
+            try {
+                if (start == end){
+                    if (typedNanos != 0){
+                        latency.record(System.nanoTime() - typedNanos);
+                        typedNanos = 0;
+                    }
+
+                    waiting.incrementAndGet();
+
+                    try {
+                        while (start == end && !closed) {
+                            typed.awaitUninterruptibly();
+                        }
+                    } finally {
+                        waiting.decrementAndGet();
+                    }
+
+                    if (start == end){
+                        return -1;
+                    }
+                }
+
+                int count = Math.min(length, end - start);
+                System.arraycopy(bytes, start, buffer, offset, count);
+                start += count;
+                return count;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Starts many sessions playing hot-seat matches, measures the heap each one uses while
+     * it waits for input, then has simulated players type a move every few seconds and
+     * records how long each session took to answer
+     */
+    private static void loadTest(int sessionCount, long thinkMillis, long seconds) throws InterruptedException {
+        final String[] MOVES = {"1,1", "2,1", "1,2", "2,2", "1,3"}; // X wins every game
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        LatencyHistogram latency = new LatencyHistogram("move latency");
+        AtomicInteger waiting = new AtomicInteger();
+        AtomicLong outputBytes = new AtomicLong();
+        PlayerInput[] inputs = new PlayerInput[sessionCount];
+        Thread[] sessions = new Thread[sessionCount];
+
+        OutputStream screen = new OutputStream() {
+            @Override
+            public void write(int b){
+                outputBytes.incrementAndGet();
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len){
+                outputBytes.addAndGet(len);
+            }
+        };
+
+        System.gc();
+        long heapBefore = memory.getHeapMemoryUsage().getUsed();
+
+        for (int i = 0; i < sessionCount; i++) {
+            inputs[i] = new PlayerInput(latency, waiting);
+            sessions[i] = start(inputs[i], screen, session -> {
+                while (true) {
+                    TicTacToe.playMatch(session, session.newMatch());
+                }
+            });
+        }
+
+        while (waiting.get() < sessionCount) {
+            Thread.sleep(10);
+        }
+
+        System.gc();
+        long heapIdle = memory.getHeapMemoryUsage().getUsed();
+        System.out.printf("%d sessions waiting for input, %.1f KB of heap each%n",
+                sessionCount, (heapIdle - heapBefore) / 1024.0 / sessionCount);
+
+        // Every simulated player is a virtual thread too, mostly asleep between moves
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        Thread[] players = new Thread[sessionCount];
+        SplittableRandom seeds = new SplittableRandom(21);
+
+        for (int i = 0; i < sessionCount; i++) {
+            PlayerInput input = inputs[i];
+            SplittableRandom random = seeds.split();
+
+            players[i] = Thread.ofVirtual().start(() -> {
+                int move = 0;
+
+                try {
+                    // Spread the first moves out so the players don't all type at once
+                    Thread.sleep(random.nextLong(thinkMillis) + 1);
+
+                    while (System.nanoTime() < deadline) {
+                        input.type(MOVES[move++ % MOVES.length] + "\n");
+                        Thread.sleep(thinkMillis / 2 + random.nextLong(thinkMillis) + 1);
+                    }
+                } catch (InterruptedException e) {
+                    // Stop typing
+                }
+
+                input.close();
+            });
+        }
+
+        for (Thread player : players) {
+            player.join();
+        }
+
+        for (Thread session : sessions) {
+            session.join();
+        }
+
+        System.out.printf("%d moves answered in %d seconds (%.0f per second), %d MB of output%n",
+                latency.getCount(), seconds, (double) latency.getCount() / seconds, outputBytes.get() >> 20);
+        System.out.println(latency);
+    }
+
+    /**
+     * Hosts sessions on a port, or runs the load test
+     * @param args - a port, 7132 by default, or --load followed by the number of sessions,
+     *               the average milliseconds between a player's moves and the seconds to
+     *               run, 10000, 2000 and 30 by default. The number of carrier threads is set
+     *               with -Djdk.virtualThreadScheduler.parallelism.
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length > 0 && args[0].equals("--load")){
+            int sessions = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+            long thinkMillis = args.length > 2 ? Long.parseLong(args[2]) : 2_000;
+            long seconds = args.length > 3 ? Long.parseLong(args[3]) : 30;
+
+            System.out.println("Carrier threads: " + System.getProperty("jdk.virtualThreadScheduler.parallelism",
+                    String.valueOf(Runtime.getRuntime().availableProcessors())));
+            loadTest(sessions, thinkMillis, seconds);
+            return;
+        }
+
+        serve(args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT);
+    }
+}
@@ -0,0 +1,373 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.SplittableRandom;
+
+/**
+ *  Keeps the games of many sessions outside the Java heap. Every session gets a
+ *  fixed-size slot in one direct ByteBuffer holding its board, whose turn it is, the
+ *  game result, the game number and both players' match scores, so a million open games
+ *  are a million slots in one buffer instead of a million boards for the garbage
+ *  collector to trace.
+ *
+ *  A session id is its slot number with a generation count in the high 32 bits. Closing
+ *  a session bumps the slot's generation and puts the slot on a free list kept inside
+ *  the free slots themselves, so the slot is reused by the next open() and the old id
+ *  stops working. Reading and playing moves only use absolute gets and puts on the
+ *  buffer and allocate nothing.
+ *
+ *  A store is not thread safe. A server with many threads gives each thread its own
+ *  store, or locks around a shared one.
+ */
+
+public class SessionStore {
+
+    // Slot layout, in bytes from the start of the slot
+    private static final int GENERATION = 0;         // int, bumped when the slot is freed
+    private static final int STATE = 4;              // byte, FREE or OPEN
+    private static final int SIDE_TO_MOVE = 5;       // byte, Board.PLAYER_ONE or PLAYER_TWO
+    private static final int RESULT = 6;             // byte, GameEngine result of the current game
+    private static final int GAME_NUMBER = 7;        // byte, counting from 1
+    private static final int PLAYER_ONE_POINTS = 8;  // short, half points
+    private static final int PLAYER_TWO_POINTS = 10; // short, half points
+    private static final int NEXT_FREE = 12;         // int, next slot on the free list while free
+    private static final int MARKS = 16;             // player one's mark words, then player two's
+
+    private static final byte FREE = 0;
+    private static final byte OPEN = 1;
+
+    private static final int NO_SLOT = -1;
+
+    private final int width;
+    private final int height;
+    private final int winLength;
+    private final int cells;
+    private final int words;
+    private final int slotBytes;
+    private final int capacity;
+    private final ByteBuffer arena;
+
+    private int used;      // Slots handed out at least once, the rest have never been touched
+    private int freeSlot = NO_SLOT;
+    private int size;
+
+    /**
+     * Creates an empty store
+     * @param width - number of columns of every board
+     * @param height - number of rows of every board
+     * @param winLength - number of marks in a line needed to win
+     * @param capacity - most sessions open at once
+     */
+    public SessionStore(int width, int height, int winLength, int capacity){
+        Board shape = new Board(width, height, winLength); // Checks the size
+
+        this.width = width;
+        this.height = height;
+        this.winLength = winLength;
+        this.cells = shape.cells;
+        this.words = shape.words();
+        this.slotBytes = MARKS + 2 * words * Long.BYTES;
+
+        if (capacity < 1 || capacity > Integer.MAX_VALUE / slotBytes){
+            throw new IllegalArgumentException("Capacity must be between 1 and " + Integer.MAX_VALUE / slotBytes);
+        }
+
+        this.capacity = capacity;
+        this.arena = ByteBuffer.allocateDirect(capacity * slotBytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Opens a session with an empty board, player one to move, on game 1 of a match
+     * @return the session's id
+     * @throws IllegalStateException if every slot is in use
+     */
+    public long open(){
+        int slot;
+
+        if (freeSlot != NO_SLOT){
+            slot = freeSlot;
+            freeSlot = arena.getInt(offsetOf(slot) + NEXT_FREE);
+        } else if (used < capacity){
+            slot = used++;
+        } else {
+            throw new IllegalStateException("All " + capacity + " sessions are in use");
+        }
+
+        int offset = offsetOf(slot);
+        int generation = arena.getInt(offset + GENERATION);
+
+        arena.put(offset + STATE, OPEN);
+        arena.putShort(offset + PLAYER_ONE_POINTS, (short) 0);
+        arena.putShort(offset + PLAYER_TWO_POINTS, (short) 0);
+        arena.put(offset + GAME_NUMBER, (byte) 0);
+        startGame(offset);
+        size++;
+
+        return ((long) generation << 32) | slot;
+    }
+
+    /**
+     * Closes a session and recycles its slot. The id stops working.
+     * @param id - id from open()
+     */
+    public void close(long id){
+        int offset = offsetOf(id);
+        int slot = (int) id;
+
+        arena.putInt(offset + GENERATION, arena.getInt(offset + GENERATION) + 1);
+        arena.put(offset + STATE, FREE);
+        arena.putInt(offset + NEXT_FREE, freeSlot);
+        freeSlot = slot;
+        size--;
+    }
+
+    /**
+     * @param id - any session id
+     * @return True - the session is open, False - it was closed or never existed
+     */
+    public boolean isOpen(long id){
+        int slot = (int) id;
+
+        if (slot < 0 || slot >= used){
+            return false;
+        }
+
+        int offset = offsetOf(slot);
+        return arena.get(offset + STATE) == OPEN && arena.getInt(offset + GENERATION) == (int) (id >>> 32);
+    }
+
+    /**
+     * Plays the next move of a session's game
+     * @param id - id from open()
+     * @param cell - cell index of the spot
+     * @param scratch - board with this store's size, used to check for a win
+     * @return the reason the move was rejected as a negative number, or the game result
+     *         after the move: KEEP_PLAYING, FIRST_WINS, SECOND_WINS or TIE
+     */
+    public int play(long id, int cell, Board scratch){
+        int offset = offsetOf(id);
+
+        if (arena.get(offset + RESULT) != GameEngine.KEEP_PLAYING){
+            return -GameEngine.GAME_OVER;
+        }
+
+        if (cell < 0 || cell >= cells){
+            return -GameEngine.BAD_ROW;
+        }
+
+        int wordOffset = offset + MARKS + (cell >>> 6) * Long.BYTES;
+        long bit = 1L << cell;
+
+        if (((arena.getLong(wordOffset) | arena.getLong(wordOffset + words * Long.BYTES)) & bit) != 0){
+            return -GameEngine.SPACE_TAKEN;
+        }
+
+        int player = arena.get(offset + SIDE_TO_MOVE);
+        int markOffset = wordOffset + (player - 1) * words * Long.BYTES;
+        arena.putLong(markOffset, arena.getLong(markOffset) | bit);
+
+        load(offset, scratch);
+        int result = GameEngine.checkForWin(scratch, cell, player);
+
+        arena.put(offset + SIDE_TO_MOVE, (byte) GameEngine.otherPlayer(player));
+        arena.put(offset + RESULT, (byte) result);
+
+        if (result == GameEngine.FIRST_WINS){
+            addPoints(offset + PLAYER_ONE_POINTS, 2);
+        } else if (result == GameEngine.SECOND_WINS){
+            addPoints(offset + PLAYER_TWO_POINTS, 2);
+        } else if (result == GameEngine.TIE){
+            addPoints(offset + PLAYER_ONE_POINTS, 1);
+            addPoints(offset + PLAYER_TWO_POINTS, 1);
+        }
+
+        return result;
+    }
+
+    /**
+     * Clears a session's board for the next game of its match. Scores are kept.
+     * @param id - id from open()
+     */
+    public void nextGame(long id){
+        startGame(offsetOf(id));
+    }
+
+    private void startGame(int offset){
+        for (int word = 0; word < 2 * words; word++) {
+            arena.putLong(offset + MARKS + word * Long.BYTES, 0L);
+        }
+
+        arena.put(offset + SIDE_TO_MOVE, (byte) Board.PLAYER_ONE);
+        arena.put(offset + RESULT, (byte) GameEngine.KEEP_PLAYING);
+        arena.put(offset + GAME_NUMBER, (byte) (arena.get(offset + GAME_NUMBER) + 1));
+    }
+
+    private void addPoints(int offset, int halfPoints){
+        arena.putShort(offset, (short) (arena.getShort(offset) + halfPoints));
+    }
+
+    /**
+     * Copies a session's board into a Board, for drawing it or searching from it
+     * @param id - id from open()
+     * @param board - board with this store's size, its marks are replaced
+     */
+    public void load(long id, Board board){
+        load(offsetOf(id), board);
+    }
+
+    private void load(int offset, Board board){
+        if (board.cells != cells || board.width != width || board.winLength != winLength){
+            throw new IllegalArgumentException("Board must be " + width + "x" + height + " with " + winLength + " to win");
+        }
+
+        for (int word = 0; word < words; word++) {
+            board.setMarks(Board.PLAYER_ONE, word, arena.getLong(offset + MARKS + word * Long.BYTES));
+            board.setMarks(Board.PLAYER_TWO, word, arena.getLong(offset + MARKS + (words + word) * Long.BYTES));
+        }
+    }
+
+    /**
+     * @param id - id from open()
+     * @param cell - cell index of the spot
+     * @return Board.PLAYER_ONE, Board.PLAYER_TWO or Board.EMPTY
+     */
+    public int get(long id, int cell){
+        int wordOffset = offsetOf(id) + MARKS + (cell >>> 6) * Long.BYTES;
+        long bit = 1L << cell;
+
+        if ((arena.getLong(wordOffset) & bit) != 0){
+            return Board.PLAYER_ONE;
+        }
+
+        if ((arena.getLong(wordOffset + words * Long.BYTES) & bit) != 0){
+            return Board.PLAYER_TWO;
+        }
+
+        return Board.EMPTY;
+    }
+
+    /**
+     * @param id - id from open()
+     * @return the player whose turn it is
+     */
+    public int currentPlayer(long id){
+        return arena.get(offsetOf(id) + SIDE_TO_MOVE);
+    }
+
+    /**
+     * @param id - id from open()
+     * @return KEEP_PLAYING, FIRST_WINS, SECOND_WINS or TIE for the current game
+     */
+    public int result(long id){
+        return arena.get(offsetOf(id) + RESULT);
+    }
+
+    /**
+     * @param id - id from open()
+     * @return the game being played, counting from 1
+     */
+    public int gameNumber(long id){
+        return arena.get(offsetOf(id) + GAME_NUMBER) & 0xFF;
+    }
+
+    /**
+     * @param id - id from open()
+     * @return player one's match score in half points
+     */
+    public int playerOneHalfPoints(long id){
+        return arena.getShort(offsetOf(id) + PLAYER_ONE_POINTS);
+    }
+
+    /**
+     * @param id - id from open()
+     * @return player two's match score in half points
+     */
+    public int playerTwoHalfPoints(long id){
+        return arena.getShort(offsetOf(id) + PLAYER_TWO_POINTS);
+    }
+
+    /**
+     * @return number of open sessions
+     */
+    public int size(){
+        return size;
+    }
+
+    /**
+     * @return most sessions that can be open at once
+     */
+    public int capacity(){
+        return capacity;
+    }
+
+    /**
+     * @return bytes of off-heap memory used by the store
+     */
+    public long offHeapBytes(){
+        return arena.capacity();
+    }
+
+    /**
+     * Finds a session's slot and checks the id is still open
+     * @throws IllegalArgumentException if the session was closed or never existed
+     */
+    private int offsetOf(long id){
+        if (!isOpen(id)){
+            throw new IllegalArgumentException("Session " + Long.toHexString(id) + " is not open");
+        }
+
+        return offsetOf((int) id);
+    }
+
+    private int offsetOf(int slot){
+        return slot * slotBytes;
+    }
+
+    /**
+     * Opens millions of sessions and plays random moves in them, then prints how much
+     * heap and off-heap memory the sessions take and how fast moves are played
+     * @param args - number of sessions and moves per session, 2000000 and 9 by default
+     */
+    public static void main(String[] args){
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int movesPerSession = args.length > 1 ? Integer.parseInt(args[1]) : 9;
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long heapBefore = runtime.totalMemory() - runtime.freeMemory();
+
+        SessionStore store = new SessionStore(Board.DEFAULT_SIZE, Board.DEFAULT_SIZE, Board.DEFAULT_SIZE, sessions);
+        long[] ids = new long[sessions];
+
+        for (int i = 0; i < sessions; i++) {
+            ids[i] = store.open();
+        }
+
+        Board scratch = new Board();
+        SplittableRandom random = new SplittableRandom(7);
+        long moves = 0;
+        long start = System.nanoTime();
+
+        for (int move = 0; move < movesPerSession; move++) {
+            for (long id : ids) {
+                if (store.result(id) != GameEngine.KEEP_PLAYING){
+                    store.nextGame(id);
+                }
+
+                if (store.play(id, random.nextInt(scratch.cells), scratch) >= 0){
+                    moves++;
+                }
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.gc();
+        long heapAfter = runtime.totalMemory() - runtime.freeMemory();
+
+        System.out.printf("%d sessions, %d bytes per slot, %.1f MB off heap%n",
+                store.size(), store.slotBytes, store.offHeapBytes() / 1e6);
+        System.out.printf("Heap grew %.1f MB, %.1f MB of it the id array%n",
+                (heapAfter - heapBefore) / 1e6, sessions * 8 / 1e6);
+        System.out.printf("%d moves in %.2f seconds, %.0f moves/sec%n", moves, seconds, moves / seconds);
+    }
+}
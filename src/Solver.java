@@ -0,0 +1,380 @@
+/**
+ *  Finds perfect play for small boards with a negamax alpha-beta search. Every position
+ *  the search finishes is saved in a transposition table under its canonical key, the
+ *  smallest key among its rotations and reflections, so equivalent positions are only
+ *  searched once. Once a position has been solved, solving it or any of its mirror images
+ *  again is a table lookup.
+ *
+ *  Scores are from the point of view of the player to move. A win scores the number of
+ *  blank spots left before the winning move, so quicker wins score higher and slower
+ *  losses score higher. A tie scores 0.
+ *
+ *  A solver keeps its table between calls and is not thread safe. Use one per thread.
+ */
+
+public class Solver {
+
+    static final int MAX_CELLS = Symmetry.MAX_CELLS;
+    static final int DEFAULT_TABLE_BITS = 20;
+
+    static final int WIN = 1;
+    static final int DRAW = 0;
+    static final int LOSS = -1;
+
+    // Kinds of scores saved in the table
+    private static final int EXACT = 0;
+    private static final int LOWER_BOUND = 1;
+    private static final int UPPER_BOUND = 2;
+
+    // How many slots after the home slot are tried before an entry is overwritten
+    private static final int PROBE_LIMIT = 8;
+
+    private final int width;
+    private final int height;
+    private final int winLength;
+    private final Symmetry symmetry;
+    private final int[] moveOrder;
+
+    // Open addressing table. A key of 0 marks an empty slot so keys are stored plus one.
+    private final long[] tableKeys;
+    private final int[] tableEntries;
+    private final int tableMask;
+
+    private long nodes;
+    private long lastNodes;
+    private long probes;
+    private long hits;
+
+    /**
+     * The answer for a position
+     */
+    public static class Solution {
+        final int value;
+        final int bestMove;
+        final int score;
+
+        Solution(int value, int bestMove, int score){
+            this.value = value;
+            this.bestMove = bestMove;
+            this.score = score;
+        }
+
+        @Override
+        public String toString(){
+            return "Solution[value=" + value + ", bestMove=" + bestMove + ", score=" + score + "]";
+        }
+    }
+
+    /**
+     * Creates a solver with a table of 2^20 entries
+     * @param width - number of columns
+     * @param height - number of rows
+     * @param winLength - number of marks in a line needed to win
+     */
+    public Solver(int width, int height, int winLength){
+        this(width, height, winLength, DEFAULT_TABLE_BITS);
+    }
+
+    /**
+     * Creates a solver
+     * @param width - number of columns
+     * @param height - number of rows
+     * @param winLength - number of marks in a line needed to win
+     * @param tableBits - the table holds 2^tableBits entries
+     */
+    public Solver(int width, int height, int winLength, int tableBits){
+        if (width * height > MAX_CELLS){
+            throw new IllegalArgumentException("The solver supports boards with up to " + MAX_CELLS + " cells");
+        }
+
+        this.width = width;
+        this.height = height;
+        this.winLength = winLength;
+        this.symmetry = new Symmetry(width, height);
+        this.moveOrder = centerFirstOrder(width, height);
+
+        tableKeys = new long[1 << tableBits];
+        tableEntries = new int[1 << tableBits];
+        tableMask = (1 << tableBits) - 1;
+    }
+
+    /**
+     * Creates a solver sized for a board
+     * @param board - board the solver will be used with
+     * @return a new solver
+     */
+    public static Solver forBoard(Board board){
+        return new Solver(board.width, board.height, board.winLength);
+    }
+
+    /**
+     * Solves a position for the player whose turn it is. The board is used as scratch
+     * space during the search and is left as it was.
+     * @param board - position to solve, must be the size this solver was created for
+     * @return the game value (WIN, DRAW or LOSS), the best move and its score
+     */
+    public Solution solve(Board board){
+        if (board.width != width || board.height != height || board.winLength != winLength){
+            throw new IllegalArgumentException("Board does not match the size this solver was created for");
+        }
+
+        int player = board.playerToMove();
+        int empties = board.cells - board.markCount();
+        long startNodes = nodes;
+
+        // A position that is already over has no best move
+        if (alreadyWon(board, GameEngine.otherPlayer(player))){
+            lastNodes = 0;
+            return new Solution(LOSS, -1, -(empties + 1));
+        }
+
+        if (empties == 0){
+            lastNodes = 0;
+            return new Solution(DRAW, -1, 0);
+        }
+
+        int score = negamax(board, player, empties, -(empties + 1), empties + 1);
+        lastNodes = nodes - startNodes;
+
+        return new Solution(Integer.signum(score), lookupMove(board), score);
+    }
+
+    private int negamax(Board board, int player, int empties, int alpha, int beta){
+        nodes++;
+
+        int one = (int) board.marksOf(Board.PLAYER_ONE);
+        int two = (int) board.marksOf(Board.PLAYER_TWO);
+        int sym = symmetry.canonicalSymmetry(one, two);
+        long key = Symmetry.key(symmetry.transformMask(sym, one), symmetry.transformMask(sym, two));
+
+        // The best possible result is winning with this move
+        if (beta > empties){
+            beta = empties;
+
+            if (alpha >= beta){
+                return beta;
+            }
+        }
+
+        int alphaOriginal = alpha;
+        int tableMove = -1;
+        int slot = find(key);
+
+        if (slot >= 0){
+            int entry = tableEntries[slot];
+            int storedScore = entryScore(entry);
+            int bound = entryBound(entry);
+
+            if (bound == EXACT){
+                return storedScore;
+            }
+
+            if (bound == LOWER_BOUND){
+                alpha = Math.max(alpha, storedScore);
+            } else {
+                beta = Math.min(beta, storedScore);
+            }
+
+            if (alpha >= beta){
+                return storedScore;
+            }
+
+            if (entryMove(entry) >= 0){
+                tableMove = symmetry.inverseCell(sym, entryMove(entry));
+            }
+        }
+
+        int opponent = GameEngine.otherPlayer(player);
+        int bestScore = -(empties + 1);
+        int bestMove = -1;
+
+        // Try the move the table remembers first, then the rest from the center outwards
+        for (int i = -1; i < moveOrder.length; i++) {
+            int cell = i < 0 ? tableMove : moveOrder[i];
+
+            if (cell < 0 || (i >= 0 && cell == tableMove) || !board.isEmpty(cell)){
+                continue;
+            }
+
+            int score;
+            board.place(cell, player);
+
+            if (board.winsThrough(cell, player)){
+                score = empties;
+            } else if (empties == 1){
+                score = 0;
+            } else {
+                score = -negamax(board, opponent, empties - 1, -beta, -alpha);
+            }
+
+            board.remove(cell, player);
+
+            if (score > bestScore){
+                bestScore = score;
+                bestMove = cell;
+
+                if (score > alpha){
+                    alpha = score;
+                }
+
+                if (alpha >= beta){
+                    break;
+                }
+            }
+        }
+
+        int bound = EXACT;
+
+        if (bestScore <= alphaOriginal){
+            bound = UPPER_BOUND;
+        } else if (bestScore >= beta){
+            bound = LOWER_BOUND;
+        }
+
+        store(key, bestScore, bound, symmetry.transformCell(sym, bestMove));
+
+        return bestScore;
+    }
+
+    /**
+     * Reads the best move for the position from the table, turned back to the
+     * board's own orientation
+     */
+    private int lookupMove(Board board){
+        int one = (int) board.marksOf(Board.PLAYER_ONE);
+        int two = (int) board.marksOf(Board.PLAYER_TWO);
+        int sym = symmetry.canonicalSymmetry(one, two);
+        int slot = find(Symmetry.key(symmetry.transformMask(sym, one), symmetry.transformMask(sym, two)));
+
+        if (slot < 0 || entryMove(tableEntries[slot]) < 0){
+            return -1;
+        }
+
+        return symmetry.inverseCell(sym, entryMove(tableEntries[slot]));
+    }
+
+    private int find(long key){
+        probes++;
+        int home = homeSlot(key);
+
+        for (int i = 0; i < PROBE_LIMIT; i++) {
+            int slot = (home + i) & tableMask;
+            long stored = tableKeys[slot];
+
+            if (stored == key + 1){
+                hits++;
+                return slot;
+            }
+
+            if (stored == 0){
+                return -1;
+            }
+        }
+
+        return -1;
+    }
+
+    private void store(long key, int score, int bound, int move){
+        int home = homeSlot(key);
+        int slot = home;
+
+        for (int i = 0; i < PROBE_LIMIT; i++) {
+            int candidate = (home + i) & tableMask;
+
+            if (tableKeys[candidate] == 0 || tableKeys[candidate] == key + 1){
+                slot = candidate;
+                break;
+            }
+        }
+
+        // When every slot nearby is taken the home slot is overwritten
+        tableKeys[slot] = key + 1;
+        tableEntries[slot] = ((score + 128) << 16) | (bound << 8) | (move + 1);
+    }
+
+    private int homeSlot(long key){
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed >>> 40) & tableMask;
+    }
+
+    private static int entryScore(int entry){
+        return (entry >>> 16) - 128;
+    }
+
+    private static int entryBound(int entry){
+        return (entry >>> 8) & 0xFF;
+    }
+
+    private static int entryMove(int entry){
+        return (entry & 0xFF) - 1;
+    }
+
+    /**
+     * Checks every mark of a player for a completed line. Only used once per call
+     * to solve, since the search itself checks each move as it is made.
+     */
+    private static boolean alreadyWon(Board board, int player){
+        for (int cell = 0; cell < board.cells; cell++) {
+            if (board.get(cell) == player && board.winsThrough(cell, player)){
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Orders the cells by distance from the center, since central spots are in the
+     * most lines and tend to cause cutoffs sooner
+     */
+    static int[] centerFirstOrder(int width, int height){
+        Integer[] cells = new Integer[width * height];
+
+        for (int cell = 0; cell < cells.length; cell++) {
+            cells[cell] = cell;
+        }
+
+        java.util.Arrays.sort(cells, java.util.Comparator.comparingDouble(cell -> {
+            double rowOffset = cell / width - (height - 1) / 2.0;
+            double colOffset = cell % width - (width - 1) / 2.0;
+            return rowOffset * rowOffset + colOffset * colOffset;
+        }));
+
+        int[] order = new int[cells.length];
+
+        for (int i = 0; i < order.length; i++) {
+            order[i] = cells[i];
+        }
+
+        return order;
+    }
+
+    /**
+     * Empties the table so the next solve starts cold
+     */
+    public void clearTable(){
+        java.util.Arrays.fill(tableKeys, 0L);
+        java.util.Arrays.fill(tableEntries, 0);
+    }
+
+    /**
+     * @return positions searched by the most recent call to solve
+     */
+    public long lastNodeCount(){
+        return lastNodes;
+    }
+
+    /**
+     * @return positions searched since the solver was created
+     */
+    public long nodeCount(){
+        return nodes;
+    }
+
+    /**
+     * @return fraction of table lookups that found the position, 0 through 1
+     */
+    public double hitRate(){
+        return probes == 0 ? 0 : (double) hits / probes;
+    }
+}
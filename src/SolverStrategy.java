@@ -0,0 +1,73 @@
+import java.util.SplittableRandom;
+
+/**
+ *  The perfect opponent. Plays a move the Solver finds best, so it never loses
+ *  and wins as quickly as it can.
+ *
+ *  Without a random number generator it plays whichever best move the search found
+ *  first. With one, every move is scored exactly and the best ones are picked between
+ *  at random. Exact scores don't depend on what is already in the solver's table, so
+ *  the same seed always gives the same moves even when the solver is shared.
+ */
+
+public class SolverStrategy implements MoveStrategy {
+
+    private final Solver solver;
+    private final SplittableRandom random;
+
+    /**
+     * @param solver - solver sized for the boards this strategy will play on
+     */
+    public SolverStrategy(Solver solver){
+        this(solver, null);
+    }
+
+    /**
+     * @param solver - solver sized for the boards this strategy will play on
+     * @param random - generator owned by this strategy used to pick between equally good moves,
+     *                 or null to always play the first best move found
+     */
+    public SolverStrategy(Solver solver, SplittableRandom random){
+        this.solver = solver;
+        this.random = random;
+    }
+
+    @Override
+    public int chooseMove(Board board, int player){
+        if (random == null){
+            return solver.solve(board).bestMove;
+        }
+
+        int bestScore = Integer.MIN_VALUE;
+        int bestMove = -1;
+        int ties = 0;
+
+        for (int cell = 0; cell < board.cells; cell++) {
+            if (!board.isEmpty(cell)){
+                continue;
+            }
+
+            // Score each move from this player's point of view
+            board.place(cell, player);
+            int score;
+
+            if (board.winsThrough(cell, player)){
+                score = board.cells - board.markCount() + 1;
+            } else {
+                score = -solver.solve(board).score;
+            }
+
+            board.remove(cell, player);
+
+            if (score > bestScore){
+                bestScore = score;
+                bestMove = cell;
+                ties = 1;
+            } else if (score == bestScore && random.nextInt(++ties) == 0){
+                bestMove = cell; // Each of the tied moves is kept with equal chance
+            }
+        }
+
+        return bestMove;
+    }
+}
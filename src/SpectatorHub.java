@@ -0,0 +1,307 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ *  Sends a live match to any number of spectators. Each move is encoded once into a
+ *  small immutable frame, and that same frame is queued for every spectator, so a move
+ *  costs one encoding however many people are watching. Frames are lines of text:
+ *
+ *    DELTA sequence player row,col                 a move was played
+ *    SNAPSHOT sequence width height cells          the whole board, cells is one digit
+ *                                                  per spot (0 blank, 1 or 2 a player)
+ *
+ *  Every spectator has a queue of at most queueCapacity frames. A spectator who falls
+ *  that far behind has its queue thrown away and is sent one snapshot of the board as it
+ *  is when they catch up, instead of a backlog that would only grow. New spectators
+ *  start with a snapshot too.
+ *
+ *  Publishing and polling can happen on different threads.
+ */
+
+public class SpectatorHub {
+
+    static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+    private final int queueCapacity;
+    private final List<Spectator> spectators = new ArrayList<>();
+
+    private long sequence;
+    private volatile Frame latestSnapshot;
+
+    /**
+     * One encoded update, shared by every spectator it is sent to
+     */
+    public static final class Frame {
+        final long sequence;
+        final long publishedNanos;
+        final boolean snapshot;
+        private final ByteBuffer bytes;
+
+        private Frame(long sequence, boolean snapshot, String text){
+            this.sequence = sequence;
+            this.snapshot = snapshot;
+            this.bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII)).asReadOnlyBuffer();
+            this.publishedNanos = System.nanoTime();
+        }
+
+        /**
+         * @return a view of the frame's bytes with its own position, for writing to one spectator
+         */
+        public ByteBuffer bytes(){
+            return bytes.duplicate();
+        }
+
+        @Override
+        public String toString(){
+            return StandardCharsets.US_ASCII.decode(bytes()).toString().trim();
+        }
+    }
+
+    /**
+     * One spectator's queue of frames waiting to be sent
+     */
+    public final class Spectator {
+        private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+        private boolean needsSnapshot = true;
+        private long coalesced;
+
+        private synchronized void offer(Frame frame){
+            if (needsSnapshot){
+                return; // Will be sent the newest snapshot instead
+            }
+
+            if (frames.size() >= queueCapacity){
+                coalesced += frames.size();
+                frames.clear();
+                needsSnapshot = true;
+                return;
+            }
+
+            frames.add(frame);
+        }
+
+        /**
+         * @return the next frame to send, or null if the spectator is up to date
+         */
+        public synchronized Frame poll(){
+            Frame frame = frames.poll();
+
+            if (frame == null && needsSnapshot){
+                frame = latestSnapshot;
+                needsSnapshot = frame == null;
+            }
+
+            return frame;
+        }
+
+        /**
+         * @return number of frames replaced by snapshots because the spectator fell behind
+         */
+        public synchronized long coalesced(){
+            return coalesced;
+        }
+    }
+
+    /**
+     * @param queueCapacity - frames a spectator can fall behind by before getting a snapshot instead
+     */
+    public SpectatorHub(int queueCapacity){
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Adds a spectator, whose first frame is a snapshot of the board
+     * @return the spectator, poll it for frames to send
+     */
+    public synchronized Spectator subscribe(){
+        Spectator spectator = new Spectator();
+        spectators.add(spectator);
+        return spectator;
+    }
+
+    /**
+     * Stops sending frames to a spectator
+     * @param spectator - spectator from subscribe()
+     */
+    public synchronized void unsubscribe(Spectator spectator){
+        int index = spectators.indexOf(spectator);
+
+        if (index >= 0){
+            // Order doesn't matter, so fill the gap with the last spectator
+            spectators.set(index, spectators.get(spectators.size() - 1));
+            spectators.remove(spectators.size() - 1);
+        }
+    }
+
+    /**
+     * Sends a move to every spectator
+     * @param board - board after the move
+     * @param player - player who made the move
+     * @param cell - cell index of the move
+     */
+    public synchronized void publishMove(Board board, int player, int cell){
+        sequence++;
+        latestSnapshot = snapshotFrame(board);
+
+        Frame delta = new Frame(sequence, false, "DELTA " + sequence + " " + player + " "
+                + TicTacToe.formatMove(board, cell) + "\n");
+
+        for (Spectator spectator : spectators) {
+            spectator.offer(delta);
+        }
+    }
+
+    /**
+     * Sends the whole board to every spectator, such as when a new game starts
+     * @param board - board to send
+     */
+    public synchronized void publishSnapshot(Board board){
+        sequence++;
+        latestSnapshot = snapshotFrame(board);
+
+        for (Spectator spectator : spectators) {
+            spectator.offer(latestSnapshot);
+        }
+    }
+
+    private Frame snapshotFrame(Board board){
+        StringBuilder text = new StringBuilder(board.cells + 32);
+        text.append("SNAPSHOT ").append(sequence).append(' ')
+            .append(board.width).append(' ').append(board.height).append(' ');
+
+        for (int cell = 0; cell < board.cells; cell++) {
+            text.append(board.get(cell));
+        }
+
+        return new Frame(sequence, true, text.append('\n').toString());
+    }
+
+    /**
+     * @return number of spectators watching
+     */
+    public synchronized int spectatorCount(){
+        return spectators.size();
+    }
+
+    /**
+     * Plays random games watched by many spectators. Poller threads drain the spectators'
+     * queues and time how long each frame took to reach them. A few spectators only look
+     * every so often, to show them being sent snapshots instead of a backlog.
+     * @param args - spectators, moves and poller threads, 10000, 1000 and 2 by default
+     */
+    public static void main(String[] args) throws InterruptedException {
+        int spectatorCount = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int moves = args.length > 1 ? Integer.parseInt(args[1]) : 1_000;
+        int pollerCount = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+        final int SLOW_EVERY = 100;        // One spectator in this many is slow
+        final long SLOW_PAUSE_MILLIS = 50;
+        final long POLL_INTERVAL_NANOS = 200_000L;
+        final long MOVE_INTERVAL_NANOS = 5_000_000L;
+
+        SpectatorHub hub = new SpectatorHub(DEFAULT_QUEUE_CAPACITY);
+        Spectator[] spectators = new Spectator[spectatorCount];
+
+        for (int i = 0; i < spectatorCount; i++) {
+            spectators[i] = hub.subscribe();
+        }
+
+        LatencyHistogram latency = new LatencyHistogram("fan-out");
+        long[] framesReceived = new long[pollerCount];
+        long[] snapshotsReceived = new long[pollerCount];
+        AtomicBoolean done = new AtomicBoolean();
+        Thread[] pollers = new Thread[pollerCount];
+
+        for (int p = 0; p < pollerCount; p++) {
+            int poller = p;
+            pollers[p] = new Thread(() -> {
+                long lastSlowPoll = 0;
+
+                while (!done.get()) {
+                    long now = System.nanoTime();
+                    boolean pollSlow = now - lastSlowPoll > SLOW_PAUSE_MILLIS * 1_000_000L;
+
+                    for (int i = poller; i < spectatorCount; i += pollerCount) {
+                        if (i % SLOW_EVERY == 0 && !pollSlow){
+                            continue;
+                        }
+
+                        Frame frame;
+
+                        while ((frame = spectators[i].poll()) != null) {
+                            if (frame.snapshot){
+                                snapshotsReceived[poller]++;
+                            } else {
+                                latency.record(System.nanoTime() - frame.publishedNanos);
+                            }
+                            framesReceived[poller]++;
+                        }
+                    }
+
+                    if (pollSlow){
+                        lastSlowPoll = now;
+                    }
+                    LockSupport.parkNanos(POLL_INTERVAL_NANOS);
+                }
+            });
+            pollers[p].start();
+        }
+
+        Board board = new Board();
+        GameEngine game = new GameEngine(board);
+        SplittableRandom random = new SplittableRandom(3);
+        long start = System.nanoTime();
+        long nextMove = start;
+        long publishNanos = 0;
+
+        hub.publishSnapshot(board);
+
+        for (int move = 0; move < moves; move++) {
+            LockSupport.parkNanos(nextMove - System.nanoTime());
+            nextMove += MOVE_INTERVAL_NANOS;
+
+            if (game.isOver()){
+                game.newGame();
+                hub.publishSnapshot(board);
+            }
+
+            int player = game.currentPlayer();
+            int cell = RandomStrategy.randomEmptyCell(board, random);
+            game.play(cell);
+
+            long publishStart = System.nanoTime();
+            hub.publishMove(board, player, cell);
+            publishNanos += System.nanoTime() - publishStart;
+        }
+
+        Thread.sleep(2 * SLOW_PAUSE_MILLIS);
+        done.set(true);
+
+        for (Thread poller : pollers) {
+            poller.join();
+        }
+
+        long frames = 0;
+        long snapshots = 0;
+        long coalesced = 0;
+
+        for (int p = 0; p < pollerCount; p++) {
+            frames += framesReceived[p];
+            snapshots += snapshotsReceived[p];
+        }
+
+        for (Spectator spectator : spectators) {
+            coalesced += spectator.coalesced();
+        }
+
+        System.out.printf("%d spectators, %d moves, %d frames delivered (%d snapshots), %d frames coalesced%n",
+                spectatorCount, moves, frames, snapshots, coalesced);
+        System.out.printf("Publishing a move to every spectator took %.1f us on average%n", publishNanos / 1e3 / moves);
+        System.out.println(latency);
+    }
+}
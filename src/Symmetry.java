@@ -0,0 +1,189 @@
+/**
+ *  The rotations and reflections of a board. A square board has 8 of them (4 rotations,
+ *  each with and without a mirror) and any other rectangle has 4 (identity, both mirrors
+ *  and the half turn). Positions that map onto each other play out the same way, so a
+ *  search only has to look at one of them.
+ *
+ *  Marks are transformed as bitmasks of up to 32 cells using one lookup table per byte,
+ *  so transforming a mask is four table reads and ORs instead of a loop over cells.
+ */
+
+public class Symmetry {
+
+    static final int MAX_CELLS = 32;
+
+    final int width;
+    final int height;
+    final int cells;
+    final int count;
+
+    // cellMaps[sym][cell] is where cell ends up, inverseMaps[sym][cell] is where it came from
+    private final int[][] cellMaps;
+    private final int[][] inverseMaps;
+
+    // byteTables[sym][chunk][bits] transforms the 8 cells in byte number chunk of a mask
+    private final int[][][] byteTables;
+
+    /**
+     * Builds the symmetries for a board size
+     * @param width - number of columns
+     * @param height - number of rows
+     */
+    public Symmetry(int width, int height){
+        if (width * height > MAX_CELLS){
+            throw new IllegalArgumentException("Symmetry supports boards with up to " + MAX_CELLS + " cells");
+        }
+
+        this.width = width;
+        this.height = height;
+        this.cells = width * height;
+        this.count = width == height ? 8 : 4;
+
+        cellMaps = new int[count][cells];
+        inverseMaps = new int[count][cells];
+
+        for (int sym = 0; sym < count; sym++) {
+            for (int cell = 0; cell < cells; cell++) {
+                int image = map(sym, cell / width, cell % width);
+                cellMaps[sym][cell] = image;
+                inverseMaps[sym][image] = cell;
+            }
+        }
+
+        int chunks = (cells + 7) / 8;
+        byteTables = new int[count][chunks][256];
+
+        for (int sym = 0; sym < count; sym++) {
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                for (int bits = 1; bits < 256; bits++) {
+                    int image = 0;
+
+                    for (int bit = 0; bit < 8; bit++) {
+                        int cell = chunk * 8 + bit;
+
+                        if ((bits & (1 << bit)) != 0 && cell < cells){
+                            image |= 1 << cellMaps[sym][cell];
+                        }
+                    }
+
+                    byteTables[sym][chunk][bits] = image;
+                }
+            }
+        }
+    }
+
+    /**
+     * Maps a spot through one symmetry. The first four work on any rectangle, the
+     * last four turn rows into columns so they only exist for square boards.
+     */
+    private int map(int sym, int row, int col){
+        int lastRow = height - 1;
+        int lastCol = width - 1;
+
+        switch (sym){
+            case 0: return row * width + col;                               // identity
+            case 1: return row * width + (lastCol - col);                   // mirror left-right
+            case 2: return (lastRow - row) * width + col;                   // mirror top-bottom
+            case 3: return (lastRow - row) * width + (lastCol - col);       // half turn
+            case 4: return col * width + row;                               // mirror on main diagonal
+            case 5: return col * width + (lastRow - row);                   // quarter turn clockwise
+            case 6: return (lastCol - col) * width + row;                   // quarter turn counter-clockwise
+            default: return (lastCol - col) * width + (lastRow - row);      // mirror on other diagonal
+        }
+    }
+
+    /**
+     * Transforms a bitmask of marks
+     * @param sym - symmetry number, 0 through count - 1
+     * @param mask - marks, bit n is cell n
+     * @return the transformed marks
+     */
+    public int transformMask(int sym, int mask){
+        int[][] tables = byteTables[sym];
+        int image = 0;
+
+        for (int chunk = 0; chunk < tables.length; chunk++) {
+            image |= tables[chunk][(mask >>> (chunk * 8)) & 0xFF];
+        }
+
+        return image;
+    }
+
+    /**
+     * @param sym - symmetry number, 0 through count - 1
+     * @param cell - cell index
+     * @return where the cell ends up under the symmetry
+     */
+    public int transformCell(int sym, int cell){
+        return cellMaps[sym][cell];
+    }
+
+    /**
+     * @param sym - symmetry number, 0 through count - 1
+     * @param cell - transformed cell index
+     * @return the cell that the symmetry moves onto the given cell
+     */
+    public int inverseCell(int sym, int cell){
+        return inverseMaps[sym][cell];
+    }
+
+    /**
+     * Packs both players' marks into one position key
+     * @param playerOneMarks - player one's marks
+     * @param playerTwoMarks - player two's marks
+     * @return the key, player two in the high 32 bits
+     */
+    public static long key(int playerOneMarks, int playerTwoMarks){
+        return ((long) playerTwoMarks << 32) | (playerOneMarks & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Finds the symmetry that gives a position its smallest key. Every position
+     * that is a rotation or reflection of this one picks the same canonical key.
+     * @param playerOneMarks - player one's marks
+     * @param playerTwoMarks - player two's marks
+     * @return the symmetry number that produces the canonical key
+     */
+    public int canonicalSymmetry(int playerOneMarks, int playerTwoMarks){
+        long best = key(playerOneMarks, playerTwoMarks);
+        int bestSym = 0;
+
+        for (int sym = 1; sym < count; sym++) {
+            long candidate = key(transformMask(sym, playerOneMarks), transformMask(sym, playerTwoMarks));
+
+            if (Long.compareUnsigned(candidate, best) < 0){
+                best = candidate;
+                bestSym = sym;
+            }
+        }
+
+        return bestSym;
+    }
+
+    /**
+     * @param playerOneMarks - player one's marks
+     * @param playerTwoMarks - player two's marks
+     * @return the smallest key among all rotations and reflections of the position
+     */
+    public long canonicalKey(int playerOneMarks, int playerTwoMarks){
+        long best = key(playerOneMarks, playerTwoMarks);
+
+        for (int sym = 1; sym < count; sym++) {
+            long candidate = key(transformMask(sym, playerOneMarks), transformMask(sym, playerTwoMarks));
+
+            if (Long.compareUnsigned(candidate, best) < 0){
+                best = candidate;
+            }
+        }
+
+        return best;
+    }
+
+    /**
+     * @param board - board of this symmetry's size
+     * @return the smallest key among all rotations and reflections of the board's position
+     */
+    public long canonicalKey(Board board){
+        return canonicalKey((int) board.marksOf(Board.PLAYER_ONE), (int) board.marksOf(Board.PLAYER_TWO));
+    }
+}
@@ -0,0 +1,81 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ *  Writes events as lines of text, like "X plays 2,2" or "Game 1: O won, score 0.0-1.0".
+ *  The same sink works for the console, a log file or a network connection, depending
+ *  on the Writer it is given. Output is flushed whenever the sink catches up, so a burst
+ *  of events is written out together.
+ *
+ *  Symbols start as the session's and follow SYMBOL_CHANGED events after that, so the
+ *  text always uses the symbols that were in place when each event happened.
+ */
+
+public class TextEventSink implements EventSink {
+
+    private final Writer out;
+    private final GameSession session;
+    private final String[] symbols = new String[3];
+
+    /**
+     * @param out - where the lines are written
+     * @param session - session the events come from, for its symbols and board width
+     */
+    public TextEventSink(Writer out, GameSession session){
+        this.out = out;
+        this.session = session;
+        symbols[Board.PLAYER_ONE] = session.playerOne;
+        symbols[Board.PLAYER_TWO] = session.playerTwo;
+    }
+
+    @Override
+    public void accept(GameEvent event){
+        try {
+            out.write(format(event));
+            out.write(System.lineSeparator());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void caughtUp(){
+        try {
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @param event - any event
+     * @return the event as one line of text
+     */
+    String format(GameEvent event){
+        String symbol = symbols[event.player];
+
+        switch (event.type){
+            case GameEvent.SYMBOL_CHANGED:
+                symbols[event.player] = event.symbol;
+                return "Player " + event.player + " is now " + event.symbol;
+            case GameEvent.MOVE_REJECTED:
+                return symbol + " tried " + formatCell(event.cell) + ": " + GameServer.reasonName(event.result);
+            case GameEvent.MOVE_PLACED:
+                return symbol + " plays " + formatCell(event.cell);
+            case GameEvent.MOVE_TAKEN_BACK:
+                return symbol + " takes back " + formatCell(event.cell);
+            case GameEvent.GAME_ENDED:
+                String outcome = event.result == GameEngine.TIE ? "tie" : symbol + " won";
+                return symbol + " plays " + formatCell(event.cell) + ". Game " + event.gameNumber + ": " + outcome
+                        + ", score " + event.playerOneHalfPoints / 2.0 + "-" + event.playerTwoHalfPoints / 2.0;
+            default:
+                return event.result == GameEngine.TIE ? "The match is a tie" : symbols[event.result] + " won the match";
+        }
+    }
+
+    private String formatCell(int cell){
+        int width = session.boardWidth;
+        return (cell / width + 1) + "," + (cell % width + 1);
+    }
+}
@@ -0,0 +1,217 @@
+import java.io.PrintStream;
+import java.util.Locale;
+
+/**
+ *  Stands in for System.out and System.err so every thread can have a console of its own.
+ *  A thread that has bound a PrintStream has everything it prints sent there, and every
+ *  other thread prints to the real console as before. This lets the blocking console game
+ *  run for many players at once without changing how it prints.
+ *
+ *  Every method is passed straight to the thread's stream without taking a lock here, so
+ *  one slow connection never holds up what other threads print.
+ */
+
+public class ThreadConsole extends PrintStream {
+
+    private static final ThreadLocal<PrintStream> BOUND = new ThreadLocal<>();
+
+    private final PrintStream fallback;
+
+    private ThreadConsole(PrintStream fallback){
+        super(fallback);
+        this.fallback = fallback;
+    }
+
+    /**
+     * Puts ThreadConsoles in place of System.out and System.err, once
+     */
+    public static synchronized void install(){
+        if (!(System.out instanceof ThreadConsole)){
+            System.setOut(new ThreadConsole(System.out));
+        }
+
+        if (!(System.err instanceof ThreadConsole)){
+            System.setErr(new ThreadConsole(System.err));
+        }
+    }
+
+    /**
+     * Sends what the calling thread prints to System.out and System.err to a stream
+     * @param stream - the thread's console
+     */
+    public static void bind(PrintStream stream){
+        BOUND.set(stream);
+    }
+
+    /**
+     * Sends what the calling thread prints back to the real console
+     */
+    public static void unbind(){
+        BOUND.remove();
+    }
+
+    private PrintStream current(){
+        PrintStream stream = BOUND.get();
+        return stream != null ? stream : fallback;
+    }
+
+    @Override
+    public void flush(){
+        current().flush();
+    }
+
+    @Override
+    public void close(){
+        current().close();
+    }
+
+    @Override
+    public boolean checkError(){
+        return current().checkError();
+    }
+
+    @Override
+    public void write(int b){
+        current().write(b);
+    }
+
+    @Override
+    public void write(byte[] buf, int off, int len){
+        current().write(buf, off, len);
+    }
+
+    @Override
+    public void write(byte[] buf){
+        current().write(buf, 0, buf.length);
+    }
+
+    @Override
+    public void print(boolean b){
+        current().print(b);
+    }
+
+    @Override
+    public void print(char c){
+        current().print(c);
+    }
+
+    @Override
+    public void print(int i){
+        current().print(i);
+    }
+
+    @Override
+    public void print(long l){
+        current().print(l);
+    }
+
+    @Override
+    public void print(float f){
+        current().print(f);
+    }
+
+    @Override
+    public void print(double d){
+        current().print(d);
+    }
+
+    @Override
+    public void print(char[] s){
+        current().print(s);
+    }
+
+    @Override
+    public void print(String s){
+        current().print(s);
+    }
+
+    @Override
+    public void print(Object obj){
+        current().print(obj);
+    }
+
+    @Override
+    public void println(){
+        current().println();
+    }
+
+    @Override
+    public void println(boolean x){
+        current().println(x);
+    }
+
+    @Override
+    public void println(char x){
+        current().println(x);
+    }
+
+    @Override
+    public void println(int x){
+        current().println(x);
+    }
+
+    @Override
+    public void println(long x){
+        current().println(x);
+    }
+
+    @Override
+    public void println(float x){
+        current().println(x);
+    }
+
+    @Override
+    public void println(double x){
+        current().println(x);
+    }
+
+    @Override
+    public void println(char[] x){
+        current().println(x);
+    }
+
+    @Override
+    public void println(String x){
+        current().println(x);
+    }
+
+    @Override
+    public void println(Object x){
+        current().println(x);
+    }
+
+    @Override
+    public PrintStream printf(String format, Object... args){
+        return current().printf(format, args);
+    }
+
+    @Override
+    public PrintStream printf(Locale l, String format, Object... args){
+        return current().printf(l, format, args);
+    }
+
+    @Override
+    public PrintStream format(String format, Object... args){
+        return current().format(format, args);
+    }
+
+    @Override
+    public PrintStream format(Locale l, String format, Object... args){
+        return current().format(l, format, args);
+    }
+
+    @Override
+    public PrintStream append(CharSequence csq){
+        return current().append(csq);
+    }
+
+    @Override
+    public PrintStream append(CharSequence csq, int start, int end){
+        return current().append(csq, start, end);
+    }
+
+    @Override
+    public PrintStream append(char c){
+        return current().append(c);
+    }
+}
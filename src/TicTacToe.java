@@ -1,7 +1,11 @@
 /**
  *  This is a Tic-Tac-Toe game played in the command line. Players can play a match which
- *  contains a series of games. The game follows the classic 3-in-a-row rules. Players can
- *  navigate the program and change their symbols using a menu system.
+ *  contains a series of games. The game follows the classic 3-in-a-row rules by default, and
+ *  players can change the board size and how many marks in a row it takes to win. Players can
+ *  navigate the program and change their symbols and board using a menu system.
+ *
+ *  This class is the console frontend. The rules are played by MatchEngine and GameEngine,
+ *  and the players' symbols and board settings are kept in a GameSession.
  *
  *  @author Luis Miranda
  *  @version 2.0
@@ -10,46 +14,153 @@
 
 public class TicTacToe {
 
-    static final int NBR_OF_GAMES = 3;
-    static final int ROWS = 3;
-    static final int COLS = 3;
+    static final int NBR_OF_GAMES = GameSession.NBR_OF_GAMES;
+
+    static final int FIRST_WINS = GameEngine.FIRST_WINS;
+    static final int SECOND_WINS = GameEngine.SECOND_WINS;
+    static final int TIE = GameEngine.TIE;
+
+    // Largest board the perfect opponent is offered on, bigger boards take too long to solve
+    static final int MAX_SOLVER_CELLS = 16;
 
-    static final int FIRST_WINS = 1;
-    static final int SECOND_WINS = 2;
-    static final int TIE = 3;
+    // The journal has room for a game on the biggest board changeBoardSize() allows
+    static final int MAX_JOURNAL_MOVES = 99 * 99;
+    static final long JOURNAL_FLUSH_MILLIS = 200;
 
-    static String playerOne = "X";
-    static String playerTwo = "O";
+    // The leaderboard name of the computer player, people can't use it
+    static final String COMPUTER_NAME = "Computer";
+
+    // What getPlayerMove returns for the console commands instead of a cell
+    static final int TAKE_BACK = -1;
+    static final int REDO = -2;
 
     /**
      * Entry point for the program
-     * @param args - Not used in this program.
+     * @param args - --ansi redraws only the spots that change, --quiet turns off drawing,
+     *               --fast-input reads piped input with FastInput and stops cleanly when it runs out,
+     *               --log file archives every 3x3 game to a GameLog,
+     *               --mcts uses Monte Carlo tree search as the opponent on big boards,
+     *               --journal file saves the match in progress so it can be resumed after a crash,
+     *               --events file writes every move, game and symbol change to a file on its own thread,
+     *               --metrics seconds records metrics, shows them over JMX and prints them
+     *               every few seconds,
+     *               --leaderboard file asks for the players' names and rates their matches,
+     *               --book file has the computer play from an OpeningBook on the board it covers,
+     *               --stats keeps statistics of every game played and prints them at the end
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws java.io.IOException {
+
+        GameSession session = new GameSession();
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+
+            if (arg.equals("--log") && i + 1 < args.length){
+                session.gameLog = new GameLog(java.nio.file.Paths.get(args[++i]));
+            } else if (arg.equals("--ansi")){
+                session.renderer = new BoardRenderer(System.out, BoardRenderer.ANSI);
+            } else if (arg.equals("--quiet")){
+                session.renderer = new BoardRenderer(System.out, BoardRenderer.QUIET);
+            } else if (arg.equals("--fast-input")){
+                IR4.useFastInput(System.in);
+            } else if (arg.equals("--mcts")){
+                session.useMonteCarlo = true;
+            } else if (arg.equals("--journal") && i + 1 < args.length){
+                session.journal = new MatchJournal(java.nio.file.Paths.get(args[++i]), 1, MAX_JOURNAL_MOVES);
+                session.journal.startFlusher(JOURNAL_FLUSH_MILLIS);
+            } else if (arg.equals("--events") && i + 1 < args.length){
+                java.io.Writer eventLog = java.nio.file.Files.newBufferedWriter(java.nio.file.Paths.get(args[++i]));
+                session.events = new EventBus();
+                session.events.subscribe("log", new TextEventSink(eventLog, session), EventBus.DEFAULT_CAPACITY, EventBus.BLOCK);
+            } else if (arg.equals("--metrics") && i + 1 < args.length){
+                GameMetrics.enable();
+                GameMetrics.startDumps(System.err, Long.parseLong(args[++i]));
+            } else if (arg.equals("--leaderboard") && i + 1 < args.length){
+                session.leaderboard = new Leaderboard(java.nio.file.Paths.get(args[++i]));
+            } else if (arg.equals("--book") && i + 1 < args.length){
+                session.book = OpeningBook.open(java.nio.file.Paths.get(args[++i]));
+            } else if (arg.equals("--stats")){
+                session.analytics = new GameAnalytics();
+            }
+        }
+
+        try {
+            if (session.journal != null){
+                resumeMatch(session);
+            }
+
+            runMainMenu(session);
+        } catch (EndOfInputException e) {
+            System.out.println("------Input ended------");
+        } finally {
+            if (session.gameLog != null){
+                session.gameLog.close();
+            }
+
+            if (session.journal != null){
+                session.journal.close();
+            }
+
+            if (session.events != null){
+                session.events.close();
+            }
 
+            if (session.leaderboard != null){
+                session.leaderboard.close();
+            }
+
+            if (GameMetrics.enabled()){
+                System.err.print(GameMetrics.METRICS.dump());
+            }
+
+            if (session.analytics != null){
+                System.out.print(session.analytics.describe(session.boardWidth));
+            }
+        }
+
+        System.out.println("------Thanks for playing!------");
+    }
+
+    /**
+     * Shows the main menu until the player picks exit
+     * @param session - players' symbols and board settings
+     */
+    public static void runMainMenu(GameSession session){
         int menuSelection;
         final int SET_SYMBOLS = 1;
-        final int PLAY_GAME = 2;
-        final int EXIT = 3;
+        final int SET_BOARD = 2;
+        final int PLAY_GAME = 3;
+        final int PLAY_ULTIMATE = 4;
+        final int EXIT = 5;
 
         do {
 
-            displayMainMenu();
+            displayMainMenu(session);
             menuSelection = IR4.getInteger("Select a menu item: ");
 
             switch (menuSelection){
                 case SET_SYMBOLS:
-                    changeSymbols();
+                    changeSymbols(session);
+                    break;
+                case SET_BOARD:
+                    changeBoardSize(session);
                     break;
                 case PLAY_GAME:
-                    String[][] gameBoard = new String[ROWS][COLS];
                     int matchResult; // Will store the outcome of each match
 
+                    chooseOpponent(session);
+                    choosePlayerNames(session);
+
                     do {
-                        displayWelcome();
-                        matchResult = playMatch(gameBoard);
-                        displayFinalResults(matchResult);
+                        displayWelcome(session);
+                        matchResult = playMatch(session, session.newMatch());
+                        displayFinalResults(session, matchResult);
+                        rateMatch(session, matchResult);
                     } while (IR4.getYorN("Play again? y/n") );
+                    break;
+                case PLAY_ULTIMATE:
+                    UltimateTicTacToe.playGames(session);
+                    break;
                 case EXIT:
                     break;
                 default:
@@ -57,343 +168,546 @@ public class TicTacToe {
             }
 
         } while (menuSelection != EXIT);
-
-        System.out.println("------Thanks for playing!------");
     }
 
     /**
      * Plays a match of Tic-Tac-Toe which involves a series of games. The winner
      * of each game gets their match score increased, or if a tie both players get
      * half a point.
-     * @param board - 2D array that contains all spots on the board and player symbols
+     * @param session - players' symbols and board settings
+     * @param match - match to play, scores are kept by the engine
      * @return the match result
      */
-    public static int playMatch(String[][] board){
+    public static int playMatch(GameSession session, MatchEngine match){
         int gameResult;
 
-        int playerOneScore = 0;
-        int playerTwoScore = 0;
+        if (session.journal != null && session.journalSlot < 0){
+            session.journalSlot = session.journal.allocate();
+            checkpoint(session, match);
+        }
 
-        for (int gameNbr = 1; gameNbr <= NBR_OF_GAMES; gameNbr++) {
-            System.out.println("----- Game number " + gameNbr + " -----");
+        while (true) {
+            session.renderer.message("----- Game number " + match.gameNumber() + " -----");
 
-            gameResult = playGame(board);
-            displayBoard(board);
+            gameResult = playGame(session, match);
+            displayBoard(session, match.game().board());
+            archiveGame(session, match.game());
 
             if (gameResult == FIRST_WINS){
-                playerOneScore++;
-                System.out.println(playerOne + " won this game");
+                session.renderer.message(session.playerOne + " won this game");
             } else if (gameResult == SECOND_WINS){
-                playerTwoScore++;
-                System.out.println(playerTwo + " won this game");
+                session.renderer.message(session.playerTwo + " won this game");
             } else {
-                playerOneScore += 0.5;
-                playerTwoScore += 0.5;
-                System.out.println("Nobody won this game. Tie!");
+                session.renderer.message("Nobody won this game. Tie!");
             }
 
-            System.out.println("The score is: " + playerOneScore + "-" + playerTwoScore);
+            session.renderer.message("The score is: " + match.playerOneScore() + "-" + match.playerTwoScore());
 
-            // If a user has won more than half of the games,
-            // They can be declared the winner because the other
-            // player can no longer catch up
-            if (playerOneScore > (NBR_OF_GAMES * .5)){
-                return FIRST_WINS;
-            }
+            // The engine decides the match once a player can no longer
+            // catch up or all games have been played
+            if (match.isOver()){
+                if (session.journal != null){
+                    session.journal.release(session.journalSlot);
+                    session.journalSlot = -1;
+                }
 
-            if (playerTwoScore > (NBR_OF_GAMES * .5)){
-                return SECOND_WINS;
+                return match.result();
             }
 
+            match.nextGame();
+            checkpoint(session, match);
         }
+    }
 
-        // If neither player has won the match after all
-        // games have been played, the match is a tie
-        return TIE;
+    /**
+     * Saves the match to the session's journal, if it has one
+     * @param session - session whose journal the match is saved to
+     * @param match - match in progress
+     */
+    public static void checkpoint(GameSession session, MatchEngine match){
+        if (session.journal != null){
+            session.journal.checkpoint(session.journalSlot, match);
+        }
     }
 
     /**
-     * Plays a single game of Tic-Tac-Toe for a given match.
-     * @param board - 2D array that contains all spots on the board and player symbols
-     * @return the result of the game - PlayerOne Wins: 1, PlayerTwo: Wins 2, Tie: 3
+     * Offers to finish a match that was saved in the journal when the program last
+     * stopped in the middle of it
+     * @param session - session with a journal, its board settings are set to the match's
      */
-    public static int playGame (String[][] board){
-        int move;
-        int gameResult;
+    public static void resumeMatch(GameSession session){
+        MatchEngine[] saved = new MatchEngine[1];
 
-        int xPos;
-        int yPos;
+        session.journal.restore((match, slot) -> {
+            saved[0] = match;
+            session.journalSlot = slot;
+        });
 
-        final int WIN = 1;
-        final int KEEP_PLAYING = 0;
+        MatchEngine match = saved[0];
 
-        initializeBoard(board);
+        if (match == null){
+            return;
+        }
 
-        do {
-            displayBoard(board);
+        // The program stopped after the match was decided but before its slot was freed
+        if (match.isOver()){
+            session.journal.release(session.journalSlot);
+            session.journalSlot = -1;
+            session.renderer.message("The last match finished before the program stopped. The score was "
+                    + match.playerOneScore() + "-" + match.playerTwoScore());
+            displayFinalResults(session, match.result());
+            return;
+        }
 
-            // playerOne's turn
-            move = getPlayerMove("What is your move " + playerOne + "?", board);
+        if (!IR4.getYorN("Resume the match that was interrupted? (game " + match.gameNumber() + ", score "
+                + match.playerOneScore() + "-" + match.playerTwoScore() + ") y/n")){
+            session.journal.release(session.journalSlot);
+            session.journalSlot = -1;
+            return;
+        }
+
+        Board board = match.game().board();
+        session.boardWidth = board.width;
+        session.boardHeight = board.height;
+        session.winLength = board.winLength;
 
-            // Covert two-digit number to coordinates playerOne
-            // Subtract 1 from digits to make suitable for array use
-            xPos = move / 10 - 1; // First digit
-            yPos = move % 10 - 1; // Second digit
+        // The program stopped between games
+        if (match.game().isOver()){
+            match.nextGame();
+        }
 
-            // Place playerOne on their chosen spot
-            board[xPos][yPos] = playerOne;
-            gameResult = checkForWin(board, playerOne);
+        chooseOpponent(session);
+        displayFinalResults(session, playMatch(session, match));
+    }
+
+    /**
+     * Adds a finished game to the session's log and statistics. Only classic 3x3 games
+     * with 3 in a row to win fit in a GameRecord, so games on other boards are not archived.
+     * @param session - session whose log the game is added to
+     * @param game - game that just ended
+     */
+    public static void archiveGame(GameSession session, GameEngine game){
+        if (session.analytics != null){
+            session.analytics.add(game, session.analytics.symbolPair(session.playerOne, session.playerTwo));
+        }
 
-            if (gameResult == KEEP_PLAYING){
-                displayBoard(board);
+        if (session.gameLog != null && GameRecord.fits(game.board())){
+            try {
+                session.gameLog.append(GameRecord.encode(game));
+            } catch (java.io.IOException e) {
+                throw new java.io.UncheckedIOException(e);
+            }
+        }
+    }
 
-                move = getPlayerMove("What is your move " + playerTwo + "?", board);
+    /**
+     * Plays a single game of Tic-Tac-Toe for a given match.
+     * @param session - players' symbols and board settings
+     * @param match - match the game is part of
+     * @return the result of the game - PlayerOne Wins: 1, PlayerTwo: Wins 2, Tie: 3
+     */
+    public static int playGame (GameSession session, MatchEngine match){
+        GameEngine game = match.game();
 
-                // Covert two-digit number to coordinates playerTwo
-                // Subtract 1 from digits to make suitable for array use
-                xPos = move / 10 - 1; // First digit
-                yPos = move % 10 - 1; // Second digit
+        do {
+            displayBoard(session, game.board());
+
+            // The engine passes the turn back and forth between the players
+            int player = game.currentPlayer();
+            String symbol = session.symbolOf(player);
+            MoveStrategy strategy = session.strategyOf(player);
+            long thinkStart = GameMetrics.startTimer();
+            int move;
+
+            if (strategy == null){
+                move = getPlayerMove("What is your move " + symbol + "?", game.board());
+                GameMetrics.recordThinkTime(thinkStart);
+
+                if (move == TAKE_BACK || move == REDO){
+                    changeHistory(session, match, move);
+                    continue;
+                }
+            } else {
+                move = strategy.chooseMove(game.board(), player);
+                GameMetrics.recordThinkTime(thinkStart);
+                session.renderer.message(symbol + " plays " + formatMove(game.board(), move));
 
-                // Place playerTwo on their chosen spot
-                board[xPos][yPos] = playerTwo;
-                gameResult = checkForWin(board, playerTwo);
+                String stats = strategy.lastMoveStats();
 
-                if (gameResult == WIN){
-                    gameResult = SECOND_WINS;
+                if (stats != null){
+                    session.renderer.message("(" + stats + ")");
                 }
             }
 
-        } while (gameResult == KEEP_PLAYING);
+            match.play(move);
+            checkpoint(session, match);
+
+        } while (!game.isOver());
 
-        return gameResult; // 1 = X won, 2 = O won, 3 = tie
+        return match.lastGameResult(); // 1 = X won, 2 = O won, 3 = tie
     }
 
     /**
-     * Checks the board to see if a player has won, if there is a tie, or if the game should continue
-     * @param board - 2D array that contains all spots on the board and player symbols
-     * @param playerSymbol - Player symbol
-     * @return WIN = 1, CONTINUE = 0, TIE = 3
+     * Takes back or redoes a move for a player at the console. Against the computer the
+     * computer's moves are taken back or redone along with the player's, so it is the
+     * player's turn again afterwards.
+     * @param session - players' symbols and strategies
+     * @param match - match whose current game is changed
+     * @param command - TAKE_BACK or REDO
      */
-    public static int checkForWin(String[][] board, String playerSymbol){
+    public static void changeHistory(GameSession session, MatchEngine match, int command){
+        GameEngine game = match.game();
+        GameEvent event = command == TAKE_BACK ? match.takeBack() : match.redo();
 
-        int row;
-        int col;
-
-        final int WIN = 1;
-        final int CONTINUE = 0;
-
-        // Check 3-in-a-line for each row
-        for (row = 0; row < 3; row++) {
-            if (board[row][0].equals(playerSymbol) &&
-                board[row][1].equals(playerSymbol) &&
-                board[row][2].equals(playerSymbol) ){
-                return WIN; // Player wins
-            }
+        if (event == null){
+            session.renderer.message(command == TAKE_BACK ? "There is no move to take back." : "There is no move to redo.");
+            return;
         }
 
-        // Check 3-in-a-line for each column
-        for (col = 0; col < 3; col++) {
-            if (board[0][col].equals(playerSymbol) &&
-                board[1][col].equals(playerSymbol) &&
-                board[2][col].equals(playerSymbol) ){
-                return WIN; // Player wins
+        while (event != null) {
+            if (command == TAKE_BACK){
+                session.renderer.message(session.symbolOf(event.player) + " takes back " + formatMove(game.board(), event.cell));
+            } else {
+                session.renderer.message(session.symbolOf(event.player) + " plays " + formatMove(game.board(), event.cell) + " again");
             }
-        }
 
-        // Check for left to right down diagonal 3-in-a-line
-        if (board[0][0].equals(playerSymbol) &&
-            board[1][1].equals(playerSymbol) &&
-            board[2][2].equals(playerSymbol) ){
-            return WIN; // Player wins
-        }
-
-        // Check for left to right up diagonal 3-in-a-line
-        if (board[0][2].equals(playerSymbol) &&
-            board[1][1].equals(playerSymbol) &&
-            board[2][0].equals(playerSymbol) ){
-            return WIN; // Player wins
-        }
+            if (game.isOver() || session.strategyOf(game.currentPlayer()) == null){
+                break;
+            }
 
-        // Check if the board is full
-        if (boardIsFull(board)){
-            return TIE; // Player has not won yet and the board is full so the game is a tie
+            event = command == TAKE_BACK ? match.takeBack() : match.redo();
         }
 
-        return CONTINUE; // No player has won or tied yet, continue game
+        checkpoint(session, match);
     }
 
     /**
-     * Checks if the board is full by looking for remaining blank spaces
-     * @param board - 2D array that contains all spots on the board and player symbols
-     * @return True - board is full, False - board is not full
+     * Prompts the user to input a spot on the board where they want to put
+     * their next symbol, or one of the commands take back (or undo) and redo.
+     * @param prompt - message prompting the user for input
+     * @param board - bitboard that contains all spots on the board and player marks
+     * @return the cell index of the position input by the player, or TAKE_BACK or REDO
      */
-    public static boolean boardIsFull(String[][] board){
-        for (int row = 0; row < board.length; row++) {
-            for (int col = 0; col < board[0].length; col++) {
-                if (board[row][col].equals(" ")){
-                    return false; // There are still blank spots on the board
-                }
-            }
+    public static int getPlayerMove(String prompt, Board board){
+        String playerMove = IR4.getString(prompt);
+        long start = GameMetrics.startTimer();
+
+        while (commandOf(playerMove) == 0 && moveIsInvalid(playerMove, board)){
+            GameMetrics.recordValidation(start);
+
+            // Error messages are provided by moveIsInvalid()
+            playerMove = IR4.getString(prompt);
+            start = GameMetrics.startTimer();
         }
 
-        return true; // There are no blank spots left on the board
+        GameMetrics.recordValidation(start);
+
+        if (commandOf(playerMove) != 0){
+            return commandOf(playerMove);
+        }
+
+        int[] position = parseMove(playerMove, board);
+
+        // Subtract one from row and column to get the corresponding position on the board
+        return board.cellAt(position[0] - 1, position[1] - 1);
     }
 
     /**
-     * Prompts the user to input a spot on the board where they want to put
-     * their next symbol.
-     * @param prompt - message prompting the user for input
-     * @param board - 2D array that contains all spots on the board and player symbols
-     * @return the position input by the player
+     * @param playerMove - text entered by the user
+     * @return TAKE_BACK or REDO if the text is one of those commands, otherwise 0
      */
-    public static int getPlayerMove(String prompt, String[][] board){
-        int playerMove = IR4.getInteger(prompt);
+    public static int commandOf(String playerMove){
+        String command = playerMove.trim();
 
-        while (moveIsInvalid(playerMove, board)){
-            // Error messages are provided by moveIsInvalid()
-            playerMove = IR4.getInteger(prompt);
+        if (command.equalsIgnoreCase("take back") || command.equalsIgnoreCase("undo")){
+            return TAKE_BACK;
         }
 
-        return playerMove;
+        if (command.equalsIgnoreCase("redo")){
+            return REDO;
+        }
+
+        return 0;
     }
 
     /**
      * Checks if a player's move is in the correct format and if the spot
      * on the board has already been taken.
-     * @param playerMove - spot on the board entered by the user
-     * @param board - 2D array that contains all spots on the board and player symbols
+     * @param playerMove - spot on the board entered by the user, like 2,3
+     * @param board - bitboard that contains all spots on the board and player marks
      * @return True - move is invalid, False - move is valid
      */
-    public static boolean moveIsInvalid(int playerMove, String[][] board){
+    public static boolean moveIsInvalid(String playerMove, Board board){
 
-        final int MIN = 11;
-        final int MAX = 33;
+        int[] position = parseMove(playerMove, board);
 
-        // Check that the input is between 11 and 33. Also checks that the
-        // first digit is between 1 and 3.
-        if (playerMove < MIN || playerMove > MAX){
-            System.out.println("Your move must be in 11 through 33 format");
-            return true; // Input is outside acceptable range
+        // Check that the input is a row and a column
+        if (position == null){
+            GameMetrics.moveRejected(GameMetrics.BAD_FORMAT);
+            System.out.println("Your move must be in row,column format like " + exampleMove(board));
+            return true; // Input is not in an acceptable format
         }
 
-        // Check that the second digit is between 1 and 3. Dividing by 10
-        // and getting the remainder gets the second digit
-        if (playerMove % 10 != 1 && playerMove % 10 != 2 && playerMove % 10 != 3){
-            System.out.println("Column values must be 1, 2, or 3.");
-            return true; // Second digit is invalid
-        }
+        int row = position[0];
+        int col = position[1];
+
+        // Subtract one from each value to get the corresponding position on the board
+        int reason = GameEngine.validateMove(board, row - 1, col - 1);
 
-        // Subtract one from each digit to get the corresponding position on the board
-        int xPos = playerMove / 10 - 1;
-        int yPos = playerMove % 10 - 1;
+        if (reason != GameEngine.VALID_MOVE){
+            GameMetrics.moveRejected(reason);
+        }
 
-        // Check if the selected spot on the board has already been taken
-        if (!board[xPos][yPos].equals(" ")){
-            System.out.println("That space is already taken!");
-            return true; // Invalid spot
+        switch (reason){
+            case GameEngine.BAD_ROW:
+                System.out.println("Row values must be 1 through " + board.height + ".");
+                return true; // Row is invalid
+            case GameEngine.BAD_COLUMN:
+                System.out.println("Column values must be 1 through " + board.width + ".");
+                return true; // Column is invalid
+            case GameEngine.SPACE_TAKEN:
+                System.out.println("That space is already taken!");
+                return true; // Invalid spot
         }
 
         return false; // Format and spot are valid
     }
 
     /**
-     * Sets all spaces on a game board to blank
-     * @param board - 2D array that contains all spots on the board and player symbols
+     * Splits a move into its row and column. Moves are entered as row,column
+     * (a space also works as the separator) so boards can have more than 9 rows
+     * or columns. On boards up to 9x9 the two-digit format like 23 is also accepted.
+     * @param playerMove - spot on the board entered by the user
+     * @param board - bitboard that contains all spots on the board and player marks
+     * @return {row, column} counting from 1, or null if the move isn't two numbers
      */
-    public static void initializeBoard(String[][] board){
-        for (int row = 0; row < ROWS; row++) {
-            for (int col = 0; col < COLS; col++) {
-                board[row][col] = " ";
+    public static int[] parseMove(String playerMove, Board board){
+        String move = playerMove.trim();
+        int separator = move.indexOf(',');
+
+        if (separator < 0){
+            separator = move.indexOf(' ');
+        }
+
+        try {
+            if (separator >= 0){
+                int row = Integer.parseInt(move.substring(0, separator).trim());
+                int col = Integer.parseInt(move.substring(separator + 1).trim());
+                return new int[] {row, col};
+            }
+
+            // Two-digit format, first digit is the row and second digit is the column
+            if (move.length() == 2 && board.width <= 9 && board.height <= 9){
+                int twoDigits = Integer.parseInt(move);
+                return new int[] {twoDigits / 10, twoDigits % 10};
             }
+        } catch (NumberFormatException e) {
+            return null; // Not a number
         }
+
+        return null; // No separator and not two digits
+    }
+
+    /**
+     * Formats a cell the way players enter moves
+     * @param board - board the move is on
+     * @param cell - cell index of the move
+     * @return the move as row,column counting from 1
+     */
+    public static String formatMove(Board board, int cell){
+        return (cell / board.width + 1) + "," + (cell % board.width + 1);
+    }
+
+    /**
+     * @param board - board the example is for
+     * @return an example move in the middle of the board
+     */
+    private static String exampleMove(Board board){
+        return (board.height + 1) / 2 + "," + (board.width + 1) / 2;
     }
 
     /**
      * Displays all spots on the board and their game state
-     * @param board - 2D array that contains all spots on the board and player symbols
+     * @param session - players' symbols, resolved for each spot
+     * @param board - bitboard that contains all spots on the board and player marks
      */
-    public static void displayBoard(String[][] board){
-        System.out.println("    1   2   3");
-        System.out.println("1:  " + board[0][0] + " | " + board[0][1] + " | " + board[0][2]);
-        System.out.println("   ---+---+---");
-        System.out.println("2:  " + board[1][0] + " | " + board[1][1] + " | " + board[1][2]);
-        System.out.println("   ---+---+---");
-        System.out.println("3:  " + board[2][0] + " | " + board[2][1] + " | " + board[2][2]);
+    public static void displayBoard(GameSession session, Board board){
+        session.renderer.drawBoard(session, board);
     }
 
     /**
      * Displays the match results
+     * @param session - players' symbols
      * @param result - the match result
      */
-    public static void displayFinalResults(int result){
+    public static void displayFinalResults(GameSession session, int result){
 
         if (result == FIRST_WINS){
-            System.out.println(playerOne + " won the match");
+            session.renderer.message(session.playerOne + " won the match");
         } else if (result == SECOND_WINS){
-            System.out.println(playerTwo + " won the match");
+            session.renderer.message(session.playerTwo + " won the match");
         } else {
-            System.out.println("The match is a tie!");
+            session.renderer.message("The match is a tie!");
+        }
+
+    }
+
+    /**
+     * Asks for the names the players' matches are rated under, if the session has a
+     * leaderboard. A computer player is rated as COMPUTER_NAME, which people can't take.
+     * @param session - session whose player names are set
+     */
+    public static void choosePlayerNames(GameSession session){
+        if (session.leaderboard == null){
+            return;
+        }
+
+        session.playerOneName = askPlayerName(session.playerOne, null);
+
+        if (session.playerTwoStrategy != null){
+            session.playerTwoName = COMPUTER_NAME;
+        } else {
+            session.playerTwoName = askPlayerName(session.playerTwo, session.playerOneName);
+        }
+
+        if (session.analytics != null){
+            session.analytics.addPlayer(session.playerOneName);
+            session.analytics.addPlayer(session.playerTwoName);
+        }
+    }
+
+    /**
+     * Asks for a player's name until it is one a person can be rated under
+     * @param symbol - the player's symbol
+     * @param taken - the other player's name, or null
+     * @return a name that isn't COMPUTER_NAME or taken
+     */
+    private static String askPlayerName(String symbol, String taken){
+        String name = IR4.getString("Name of the player using " + symbol + ": ").trim();
+
+        while (name.equalsIgnoreCase(COMPUTER_NAME) || name.equals(taken)){
+            if (name.equalsIgnoreCase(COMPUTER_NAME)){
+                System.err.println(COMPUTER_NAME + " is the computer's name. Try again.");
+            } else {
+                System.err.println("The players need different names. Try again.");
+            }
+
+            name = IR4.getString("Name of the player using " + symbol + ": ").trim();
         }
 
+        return name;
+    }
+
+    /**
+     * Records a match on the session's leaderboard, if it has one, and shows the
+     * players' new ratings and the top of the leaderboard
+     * @param session - session with the leaderboard and player names
+     * @param result - the match result
+     */
+    public static void rateMatch(GameSession session, int result){
+        final int TOP_PLAYERS = 5;
+        Leaderboard leaderboard = session.leaderboard;
+
+        if (leaderboard == null){
+            return;
+        }
+
+        try {
+            int first = leaderboard.playerId(session.playerOneName);
+            int second = leaderboard.playerId(session.playerTwoName);
+            leaderboard.record(first, second, result);
+            leaderboard.flush();
+
+            System.out.println(leaderboard.describe(first));
+            System.out.println(leaderboard.describe(second));
+            System.out.println("------ Top players of " + leaderboard.players() + " -----");
+
+            for (int player : leaderboard.top(TOP_PLAYERS)) {
+                System.out.println(leaderboard.describe(player));
+            }
+        } catch (java.io.IOException e) {
+            System.err.println("Couldn't save the result to the leaderboard: " + e.getMessage());
+        }
     }
 
     /**
      * Displays an introduction when the program is run which includes the rules
      * of the game.
+     * @param session - board settings the rules are shown for
      */
-    public static void displayWelcome(){
-        System.out.println("*************************************************************");
-        System.out.println("Welcome to the Amazing game of Best-of-Three Tic-Tac-Toe!");
-        System.out.println();
-        System.out.println("Each player will take turns putting a mark on the board.");
-        System.out.println("Players will enter row and column like this: 12 or 23.");
-        System.out.println("A player will win when they get 3 of their marks in a row.");
-        System.out.println("If the board is filled without 3 in a row, the game is a tie.");
-        System.out.println();
-        System.out.println("The best of 3 games is the winner! Good luck!");
-        System.out.println("*************************************************************");
+    public static void displayWelcome(GameSession session){
+        BoardRenderer renderer = session.renderer;
+
+        renderer.startText();
+        renderer.line("*************************************************************");
+        renderer.line("Welcome to the Amazing game of Best-of-Three Tic-Tac-Toe!");
+        renderer.line("");
+        renderer.line("Each player will take turns putting a mark on the board.");
+        renderer.line("Players will enter row and column like this: 1,2 or 2,3.");
+        renderer.line("A player will win when they get " + session.winLength + " of their marks in a row.");
+        renderer.line("If the board is filled without " + session.winLength + " in a row, the game is a tie.");
+        renderer.line("Enter take back to undo the last move, and redo to play it again.");
+        renderer.line("");
+        renderer.line("The best of 3 games is the winner! Good luck!");
+        renderer.line("*************************************************************");
+        renderer.writeText();
     }
 
     /**
      * Displays menu with options to play, change symbols, or exit program
+     * @param session - current symbols and board settings
      */
-    public static void displayMainMenu(){
-        System.out.println("------ Tic-Tac-Toe -----");
-        System.out.println(" 1. Set User Symbols (" + playerOne + ", " + playerTwo +")");
-        System.out.println(" 2. Play Tic-Tac-Toe");
-        System.out.println(" 3. Exit");
+    public static void displayMainMenu(GameSession session){
+        BoardRenderer renderer = session.renderer;
+
+        renderer.startText();
+        renderer.line("------ Tic-Tac-Toe -----");
+        renderer.line(" 1. Set User Symbols (" + session.playerOne + ", " + session.playerTwo +")");
+        renderer.line(" 2. Set Board Size (" + session.boardWidth + "x" + session.boardHeight + ", " + session.winLength + " in a row)");
+        renderer.line(" 3. Play Tic-Tac-Toe");
+        renderer.line(" 4. Play Ultimate Tic-Tac-Toe");
+        renderer.line(" 5. Exit");
+        renderer.writeText();
     }
 
     /**
      * Displays menu with options to change symbol for playerOne, player Two, or return
      * to the main menu
+     * @param session - current symbols
      */
-    public static void displaySymbolMenu(){
-        System.out.println("------ Set User Symbols -----");
-        System.out.println(" 1. Set Symbol for First Player: " + playerOne);
-        System.out.println(" 2. Set Symbol for Second Player: " + playerTwo);
-        System.out.println(" 3. Return to Main Menu");
+    public static void displaySymbolMenu(GameSession session){
+        BoardRenderer renderer = session.renderer;
+
+        renderer.startText();
+        renderer.line("------ Set User Symbols -----");
+        renderer.line(" 1. Set Symbol for First Player: " + session.playerOne);
+        renderer.line(" 2. Set Symbol for Second Player: " + session.playerTwo);
+        renderer.line(" 3. Return to Main Menu");
+        renderer.writeText();
     }
 
     /**
      * Presents a menu that allows players to change their symbols or
      * return to the main menu
+     * @param session - symbols to change
      */
-    public static void changeSymbols(){
+    public static void changeSymbols(GameSession session){
         int menuSelection;
         final int CHANGE_PLAYER_ONE = 1;
         final int CHANGE_PLAYER_TWO = 2;
         final int EXIT = 3;
 
         do {
-            displaySymbolMenu();
+            displaySymbolMenu(session);
             menuSelection = IR4.getInteger("Select a menu Item: ");
             switch (menuSelection){
                 case CHANGE_PLAYER_ONE:
-                    playerOne = getSymbol(CHANGE_PLAYER_ONE, "What is your new symbol player 1?");
+                    session.playerOne = getSymbol(session, CHANGE_PLAYER_ONE, "What is your new symbol player 1?");
+                    publish(session, GameEvent.symbolChanged(Board.PLAYER_ONE, session.playerOne));
                     break;
                 case CHANGE_PLAYER_TWO:
-                    playerTwo = getSymbol(CHANGE_PLAYER_TWO, "What is your new symbol player 2?");
+                    session.playerTwo = getSymbol(session, CHANGE_PLAYER_TWO, "What is your new symbol player 2?");
+                    publish(session, GameEvent.symbolChanged(Board.PLAYER_TWO, session.playerTwo));
                     break;
                 case EXIT:
                     break;
@@ -404,17 +718,88 @@ public class TicTacToe {
         } while (menuSelection != EXIT);
     }
 
+    /**
+     * Publishes an event to the session's event bus, if it has one
+     * @param session - session the event happened in
+     * @param event - event to publish
+     */
+    public static void publish(GameSession session, GameEvent event){
+        if (session.events != null){
+            session.events.publish(event);
+        }
+    }
+
+    /**
+     * Asks if the second player should be the computer. Boards small enough to solve
+     * while the player waits get the perfect opponent, bigger boards get a
+     * time-limited alpha-beta or Monte Carlo tree search. When the session has an opening
+     * book for the board the computer plays straight from it.
+     * @param session - session whose second player is set
+     */
+    public static void chooseOpponent(GameSession session){
+        session.playerTwoStrategy = null;
+
+        if (!IR4.getYorN("Play against the computer? y/n")){
+            return;
+        }
+
+        if (session.boardWidth * session.boardHeight <= MAX_SOLVER_CELLS){
+            Solver solver = new Solver(session.boardWidth, session.boardHeight, session.winLength);
+            session.playerTwoStrategy = new SolverStrategy(solver);
+        } else if (session.useMonteCarlo){
+            session.playerTwoStrategy = new MonteCarloStrategy(new java.util.SplittableRandom());
+        } else {
+            session.playerTwoStrategy = new AlphaBetaStrategy();
+        }
+
+        if (session.book != null && session.book.covers(session.boardWidth, session.boardHeight, session.winLength)){
+            session.playerTwoStrategy = new BookStrategy(session.book, session.playerTwoStrategy);
+        }
+    }
+
+    /**
+     * Asks the user for the board width, height and how many marks in a row it
+     * takes to win.
+     * @param session - board settings to change
+     */
+    public static void changeBoardSize(GameSession session){
+        final int MAX_SIZE = 99;
+
+        session.boardWidth = getBoardValue("How many columns should the board have?", MAX_SIZE);
+        session.boardHeight = getBoardValue("How many rows should the board have?", MAX_SIZE);
+        session.winLength = getBoardValue("How many marks in a row to win?",
+                Math.max(session.boardWidth, session.boardHeight));
+    }
+
+    /**
+     * Asks user to input a board setting between 1 and a maximum
+     * @param prompt - message prompting the user for input
+     * @param max - largest allowed value
+     * @return a valid board setting
+     */
+    public static int getBoardValue(String prompt, int max){
+        int value = IR4.getInteger(prompt);
+
+        while (value < 1 || value > max){
+            System.err.println("Value must be 1 through " + max + ". Try again.");
+            value = IR4.getInteger(prompt);
+        }
+
+        return value;
+    }
+
     /**
      * Asks user to input a valid new symbol
+     * @param session - current symbols to compare against
      * @param player - the player to be changed
      * @param prompt message prompting the user to input a symbol
      * @return a valid new symbol
      */
-    public static String getSymbol(int player, String prompt){
+    public static String getSymbol(GameSession session, int player, String prompt){
         String newSymbol = IR4.getString(prompt);
 
         // symbolIsInvalid(newSymbol, symbolComparison)
-        while (symbolIsInvalid(newSymbol, player)){
+        while (symbolIsInvalid(session, newSymbol, player)){
             // Error messages provided by symbolIsInvalid()
             newSymbol = IR4.getString(prompt);
         }
@@ -432,16 +817,19 @@ public class TicTacToe {
     public static boolean symbolIsInvalid(String newPlayerSymbol, String secondPlayerSymbol){
         final int MAX_LENGTH = 1;
         if (newPlayerSymbol.length() > MAX_LENGTH){
+            GameMetrics.symbolRejected(GameMetrics.SYMBOL_TOO_LONG);
             System.err.println("Symbol must be 1 character. Try again.");
             return true; // Invalid
         }
 
         if (newPlayerSymbol.equals(secondPlayerSymbol)){
+            GameMetrics.symbolRejected(GameMetrics.SYMBOL_SAME);
             System.err.println("Your symbol can't be the same value as the other player. Try again");
             return true; // Invalid
         }
 
         if (newPlayerSymbol.toLowerCase().equals(secondPlayerSymbol.toLowerCase() )){
+            GameMetrics.symbolRejected(GameMetrics.SYMBOL_SAME_IGNORING_CASE);
             System.err.println("You can't enter the an uppercase or lowercase version of the other player's symbol. Try again.");
             return true; // Invalid
         }
@@ -453,13 +841,15 @@ public class TicTacToe {
 
     /**
      * Checks if a new symbol is valid.
+     * @param session - current symbols to compare against
      * @param symbol - new symbol input by the user
      * @param player - player to be changed
      * @return True - symbol is invalid, False - symbol is not invalid
      */
-    public static boolean symbolIsInvalid(String symbol, int player){
+    public static boolean symbolIsInvalid(GameSession session, String symbol, int player){
         final int MAX_LENGTH = 1;
         if (symbol.length() > MAX_LENGTH){
+            GameMetrics.symbolRejected(GameMetrics.SYMBOL_TOO_LONG);
             System.err.println("Symbol must be 1 character. Try again.");
             return true; // Invalid
         }
@@ -469,12 +859,14 @@ public class TicTacToe {
 
         switch (player){
             case PLAYER_ONE:
-                if (symbol.equals(playerTwo)){
+                if (symbol.equals(session.playerTwo)){
+                    GameMetrics.symbolRejected(GameMetrics.SYMBOL_SAME);
                     System.err.println("The first player can't enter the same value as the second. Try again.");
                     return true; // Invalid
                 }
 
-                if (symbol.toLowerCase().equals(playerTwo.toLowerCase()) ){
+                if (symbol.toLowerCase().equals(session.playerTwo.toLowerCase()) ){
+                    GameMetrics.symbolRejected(GameMetrics.SYMBOL_SAME_IGNORING_CASE);
                     System.err.println("The first player can't enter an uppercase or lowercase version " +
                             "of the second player's value. Try again.");
                     return true; // Invalid
@@ -482,12 +874,14 @@ public class TicTacToe {
                 break;
 
             case PLAYER_TWO:
-                if (symbol.equals(playerOne)){
+                if (symbol.equals(session.playerOne)){
+                    GameMetrics.symbolRejected(GameMetrics.SYMBOL_SAME);
                     System.err.println("The second player can't enter the same value as the first. Try again.");
                     return true; // Invalid
                 }
 
-                if (symbol.toLowerCase().equals(playerOne.toLowerCase()) ){
+                if (symbol.toLowerCase().equals(session.playerOne.toLowerCase()) ){
+                    GameMetrics.symbolRejected(GameMetrics.SYMBOL_SAME_IGNORING_CASE);
                     System.err.println("The second player can't enter an uppercase or lowercase version " +
                             "of the first player's value. Try again.");
                     return true; // Invalid
@@ -0,0 +1,259 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.LongFunction;
+
+/**
+ *  Plays strategies against each other in a round robin. Every pair of strategies plays
+ *  the same number of best-of-NBR_OF_GAMES matches, taking turns going first, and the
+ *  matches are spread over all cores with a ForkJoinPool.
+ *
+ *  Every match gets its own seed worked out from the tournament seed and the match's
+ *  number, and every strategy gets its own random number generator from that seed.
+ *  Nothing random is shared between threads, so the same seed gives the same results
+ *  no matter how many threads play the matches.
+ */
+
+public class Tournament {
+
+    // Matches a single task plays before it stops splitting
+    private static final int MATCHES_PER_TASK = 256;
+
+    // Per pairing counts: first entry won, second entry won, tie, games played
+    private static final int FIRST_ENTRY_WINS = 0;
+    private static final int SECOND_ENTRY_WINS = 1;
+    private static final int TIES = 2;
+    private static final int GAMES = 3;
+    private static final int COUNTS = 4;
+
+    private final int width;
+    private final int height;
+    private final int winLength;
+    private final List<String> names = new ArrayList<>();
+    private final List<LongFunction<MoveStrategy>> factories = new ArrayList<>();
+
+    private long[] counts;
+    private double seconds;
+
+    /**
+     * Creates an empty tournament
+     * @param width - number of columns
+     * @param height - number of rows
+     * @param winLength - number of marks in a line needed to win
+     */
+    public Tournament(int width, int height, int winLength){
+        this.width = width;
+        this.height = height;
+        this.winLength = winLength;
+    }
+
+    /**
+     * Adds a strategy to the round robin
+     * @param name - name shown in the results
+     * @param factory - makes a new strategy for a match from that match's seed
+     * @return this tournament
+     */
+    public Tournament add(String name, LongFunction<MoveStrategy> factory){
+        names.add(name);
+        factories.add(factory);
+        return this;
+    }
+
+    /**
+     * Adds the random, heuristic and, when the board is small enough, solver strategies
+     * @return this tournament
+     */
+    public Tournament addStandardEntries(){
+        add("random", seed -> new RandomStrategy(new SplittableRandom(seed)));
+        add("heuristic", seed -> new HeuristicStrategy(new SplittableRandom(seed)));
+
+        if (width * height <= TicTacToe.MAX_SOLVER_CELLS){
+            // Solvers are expensive to build, so each thread keeps one and reuses its table
+            ThreadLocal<Solver> solvers = ThreadLocal.withInitial(() -> new Solver(width, height, winLength));
+            add("solver", seed -> new SolverStrategy(solvers.get(), new SplittableRandom(seed)));
+        }
+
+        return this;
+    }
+
+    /**
+     * Plays the tournament
+     * @param matchesPerPairing - matches each pair of strategies plays
+     * @param seed - seed every match's seed is worked out from
+     * @param threads - threads to play on
+     */
+    public void run(int matchesPerPairing, long seed, int threads){
+        int pairings = pairingCount();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+
+        try {
+            counts = pool.invoke(new MatchTask(0, (long) pairings * matchesPerPairing, matchesPerPairing, seed));
+        } finally {
+            pool.shutdown();
+        }
+
+        seconds = (System.nanoTime() - start) / 1e9;
+    }
+
+    /**
+     * Plays a range of matches, splitting the range in half until it is small
+     * enough to play on one thread. Results are added up, so they come out the same
+     * no matter how the range was split.
+     */
+    private class MatchTask extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final long first;
+        private final long last;
+        private final int matchesPerPairing;
+        private final long seed;
+
+        MatchTask(long first, long last, int matchesPerPairing, long seed){
+            this.first = first;
+            this.last = last;
+            this.matchesPerPairing = matchesPerPairing;
+            this.seed = seed;
+        }
+
+        @Override
+        protected long[] compute(){
+            if (last - first > MATCHES_PER_TASK){
+                long middle = (first + last) >>> 1;
+                MatchTask left = new MatchTask(first, middle, matchesPerPairing, seed);
+                left.fork();
+                long[] right = new MatchTask(middle, last, matchesPerPairing, seed).compute();
+                long[] total = left.join();
+
+                for (int i = 0; i < total.length; i++) {
+                    total[i] += right[i];
+                }
+
+                return total;
+            }
+
+            long[] total = new long[pairingCount() * COUNTS];
+            Board board = new Board(width, height, winLength);
+
+            for (long match = first; match < last; match++) {
+                playMatch(board, match, total);
+            }
+
+            return total;
+        }
+
+        private void playMatch(Board board, long match, long[] total){
+            int pairing = (int) (match / matchesPerPairing);
+            int[] entries = entriesOf(pairing);
+            SplittableRandom random = new SplittableRandom(mix(seed + match * 0x9E3779B97F4A7C15L));
+
+            // The entries take turns going first
+            boolean firstEntryStarts = match % matchesPerPairing % 2 == 0;
+            MoveStrategy firstEntry = factories.get(entries[0]).apply(random.nextLong());
+            MoveStrategy secondEntry = factories.get(entries[1]).apply(random.nextLong());
+            MoveStrategy playerOne = firstEntryStarts ? firstEntry : secondEntry;
+            MoveStrategy playerTwo = firstEntryStarts ? secondEntry : firstEntry;
+
+            MatchEngine engine = new MatchEngine(board, GameSession.NBR_OF_GAMES);
+
+            while (true) {
+                GameEngine game = engine.game();
+                MoveStrategy strategy = game.currentPlayer() == Board.PLAYER_ONE ? playerOne : playerTwo;
+                GameEvent event = engine.play(strategy.chooseMove(board, game.currentPlayer()));
+
+                if (event.type == GameEvent.GAME_ENDED){
+                    total[pairing * COUNTS + GAMES]++;
+                    engine.nextGame();
+                } else if (event.type == GameEvent.MATCH_ENDED){
+                    total[pairing * COUNTS + GAMES]++;
+                    break;
+                }
+            }
+
+            int result = engine.result();
+
+            if (result == GameEngine.TIE){
+                total[pairing * COUNTS + TIES]++;
+            } else if ((result == GameEngine.FIRST_WINS) == firstEntryStarts){
+                total[pairing * COUNTS + FIRST_ENTRY_WINS]++;
+            } else {
+                total[pairing * COUNTS + SECOND_ENTRY_WINS]++;
+            }
+        }
+    }
+
+    /**
+     * Scrambles a seed so nearby match numbers get unrelated generators
+     */
+    private static long mix(long z){
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private int pairingCount(){
+        return names.size() * (names.size() - 1) / 2;
+    }
+
+    /**
+     * @return the two entries that play in a pairing, lower index first
+     */
+    private int[] entriesOf(int pairing){
+        for (int first = 0; first < names.size(); first++) {
+            int opponents = names.size() - first - 1;
+
+            if (pairing < opponents){
+                return new int[] {first, first + 1 + pairing};
+            }
+
+            pairing -= opponents;
+        }
+
+        throw new IllegalArgumentException("No such pairing");
+    }
+
+    /**
+     * @return a win/tie/loss table for every pairing and how fast the games were played
+     */
+    public String report(){
+        StringBuilder report = new StringBuilder();
+        long games = 0;
+
+        report.append(String.format("%-12s %-12s %10s %10s %10s%n", "Entry", "Opponent", "Wins", "Ties", "Losses"));
+
+        for (int pairing = 0; pairing < pairingCount(); pairing++) {
+            int[] entries = entriesOf(pairing);
+            int base = pairing * COUNTS;
+
+            report.append(String.format("%-12s %-12s %10d %10d %10d%n",
+                    names.get(entries[0]), names.get(entries[1]),
+                    counts[base + FIRST_ENTRY_WINS], counts[base + TIES], counts[base + SECOND_ENTRY_WINS]));
+
+            games += counts[base + GAMES];
+        }
+
+        report.append(String.format("%d games in %.2f seconds, %.0f games per second%n", games, seconds, games / seconds));
+
+        return report.toString();
+    }
+
+    /**
+     * Runs a tournament between the standard strategies
+     * @param args - matches per pairing, seed, threads, and board width, height and win length.
+     *               All are optional.
+     */
+    public static void main(String[] args){
+        int matches = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 131;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        int width = args.length > 3 ? Integer.parseInt(args[3]) : Board.DEFAULT_SIZE;
+        int height = args.length > 4 ? Integer.parseInt(args[4]) : width;
+        int winLength = args.length > 5 ? Integer.parseInt(args[5]) : Math.min(width, height);
+
+        Tournament tournament = new Tournament(width, height, winLength).addStandardEntries();
+        tournament.run(matches, seed, threads);
+        System.out.print(tournament.report());
+    }
+}
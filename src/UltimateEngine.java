@@ -0,0 +1,359 @@
+/**
+ *  Plays Ultimate Tic-Tac-Toe: nine small 3x3 boards laid out in a 3x3 meta-board.
+ *  The spot a player picks inside a small board sends the opponent to the small board
+ *  in the same position. Winning a small board claims that spot of the meta-board, and
+ *  three claimed boards in a line win the game. A player sent to a board that is
+ *  already won or full may play on any open board.
+ *
+ *  Every small board is a 9-bit mask per player, and so is the meta-board. Win checks
+ *  look the mask up in a 512-entry table, so a move only ever checks the one small
+ *  board it was played on and, if that board was won, the meta-board. Legal moves come
+ *  straight from the blank-spot masks of the open boards. Moves can be taken back with
+ *  undo(), which searches and perft use to walk the game tree without copying.
+ *
+ *  Cells are numbered board * 9 + spot, with boards and spots both counted left to
+ *  right and top to bottom.
+ */
+
+public class UltimateEngine {
+
+    static final int BOARDS = 9;
+    static final int CELLS = BOARDS * 9;
+    static final int ANY_BOARD = -1;
+
+    private static final int FULL = 0x1FF;
+
+    // WINS[mask] is true when the 9-bit mask holds three in a row
+    private static final boolean[] WINS = new boolean[FULL + 1];
+
+    static {
+        int[] lines = {0x007, 0x038, 0x1C0, 0x049, 0x092, 0x124, 0x111, 0x054};
+
+        for (int mask = 0; mask <= FULL; mask++) {
+            for (int line : lines) {
+                if ((mask & line) == line){
+                    WINS[mask] = true;
+                }
+            }
+        }
+    }
+
+    // Marks on each small board, indexed by player
+    private final int[][] marks = new int[3][BOARDS];
+
+    // Small boards won by each player, and boards that are won or full
+    private final int[] metaMarks = new int[3];
+    private int closedBoards;
+
+    private int currentPlayer;
+    private int targetBoard;
+    private int result;
+
+    // Undo history: the cell of each move and the target board before it
+    private final int[] moves = new int[CELLS];
+    private final int[] targets = new int[CELLS];
+    private int moveCount;
+
+    // One move list per ply, so perft doesn't allocate
+    private final int[][] moveBuffers = new int[CELLS + 1][CELLS];
+
+    /**
+     * Creates an engine and starts a new game
+     */
+    public UltimateEngine(){
+        reset();
+    }
+
+    /**
+     * Clears every board and gives the first move to player one, who may play anywhere
+     */
+    public void newGame(){
+        reset();
+    }
+
+    // Shared with the constructor, which mustn't call an overridable method
+    private void reset(){
+        for (int[] playerMarks : marks) {
+            java.util.Arrays.fill(playerMarks, 0);
+        }
+
+        java.util.Arrays.fill(metaMarks, 0);
+        closedBoards = 0;
+        currentPlayer = Board.PLAYER_ONE;
+        targetBoard = ANY_BOARD;
+        result = GameEngine.KEEP_PLAYING;
+        moveCount = 0;
+    }
+
+    /**
+     * Plays the current player's move and passes the turn
+     * @param cell - board * 9 + spot
+     * @return the reason the move was rejected as a negative number, or the game result
+     *         after the move: KEEP_PLAYING, FIRST_WINS, SECOND_WINS or TIE
+     */
+    public int play(int cell){
+        int reason = validateMove(cell);
+
+        if (reason != GameEngine.VALID_MOVE){
+            return -reason;
+        }
+
+        makeMove(cell);
+        return result;
+    }
+
+    /**
+     * Checks if a move can be played right now
+     * @param cell - board * 9 + spot
+     * @return VALID_MOVE, BAD_ROW for a spot off the board or on a board the player
+     *         wasn't sent to, SPACE_TAKEN or GAME_OVER
+     */
+    public int validateMove(int cell){
+        if (result != GameEngine.KEEP_PLAYING){
+            return GameEngine.GAME_OVER;
+        }
+
+        if (cell < 0 || cell >= CELLS || (legalBoards() & (1 << (cell / 9))) == 0){
+            return GameEngine.BAD_ROW;
+        }
+
+        if ((openSpots(cell / 9) & (1 << (cell % 9))) == 0){
+            return GameEngine.SPACE_TAKEN;
+        }
+
+        return GameEngine.VALID_MOVE;
+    }
+
+    /**
+     * Plays a move known to be legal, such as one from legalMoves()
+     * @param cell - board * 9 + spot
+     */
+    public void makeMove(int cell){
+        int board = cell / 9;
+        int spot = cell % 9;
+        int player = currentPlayer;
+
+        moves[moveCount] = cell;
+        targets[moveCount] = targetBoard;
+        moveCount++;
+
+        marks[player][board] |= 1 << spot;
+
+        // Only the board that was played on can have changed
+        if (WINS[marks[player][board]]){
+            metaMarks[player] |= 1 << board;
+            closedBoards |= 1 << board;
+
+            if (WINS[metaMarks[player]]){
+                result = player == Board.PLAYER_ONE ? GameEngine.FIRST_WINS : GameEngine.SECOND_WINS;
+            }
+        } else if ((marks[Board.PLAYER_ONE][board] | marks[Board.PLAYER_TWO][board]) == FULL){
+            closedBoards |= 1 << board;
+        }
+
+        if (result == GameEngine.KEEP_PLAYING && closedBoards == FULL){
+            result = GameEngine.TIE;
+        }
+
+        targetBoard = (closedBoards & (1 << spot)) != 0 ? ANY_BOARD : spot;
+        currentPlayer = GameEngine.otherPlayer(player);
+    }
+
+    /**
+     * Takes back the last move
+     */
+    public void undo(){
+        moveCount--;
+        int cell = moves[moveCount];
+        int board = cell / 9;
+        int player = GameEngine.otherPlayer(currentPlayer);
+
+        marks[player][board] &= ~(1 << (cell % 9));
+
+        // Only the board the move was on can reopen
+        metaMarks[player] &= ~(1 << board);
+        closedBoards &= ~(1 << board);
+
+        if (WINS[marks[Board.PLAYER_ONE][board]]){
+            metaMarks[Board.PLAYER_ONE] |= 1 << board;
+            closedBoards |= 1 << board;
+        } else if (WINS[marks[Board.PLAYER_TWO][board]]){
+            metaMarks[Board.PLAYER_TWO] |= 1 << board;
+            closedBoards |= 1 << board;
+        } else if ((marks[Board.PLAYER_ONE][board] | marks[Board.PLAYER_TWO][board]) == FULL){
+            closedBoards |= 1 << board;
+        }
+
+        targetBoard = targets[moveCount];
+        currentPlayer = player;
+        result = GameEngine.KEEP_PLAYING;
+    }
+
+    /**
+     * @return a 9-bit mask of the small boards the current player may play on
+     */
+    public int legalBoards(){
+        if (result != GameEngine.KEEP_PLAYING){
+            return 0;
+        }
+
+        return targetBoard == ANY_BOARD ? ~closedBoards & FULL : 1 << targetBoard;
+    }
+
+    /**
+     * @param board - small board, 0 to 8
+     * @return a 9-bit mask of the blank spots on the board, or 0 if it is won or full
+     */
+    public int openSpots(int board){
+        if ((closedBoards & (1 << board)) != 0){
+            return 0;
+        }
+
+        return ~(marks[Board.PLAYER_ONE][board] | marks[Board.PLAYER_TWO][board]) & FULL;
+    }
+
+    /**
+     * Lists every legal move
+     * @param buffer - array with room for CELLS moves
+     * @return the number of moves written to the buffer
+     */
+    public int legalMoves(int[] buffer){
+        int count = 0;
+
+        for (int boards = legalBoards(); boards != 0; boards &= boards - 1) {
+            int board = Integer.numberOfTrailingZeros(boards);
+
+            for (int spots = openSpots(board); spots != 0; spots &= spots - 1) {
+                buffer[count++] = board * 9 + Integer.numberOfTrailingZeros(spots);
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Counts the move sequences of a given length from the current position, the
+     * standard check that move generation is both correct and fast
+     * @param depth - number of moves to look ahead
+     * @return number of positions reached
+     */
+    public long perft(int depth){
+        if (depth == 0){
+            return 1;
+        }
+
+        int[] buffer = moveBuffers[moveCount];
+        int count = legalMoves(buffer);
+
+        if (depth == 1){
+            return count;
+        }
+
+        long positions = 0;
+
+        for (int i = 0; i < count; i++) {
+            makeMove(buffer[i]);
+            positions += perft(depth - 1);
+            undo();
+        }
+
+        return positions;
+    }
+
+    /**
+     * @param cell - board * 9 + spot
+     * @return Board.PLAYER_ONE, Board.PLAYER_TWO or Board.EMPTY
+     */
+    public int get(int cell){
+        int bit = 1 << (cell % 9);
+
+        if ((marks[Board.PLAYER_ONE][cell / 9] & bit) != 0){
+            return Board.PLAYER_ONE;
+        }
+
+        if ((marks[Board.PLAYER_TWO][cell / 9] & bit) != 0){
+            return Board.PLAYER_TWO;
+        }
+
+        return Board.EMPTY;
+    }
+
+    /**
+     * @param board - small board, 0 to 8
+     * @return the player who won the board, or Board.EMPTY
+     */
+    public int boardWinner(int board){
+        if ((metaMarks[Board.PLAYER_ONE] & (1 << board)) != 0){
+            return Board.PLAYER_ONE;
+        }
+
+        if ((metaMarks[Board.PLAYER_TWO] & (1 << board)) != 0){
+            return Board.PLAYER_TWO;
+        }
+
+        return Board.EMPTY;
+    }
+
+    /**
+     * Converts a row and column of the 9x9 grid to a cell
+     * @param row - zero based row, 0 to 8
+     * @param col - zero based column, 0 to 8
+     * @return board * 9 + spot
+     */
+    public static int cellAt(int row, int col){
+        return (row / 3 * 3 + col / 3) * 9 + row % 3 * 3 + col % 3;
+    }
+
+    /**
+     * @return the small board the current player was sent to, or ANY_BOARD
+     */
+    public int targetBoard(){
+        return result == GameEngine.KEEP_PLAYING ? targetBoard : ANY_BOARD;
+    }
+
+    /**
+     * @return the player whose turn it is
+     */
+    public int currentPlayer(){
+        return currentPlayer;
+    }
+
+    /**
+     * @return how many moves have been played
+     */
+    public int moveCount(){
+        return moveCount;
+    }
+
+    /**
+     * @return KEEP_PLAYING, FIRST_WINS, SECOND_WINS or TIE
+     */
+    public int result(){
+        return result;
+    }
+
+    /**
+     * @return True - the game has been won or tied, False - the game is still going
+     */
+    public boolean isOver(){
+        return result != GameEngine.KEEP_PLAYING;
+    }
+
+    /**
+     * Prints perft counts from the empty board and how fast they were found
+     * @param args - deepest depth, 7 by default
+     */
+    public static void main(String[] args){
+        int maxDepth = args.length > 0 ? Integer.parseInt(args[0]) : 7;
+        UltimateEngine engine = new UltimateEngine();
+
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            long start = System.nanoTime();
+            long positions = engine.perft(depth);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("perft(%d) = %d in %.3f seconds, %.0f positions/sec%n",
+                    depth, positions, seconds, positions / seconds);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/**
+ *  The console frontend for Ultimate Tic-Tac-Toe. Moves are entered as row,column on
+ *  the full 9x9 grid, and the rules are played by UltimateEngine.
+ */
+
+public class UltimateTicTacToe {
+
+    private static final int GRID_SIZE = 9;
+
+    // Shape of the full grid, used to parse moves the same way as the classic game
+    private static final Board GRID = new Board(GRID_SIZE, GRID_SIZE, 3);
+
+    /**
+     * Plays Ultimate games until the players don't want another one
+     * @param session - players' symbols
+     */
+    public static void playGames(GameSession session){
+        UltimateEngine game = new UltimateEngine();
+
+        do {
+            game.newGame();
+            displayRules(session);
+            int result = playGame(session, game);
+            displayBoard(session, game);
+
+            if (result == GameEngine.FIRST_WINS){
+                System.out.println(session.playerOne + " won the game");
+            } else if (result == GameEngine.SECOND_WINS){
+                System.out.println(session.playerTwo + " won the game");
+            } else {
+                System.out.println("Nobody won this game. Tie!");
+            }
+        } while (IR4.getYorN("Play again? y/n"));
+    }
+
+    /**
+     * Plays one game between two people at the console
+     * @param session - players' symbols
+     * @param game - engine with a new game started
+     * @return FIRST_WINS, SECOND_WINS or TIE
+     */
+    public static int playGame(GameSession session, UltimateEngine game){
+        while (!game.isOver()) {
+            displayBoard(session, game);
+
+            String symbol = session.symbolOf(game.currentPlayer());
+            int target = game.targetBoard();
+            String prompt = target == UltimateEngine.ANY_BOARD
+                    ? "What is your move " + symbol + "? You can play on any open board."
+                    : "What is your move " + symbol + "? You must play on board " + boardName(target) + ".";
+
+            game.play(getPlayerMove(prompt, game));
+        }
+
+        return game.result();
+    }
+
+    /**
+     * Asks for a move until the player enters a legal one
+     * @param prompt - message prompting the user for input
+     * @param game - game the move is for
+     * @return the cell of the move, board * 9 + spot
+     */
+    public static int getPlayerMove(String prompt, UltimateEngine game){
+        while (true) {
+            String playerMove = IR4.getString(prompt);
+            int[] position = TicTacToe.parseMove(playerMove, GRID);
+
+            if (position == null){
+                GameMetrics.moveRejected(GameMetrics.BAD_FORMAT);
+                System.out.println("Your move must be in row,column format like 5,5");
+                continue;
+            }
+
+            int row = position[0] - 1;
+            int col = position[1] - 1;
+            int reason = GameEngine.validateMove(GRID, row, col);
+
+            if (reason == GameEngine.VALID_MOVE){
+                reason = game.validateMove(UltimateEngine.cellAt(row, col));
+            }
+
+            switch (reason){
+                case GameEngine.VALID_MOVE:
+                    return UltimateEngine.cellAt(row, col);
+                case GameEngine.BAD_ROW:
+                    if (row >= 0 && row < GRID_SIZE && game.targetBoard() == UltimateEngine.ANY_BOARD){
+                        System.out.println("That board is finished, pick an open one.");
+                    } else if (row >= 0 && row < GRID_SIZE){
+                        System.out.println("You must play on board " + boardName(game.targetBoard()) + ".");
+                    } else {
+                        System.out.println("Row values must be 1 through " + GRID_SIZE + ".");
+                    }
+                    break;
+                case GameEngine.BAD_COLUMN:
+                    System.out.println("Column values must be 1 through " + GRID_SIZE + ".");
+                    break;
+                default:
+                    System.out.println("That space can't be played, it is taken or its board is finished.");
+            }
+
+            GameMetrics.moveRejected(reason);
+        }
+    }
+
+    /**
+     * Displays the full grid with lines between the small boards, followed by the
+     * boards each player has won
+     * @param session - players' symbols
+     * @param game - game to display
+     */
+    public static void displayBoard(GameSession session, UltimateEngine game){
+        BoardRenderer renderer = session.renderer;
+        StringBuilder text = renderer.startText();
+
+        renderer.line("    1 2 3   4 5 6   7 8 9");
+
+        for (int row = 0; row < GRID_SIZE; row++) {
+            if (row > 0 && row % 3 == 0){
+                renderer.line("   -------+-------+-------");
+            }
+
+            text.append(' ').append(row + 1).append(' ');
+
+            for (int col = 0; col < GRID_SIZE; col++) {
+                text.append(col > 0 && col % 3 == 0 ? " | " : " ");
+                text.append(session.symbolOf(game.get(UltimateEngine.cellAt(row, col))));
+            }
+
+            renderer.line("");
+        }
+
+        for (int board = 0; board < UltimateEngine.BOARDS; board++) {
+            int winner = game.boardWinner(board);
+
+            if (winner != Board.EMPTY){
+                renderer.line(session.symbolOf(winner) + " won board " + boardName(board));
+            }
+        }
+
+        renderer.writeText();
+    }
+
+    /**
+     * Explains the rules before a game
+     * @param session - players' symbols
+     */
+    public static void displayRules(GameSession session){
+        BoardRenderer renderer = session.renderer;
+
+        renderer.startText();
+        renderer.line("------ Ultimate Tic-Tac-Toe ------");
+        renderer.line("The grid is nine small boards. Where you play inside a small board");
+        renderer.line("picks the board your opponent plays on next. Win a small board to");
+        renderer.line("claim it, and claim three boards in a row to win.");
+        renderer.line(session.playerOne + " goes first. Enter moves as row,column on the 9x9 grid.");
+        renderer.writeText();
+    }
+
+    /**
+     * @param board - small board, 0 to 8
+     * @return the board's position like "top left" or "center"
+     */
+    static String boardName(int board){
+        if (board < 0 || board > 8){
+            throw new IllegalArgumentException("Small boards are numbered 0 through 8, not " + board);
+        }
+
+        String[] rows = {"top", "middle", "bottom"};
+        String[] cols = {"left", "center", "right"};
+
+        if (board == 4){
+            return "center";
+        }
+
+        return rows[board / 3] + " " + cols[board % 3];
+    }
+}